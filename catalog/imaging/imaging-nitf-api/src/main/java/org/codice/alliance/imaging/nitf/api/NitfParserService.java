@@ -24,7 +24,8 @@ public interface NitfParserService {
   /**
    * @param inputStream an InputStream containing the NITF to be parsed.
    * @param allData if 'true', then image data will be included in the parsed result. If 'false',
-   *     then that data will be skipped, saving heap space.
+   *     then only the headers and TREs are parsed, and the image, graphic and text data are skipped
+   *     using the segment lengths in the file header, saving heap space and parsing time.
    * @return a NitfSegmentsFlow object containing the parsed NITF data.
    * @throws NitfFormatException when 'inputStream' can't be successfully parsed.
    */
@@ -33,7 +34,8 @@ public interface NitfParserService {
   /**
    * @param nitfFile a file handle to the NITF to be parsed.
    * @param allData if 'true', then image data will be included in the parsed result. If 'false',
-   *     then that data will be skipped, saving heap space.
+   *     then only the headers and TREs are parsed, and the image, graphic and text data are skipped
+   *     using the segment lengths in the file header, saving heap space and parsing time.
    * @return a NitfSegmentsFlow object containing the parsed NITF data.
    * @throws FileNotFoundException when 'nitfFile' doesn't exist.
    * @throws NitfFormatException when 'nitfFile' can't be successfully parsed.
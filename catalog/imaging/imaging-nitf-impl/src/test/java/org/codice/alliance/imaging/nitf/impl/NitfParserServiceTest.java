@@ -16,8 +16,11 @@ package org.codice.alliance.imaging.nitf.impl;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import org.codice.alliance.imaging.nitf.api.NitfParserService;
 import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageSegment;
 import org.codice.imaging.nitf.fluent.NitfSegmentsFlow;
 import org.hamcrest.CoreMatchers;
 import org.hamcrest.MatcherAssert;
@@ -51,6 +54,12 @@ public class NitfParserServiceTest {
     InputStream is = getInputStream(GEO_NITF);
     NitfSegmentsFlow nitfSegmentsFlow = this.nitfParserAdapter.parseNitf(is, false);
     MatcherAssert.assertThat(nitfSegmentsFlow, Is.is(CoreMatchers.notNullValue()));
+
+    List<ImageSegment> imageSegments = new ArrayList<>();
+    nitfSegmentsFlow.forEachImageSegment(imageSegments::add);
+    MatcherAssert.assertThat(imageSegments.size(), Is.is(1));
+    MatcherAssert.assertThat(imageSegments.get(0).getNumberOfRows() > 0, Is.is(true));
+    MatcherAssert.assertThat(imageSegments.get(0).getData(), Is.is(CoreMatchers.nullValue()));
   }
 
   @Test
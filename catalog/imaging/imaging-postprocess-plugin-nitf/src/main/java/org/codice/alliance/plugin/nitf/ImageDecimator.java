@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.plugin.nitf;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PackedColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * Reduces an image to a smaller 8-bit RGB image by averaging all of the source pixels that fall
+ * into each target pixel.
+ *
+ * <p>Images that use a component or packed color model are read sample by sample, so data with
+ * more than 8 bits per sample is scaled to the 8-bit range using its actual bit depth instead of
+ * the size of its container. All other images are read through their color model.
+ */
+final class ImageDecimator {
+
+  private static final int CHANNELS = 3;
+
+  private static final int MAX_CHANNEL_VALUE = 255;
+
+  private static final int BITS_PER_BYTE = 8;
+
+  private final int targetWidth;
+
+  private final int targetHeight;
+
+  private final int[] columnTargets;
+
+  private final int[] rowTargets;
+
+  private final int[] columnCounts;
+
+  private final int[] rowCounts;
+
+  private final float[] sums;
+
+  private ImageDecimator(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+    if (sourceWidth <= 0 || sourceHeight <= 0 || targetWidth <= 0 || targetHeight <= 0) {
+      throw new IllegalArgumentException("image dimensions must be greater than zero");
+    }
+
+    this.targetWidth = Math.min(targetWidth, sourceWidth);
+    this.targetHeight = Math.min(targetHeight, sourceHeight);
+    this.columnCounts = new int[this.targetWidth];
+    this.rowCounts = new int[this.targetHeight];
+    this.columnTargets = mapToTarget(sourceWidth, this.targetWidth, columnCounts);
+    this.rowTargets = mapToTarget(sourceHeight, this.targetHeight, rowCounts);
+    this.sums = new float[this.targetWidth * this.targetHeight * CHANNELS];
+  }
+
+  /**
+   * @param image the image to reduce
+   * @param targetWidth width of the reduced image, must be greater than zero, values larger than
+   *     the image width are reduced to the image width
+   * @param targetHeight height of the reduced image, must be greater than zero, values larger than
+   *     the image height are reduced to the image height
+   * @param actualBitsPerPixel the number of significant bits in each sample, or 0 if every bit of
+   *     the sample is significant
+   * @return the reduced image
+   */
+  static BufferedImage decimate(
+      BufferedImage image, int targetWidth, int targetHeight, int actualBitsPerPixel) {
+    ImageDecimator imageDecimator =
+        new ImageDecimator(image.getWidth(), image.getHeight(), targetWidth, targetHeight);
+    if (isReadableBySample(image)) {
+      imageDecimator.addSamples(image, actualBitsPerPixel);
+    } else {
+      imageDecimator.addRgb(image);
+    }
+    return imageDecimator.toImage();
+  }
+
+  private BufferedImage toImage() {
+    BufferedImage image =
+        new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_3BYTE_BGR);
+    WritableRaster raster = image.getRaster();
+    int[] row = new int[targetWidth * CHANNELS];
+
+    for (int targetY = 0; targetY < targetHeight; targetY++) {
+      int offset = targetY * targetWidth * CHANNELS;
+      for (int targetX = 0; targetX < targetWidth; targetX++) {
+        float count = (float) columnCounts[targetX] * rowCounts[targetY];
+        for (int channel = 0; channel < CHANNELS; channel++) {
+          int index = targetX * CHANNELS + channel;
+          row[index] = clamp(Math.round(sums[offset + index] / count));
+        }
+      }
+      raster.setPixels(0, targetY, targetWidth, 1, row);
+    }
+
+    return image;
+  }
+
+  private void addSamples(BufferedImage image, int actualBitsPerPixel) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    Raster raster = image.getRaster();
+    ColorModel colorModel = image.getColorModel();
+    boolean isGray = colorModel.getNumColorComponents() < CHANNELS;
+    int bands = isGray ? 1 : CHANNELS;
+
+    float[] scales = new float[bands];
+    for (int band = 0; band < bands; band++) {
+      scales[band] =
+          MAX_CHANNEL_VALUE
+              / (float) maxSampleValue(colorModel.getComponentSize(band), actualBitsPerPixel);
+    }
+
+    int[] samples = new int[width];
+
+    for (int y = 0; y < height; y++) {
+      int rowOffset = rowTargets[y] * targetWidth * CHANNELS;
+      for (int band = 0; band < bands; band++) {
+        raster.getSamples(0, y, width, 1, band, samples);
+        for (int x = 0; x < width; x++) {
+          float value = Math.max(samples[x], 0) * scales[band];
+          int index = rowOffset + columnTargets[x] * CHANNELS;
+          if (isGray) {
+            sums[index] += value;
+            sums[index + 1] += value;
+            sums[index + 2] += value;
+          } else {
+            sums[index + band] += value;
+          }
+        }
+      }
+    }
+  }
+
+  private void addRgb(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] rgb = new int[width];
+
+    for (int y = 0; y < height; y++) {
+      image.getRGB(0, y, width, 1, rgb, 0, width);
+      int rowOffset = rowTargets[y] * targetWidth * CHANNELS;
+      for (int x = 0; x < width; x++) {
+        int index = rowOffset + columnTargets[x] * CHANNELS;
+        sums[index] += (rgb[x] >> 16) & 0xFF;
+        sums[index + 1] += (rgb[x] >> 8) & 0xFF;
+        sums[index + 2] += rgb[x] & 0xFF;
+      }
+    }
+  }
+
+  private static boolean isReadableBySample(BufferedImage image) {
+    ColorModel colorModel = image.getColorModel();
+    int transferType = image.getRaster().getTransferType();
+    return (colorModel instanceof ComponentColorModel || colorModel instanceof PackedColorModel)
+        && (transferType == DataBuffer.TYPE_BYTE
+            || transferType == DataBuffer.TYPE_USHORT
+            || transferType == DataBuffer.TYPE_SHORT
+            || transferType == DataBuffer.TYPE_INT);
+  }
+
+  /**
+   * NITF stores data with more than 8 significant bits, for example 11-bit imagery, in 16-bit
+   * samples. Scaling by the container size would make such images nearly black.
+   */
+  private static long maxSampleValue(int componentSize, int actualBitsPerPixel) {
+    int bits = componentSize;
+    if (componentSize > BITS_PER_BYTE
+        && actualBitsPerPixel >= BITS_PER_BYTE
+        && actualBitsPerPixel < componentSize) {
+      bits = actualBitsPerPixel;
+    }
+    return (1L << bits) - 1;
+  }
+
+  private static int[] mapToTarget(int sourceLength, int targetLength, int[] counts) {
+    int[] targets = new int[sourceLength];
+    for (int source = 0; source < sourceLength; source++) {
+      targets[source] = (int) ((long) source * targetLength / sourceLength);
+      counts[targets[source]]++;
+    }
+    return targets;
+  }
+
+  private static int clamp(int value) {
+    return Math.max(0, Math.min(MAX_CHANNEL_VALUE, value));
+  }
+}
@@ -20,20 +20,28 @@ import com.github.jaiimageio.jpeg2000.impl.J2KImageReaderSpi;
 import com.github.jaiimageio.jpeg2000.impl.J2KImageWriter;
 import com.github.jaiimageio.jpeg2000.impl.J2KImageWriterSpi;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.io.ByteSource;
 import ddf.catalog.data.Attribute;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.impl.AttributeImpl;
 import ddf.catalog.data.types.Core;
 import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -44,11 +52,10 @@ import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.spi.IIORegistry;
+import javax.imageio.stream.FileImageOutputStream;
 import javax.imageio.stream.ImageOutputStream;
-import javax.imageio.stream.MemoryCacheImageOutputStream;
 import net.coobird.thumbnailator.Thumbnails;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
@@ -64,10 +71,10 @@ import org.codice.ddf.catalog.async.data.impl.ProcessCreateItemImpl;
 import org.codice.ddf.catalog.async.data.impl.ProcessResourceImpl;
 import org.codice.ddf.catalog.async.data.impl.ProcessUpdateItemImpl;
 import org.codice.ddf.catalog.async.plugin.api.internal.PostProcessPlugin;
-import org.codice.ddf.platform.util.TemporaryFileBackedOutputStream;
 import org.codice.imaging.nitf.core.common.NitfFormatException;
 import org.codice.imaging.nitf.core.image.ImageSegment;
 import org.codice.imaging.nitf.fluent.NitfParserInputFlow;
+import org.codice.imaging.nitf.fluent.NitfSegmentsFlow;
 import org.codice.imaging.nitf.fluent.impl.NitfParserInputFlowImpl;
 import org.codice.imaging.nitf.render.NitfRenderer;
 import org.slf4j.Logger;
@@ -124,16 +131,27 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
 
   private static final int ARGB_COMPONENT_COUNT = 4;
 
+  private static final int UNKNOWN_BITS_PER_PIXEL = 0;
+
+  private static final int JP2_TILE_SIZE = 1024;
+
+  private static final int[] RGB_BANDS = {0, 1, 2};
+
   private static final int DEFAULT_MAX_NITF_SIZE_MB = 120;
 
-  private static final int BYTES_PER_KILOBYTE = 1024;
+  private static final String NITF_FILE_PREFIX = "nitf";
+
+  private static final String NITF_FILE_SUFFIX = ".ntf";
 
-  private static final int DEFAULT_FILE_BACKED_OUTPUT_STREAM_THRESHOLD = 32 * BYTES_PER_KILOBYTE;
+  private static final int DEFAULT_RENDER_THREAD_COUNT =
+      Integer.getInteger(
+          "default.nitf.thread.count", Runtime.getRuntime().availableProcessors());
 
-  private static final int MAX_THREAD_COUNT =
-      Integer.parseInt(System.getProperty("default.nitf.thread.count", "3"));
+  private static final int DEFAULT_RENDER_MEMORY_BUDGET_DIVISOR = 4;
 
-  private Semaphore lock = new Semaphore(MAX_THREAD_COUNT, true);
+  private static final int DEFAULT_MAX_QUEUED_RENDERS = 100;
+
+  private static final int RGB_COMPONENT_COUNT = 3;
 
   private volatile boolean createOverview = true;
 
@@ -143,7 +161,7 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
 
   private volatile double maxSideLength = DEFAULT_MAX_SIDE_LENGTH;
 
-  private final Semaphore available = new Semaphore(2, true);
+  private final NitfRenderExecutor renderExecutor;
 
   private Supplier<NitfRenderer> nitfRendererSupplier;
   private Supplier<NitfParserInputFlow> nitfParserSupplier;
@@ -155,17 +173,23 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
   public NitfPostProcessPlugin(
       Supplier<NitfRenderer> nitfRendererSupplier,
       Supplier<NitfParserInputFlow> nitfParserSupplier) {
-    this.nitfRendererSupplier = nitfRendererSupplier;
-    this.nitfParserSupplier = nitfParserSupplier;
+    this(
+        new NitfRenderExecutor(
+            DEFAULT_RENDER_THREAD_COUNT,
+            getDefaultRenderMemoryBudgetBytes(),
+            DEFAULT_MAX_QUEUED_RENDERS),
+        nitfRendererSupplier,
+        nitfParserSupplier);
   }
 
-  public NitfPostProcessPlugin(
-      Semaphore lock,
+  @VisibleForTesting
+  NitfPostProcessPlugin(
+      NitfRenderExecutor renderExecutor,
       Supplier<NitfRenderer> nitfRendererSupplier,
       Supplier<NitfParserInputFlow> nitfParserSupplier) {
+    this.renderExecutor = renderExecutor;
     this.nitfRendererSupplier = nitfRendererSupplier;
     this.nitfParserSupplier = nitfParserSupplier;
-    this.lock = lock;
   }
 
   @Override
@@ -223,6 +247,44 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
     this.storeOriginalImage = storeOriginalImage;
   }
 
+  /** @param renderThreadCount number of render threads, or 0 to use the default */
+  public void setRenderThreadCount(int renderThreadCount) {
+    renderExecutor.setThreadCount(
+        renderThreadCount > 0 ? renderThreadCount : DEFAULT_RENDER_THREAD_COUNT);
+  }
+
+  /**
+   * @param renderMemoryBudgetMB memory that render jobs may use at the same time, or 0 to use a
+   *     quarter of the maximum heap size
+   */
+  public void setRenderMemoryBudgetMB(int renderMemoryBudgetMB) {
+    renderExecutor.setMemoryBudgetBytes(
+        renderMemoryBudgetMB > 0
+            ? renderMemoryBudgetMB * BYTES_PER_MEGABYTE
+            : getDefaultRenderMemoryBudgetBytes());
+  }
+
+  /**
+   * @param maxQueuedRenders number of render jobs that may wait before new NITFs are rejected, or
+   *     0 to use the default
+   */
+  public void setMaxQueuedRenders(int maxQueuedRenders) {
+    renderExecutor.setMaxQueuedJobs(
+        maxQueuedRenders > 0 ? maxQueuedRenders : DEFAULT_MAX_QUEUED_RENDERS);
+  }
+
+  public void init() {
+    renderExecutor.registerMBean();
+  }
+
+  public void destroy() {
+    renderExecutor.shutdown();
+  }
+
+  private static long getDefaultRenderMemoryBudgetBytes() {
+    return Runtime.getRuntime().maxMemory() / DEFAULT_RENDER_MEMORY_BUDGET_DIVISOR;
+  }
+
   private void handleProcessCreateItem(List<ProcessCreateItem> processCreateItems) {
     List<ProcessCreateItem> createItems =
         processCreateItems
@@ -238,26 +300,15 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
     ProcessResource processResource = processCreateItem.getProcessResource();
 
     if (shouldProcess(processResource)) {
-
-      try {
-        lock.acquire();
-        try {
-          createdItems =
-              process(
-                  processCreateItem,
-                  metacard,
-                  null,
-                  processResource,
-                  constructorTriple ->
-                      new ProcessCreateItemImpl(
-                          constructorTriple.getLeft(), constructorTriple.getMiddle()));
-        } finally {
-          lock.release();
-        }
-      } catch (InterruptedException e) {
-        LOGGER.debug("Interrupt received while doing image processing.", e);
-        Thread.currentThread().interrupt();
-      }
+      createdItems =
+          process(
+              processCreateItem,
+              metacard,
+              null,
+              processResource,
+              constructorTriple ->
+                  new ProcessCreateItemImpl(
+                      constructorTriple.getLeft(), constructorTriple.getMiddle()));
     }
 
     if (createdItems == null) {
@@ -273,35 +324,56 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
       ProcessResource processResource,
       Function<Triple<ProcessResource, Metacard, Metacard>, T> constructor) {
     List<T> items = new ArrayList<>();
-    try (TemporaryFileBackedOutputStream fbos =
-        new TemporaryFileBackedOutputStream(DEFAULT_FILE_BACKED_OUTPUT_STREAM_THRESHOLD)) {
-
-      // TODO: 06/21/2018 oconnormi - can probably get rid of this once
-      // ProcessResourceImpl.getInputStream can be called multiple times
-      fbos.write(IOUtils.toByteArray(processResource.getInputStream()));
-      ByteSource byteSource = fbos.asByteSource();
-      BufferedImage renderedImage = renderImage(byteSource.openStream());
-
-      if (renderedImage != null) {
-        addThumbnailToMetacard(metacard, renderedImage);
-        processResourceItem.markMetacardAsModified();
-        if (createOverview) {
-          ProcessResource overviewProcessResource = createOverviewResource(renderedImage, metacard);
-          items.add(
-              constructor.apply(
-                  new ImmutableTriple<>(overviewProcessResource, metacard, originalMetacard)));
+    Path nitfPath = null;
+    try {
+      nitfPath = copyToTemporaryFile(processResource);
+      boolean renderByBlock = isLargerThanMaxNitfSize(processResource);
+      boolean storeOriginal = storeOriginalImage && !renderByBlock;
+      List<SegmentDerivatives> segments =
+          renderSegments(nitfPath.toFile(), renderByBlock, storeOriginal);
+
+      try {
+        if (!segments.isEmpty()) {
+          addThumbnailToMetacard(metacard, segments.get(0).overviewImage);
+          processResourceItem.markMetacardAsModified();
         }
 
-        if (storeOriginalImage) {
-          ProcessResource originalImageProcessResource =
-              createOriginalImage(
-                  renderImageUsingOriginalDataModel(byteSource.openStream()), metacard);
+        for (SegmentDerivatives segment : segments) {
+          if (createOverview) {
+            ProcessResource overviewProcessResource =
+                createOverviewResource(
+                    segment.overviewImage,
+                    metacard,
+                    buildSegmentQualifier(OVERVIEW, segment.segmentIndex));
+            items.add(
+                constructor.apply(
+                    new ImmutableTriple<>(overviewProcessResource, metacard, originalMetacard)));
+          }
 
-          items.add(
-              constructor.apply(
-                  new ImmutableTriple<>(originalImageProcessResource, metacard, originalMetacard)));
+          if (segment.originalPath != null) {
+            ProcessResource originalImageProcessResource =
+                createOriginalImage(
+                    segment.originalPath,
+                    metacard,
+                    buildSegmentQualifier(ORIGINAL, segment.segmentIndex));
+            if (originalImageProcessResource != null) {
+              segment.originalPath = null;
+            }
+
+            items.add(
+                constructor.apply(
+                    new ImmutableTriple<>(
+                        originalImageProcessResource, metacard, originalMetacard)));
+          }
         }
+      } finally {
+        segments.forEach(segment -> deleteTemporaryFile(segment.originalPath));
       }
+    } catch (RejectedExecutionException e) {
+      LOGGER.warn(
+          "Derived images were not created for {} because the NITF render queue is full.",
+          processResource.getName());
+      LOGGER.debug("The NITF render job was rejected for {}", processResource.getName(), e);
     } catch (IOException | NitfFormatException | RuntimeException e) {
       LOGGER.debug("An error occured when rendering a nitf for {}", processResource.getName(), e);
     } catch (InterruptedException e) {
@@ -309,10 +381,40 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
       Thread.currentThread().interrupt();
       throw new RuntimeException(
           String.format("Rendering failed for %s", processResource.getName()));
+    } finally {
+      deleteTemporaryFile(nitfPath);
     }
     return items;
   }
 
+  /**
+   * The resource stream can only be read once, so it is copied to a temporary file that the NITF
+   * parser reads in place. The copy goes through a small buffer rather than holding the whole
+   * resource in memory.
+   */
+  private Path copyToTemporaryFile(ProcessResource processResource) throws IOException {
+    Path nitfPath = Files.createTempFile(NITF_FILE_PREFIX, NITF_FILE_SUFFIX);
+    try (InputStream inputStream = processResource.getInputStream()) {
+      Files.copy(inputStream, nitfPath, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException | RuntimeException e) {
+      deleteTemporaryFile(nitfPath);
+      throw e;
+    }
+    return nitfPath;
+  }
+
+  private void deleteTemporaryFile(Path path) {
+    if (path == null) {
+      return;
+    }
+
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      LOGGER.debug("Unable to delete temporary file {}", path, e);
+    }
+  }
+
   private void handleProcessUpdateItem(List<ProcessUpdateItem> processUpdateItems) {
     List<ProcessUpdateItem> updateItems =
         processUpdateItems
@@ -329,48 +431,202 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
     ProcessResource processResource = processUpdateItem.getProcessResource();
 
     if (shouldProcess(processResource)) {
-      try {
-        lock.acquire();
+      updatedItems =
+          process(
+              processUpdateItem,
+              metacard,
+              originalMetacard,
+              processResource,
+              constructorTriple ->
+                  new ProcessUpdateItemImpl(
+                      constructorTriple.getLeft(),
+                      constructorTriple.getMiddle(),
+                      constructorTriple.getRight()));
+    }
+    return updatedItems.stream();
+  }
+
+  private ProcessResource createOverviewResource(
+      BufferedImage overviewImage, Metacard metacard, String qualifier) {
+    return createDerivedImage(
+        qualifier, overviewImage, metacard, overviewImage.getWidth(), overviewImage.getHeight());
+  }
+
+  /**
+   * Render the derivatives of every image segment. The file is parsed once and each segment is
+   * rendered by its own job with its own renderer. The parser reads the image data in place from
+   * the file, so the memory a job needs is dominated by its rendered raster. The jobs are submitted
+   * to the {@link NitfRenderExecutor} with that memory, estimated from the image segment headers,
+   * so the number of segments rendered at once depends on their size. Segments too large to render
+   * at full resolution within the memory budget are rendered block by block. The segments are
+   * submitted together, so the NITF is either queued whole or rejected.
+   *
+   * @return the derivatives of the segments that could be rendered, in segment order
+   * @throws RejectedExecutionException if the render queue is full
+   */
+  private List<SegmentDerivatives> renderSegments(
+      File nitfFile, boolean renderByBlock, boolean storeOriginal)
+      throws IOException, NitfFormatException, InterruptedException {
+    List<ImageSegment> imageSegments = new ArrayList<>();
+    NitfSegmentsFlow segmentsFlow =
+        nitfParserSupplier.get().file(nitfFile).allData().forEachImageSegment(imageSegments::add);
+
+    List<CompletableFuture<SegmentDerivatives>> futures;
+    try {
+      futures =
+          renderExecutor.submitAll(createRenderJobs(imageSegments, renderByBlock, storeOriginal));
+    } catch (RuntimeException e) {
+      segmentsFlow.end();
+      throw e;
+    }
+
+    // the segments read their data through the parser, so it is ended once no job is running
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+        .whenComplete((result, throwable) -> segmentsFlow.end());
+
+    try {
+      List<SegmentDerivatives> segments = new ArrayList<>(futures.size());
+      for (Future<SegmentDerivatives> future : futures) {
         try {
-          updatedItems =
-              process(
-                  processUpdateItem,
-                  metacard,
-                  originalMetacard,
-                  processResource,
-                  constructorTriple ->
-                      new ProcessUpdateItemImpl(
-                          constructorTriple.getLeft(),
-                          constructorTriple.getMiddle(),
-                          constructorTriple.getRight()));
-        } finally {
-          lock.release();
+          SegmentDerivatives segment = future.get();
+          if (segment != null) {
+            segments.add(segment);
+          }
+        } catch (ExecutionException e) {
+          LOGGER.debug("An error occurred when rendering a nitf image segment", e.getCause());
         }
-      } catch (InterruptedException e) {
-        LOGGER.debug("Interrupt received while doing image processing.", e);
-        Thread.currentThread().interrupt();
       }
+      return segments;
+    } catch (InterruptedException | RuntimeException e) {
+      futures.forEach(this::discardSegment);
+      throw e;
     }
-    return updatedItems.stream();
   }
 
-  private ProcessResource createOverviewResource(BufferedImage renderedImage, Metacard metacard) {
-    return createDerivedImage(
-        OVERVIEW,
-        renderedImage,
-        metacard,
-        calculateOverviewWidth(renderedImage),
-        calculateOverviewHeight(renderedImage));
+  private List<NitfRenderExecutor.Job<SegmentDerivatives>> createRenderJobs(
+      List<ImageSegment> imageSegments, boolean renderByBlock, boolean storeOriginal) {
+    List<NitfRenderExecutor.Job<SegmentDerivatives>> jobs = new ArrayList<>(imageSegments.size());
+    long memoryBudgetBytes = renderExecutor.getMemoryBudgetBytes();
+
+    for (int segmentIndex = 0; segmentIndex < imageSegments.size(); segmentIndex++) {
+      final int index = segmentIndex;
+      ImageSegment segment = imageSegments.get(index);
+      long fullResolutionBytes = estimateRenderBytes(segment);
+      boolean renderSegmentByBlock = renderByBlock || fullResolutionBytes > memoryBudgetBytes;
+      boolean storeSegmentOriginal = storeOriginal && !renderSegmentByBlock;
+
+      jobs.add(
+          new NitfRenderExecutor.Job<>(
+              renderSegmentByBlock ? estimateBlockRenderBytes(segment) : fullResolutionBytes,
+              () -> renderSegment(segment, index, renderSegmentByBlock, storeSegmentOriginal)));
+    }
+    return jobs;
   }
 
-  private BufferedImage renderImage(InputStream inputStream)
-      throws NitfFormatException, InterruptedException {
+  /**
+   * Segments that have not started rendering are cancelled. Segments that are already being
+   * rendered are left to finish, and their temporary original is deleted afterwards.
+   */
+  private void discardSegment(CompletableFuture<SegmentDerivatives> future) {
+    if (future.cancel(false)) {
+      return;
+    }
+    future.thenAccept(
+        segment -> {
+          if (segment != null) {
+            deleteTemporaryFile(segment.originalPath);
+          }
+        });
+  }
+
+  /**
+   * Estimate the memory needed to render an image segment at full resolution, which is dominated by
+   * the rendered raster. Rendering for display uses at least a packed ARGB pixel, and rendering to
+   * the closest data model needs a sample for every band.
+   */
+  @VisibleForTesting
+  static long estimateRenderBytes(ImageSegment segment) {
+    long bytesPerSample = (segment.getNumberOfBitsPerPixelPerBand() + Byte.SIZE - 1) / Byte.SIZE;
+    long bytesPerPixel = Math.max(ARGB_COMPONENT_COUNT, segment.getNumBands() * bytesPerSample);
+    return segment.getNumberOfRows() * segment.getNumberOfColumns() * bytesPerPixel;
+  }
+
+  /**
+   * Estimate the memory needed to render an image segment block by block: the overview and one
+   * rendered block.
+   */
+  @VisibleForTesting
+  long estimateBlockRenderBytes(ImageSegment segment) {
+    long width = segment.getNumberOfColumns();
+    long height = segment.getNumberOfRows();
+    long overviewBytes =
+        (long) calculateOverviewWidth(width, height)
+            * calculateOverviewHeight(width, height)
+            * RGB_COMPONENT_COUNT;
+    long blockBytes =
+        segment.getNumberOfPixelsPerBlockHorizontal()
+            * segment.getNumberOfPixelsPerBlockVertical()
+            * ARGB_COMPONENT_COUNT;
+    return overviewBytes + blockBytes;
+  }
+
+  private SegmentDerivatives renderSegment(
+      ImageSegment segment, int segmentIndex, boolean renderByBlock, boolean storeOriginal) {
+    Pair<ImageSegment, BufferedImage> renderedSegment =
+        renderByBlock ? renderOverview(segment) : renderImage(segment, storeOriginal);
+
+    if (renderedSegment == null) {
+      return null;
+    }
+
+    BufferedImage renderedImage = renderedSegment.getRight();
+    BufferedImage overviewImage =
+        renderByBlock
+            ? renderedImage
+            : ImageDecimator.decimate(
+                renderedImage,
+                calculateOverviewWidth(renderedImage.getWidth(), renderedImage.getHeight()),
+                calculateOverviewHeight(renderedImage.getWidth(), renderedImage.getHeight()),
+                storeOriginal
+                    ? renderedSegment.getLeft().getActualBitsPerPixelPerBand()
+                    : UNKNOWN_BITS_PER_PIXEL);
+
+    Path originalPath = null;
+    if (storeOriginal) {
+      try {
+        originalPath = renderToJpeg2k(renderedImage);
+      } catch (IOException e) {
+        LOGGER.debug(e.getMessage(), e);
+      }
+    }
+
+    return new SegmentDerivatives(segmentIndex, overviewImage, originalPath);
+  }
+
+  /**
+   * The derivatives of the first image segment keep the plain qualifier, so single segment NITFs
+   * are stored as before. Later segments are numbered from 2, like the segments of the file.
+   */
+  @VisibleForTesting
+  static String buildSegmentQualifier(String qualifier, int segmentIndex) {
+    return segmentIndex == 0 ? qualifier : String.format("%s-%d", qualifier, segmentIndex + 1);
+  }
+
+  /**
+   * Render an image segment once. When the original image is stored the segment is rendered to its
+   * closest data model, which the JPEG 2000 original needs, and the thumbnail and overview are
+   * reduced from that same image.
+   */
+  private Pair<ImageSegment, BufferedImage> renderImage(
+      ImageSegment segment, boolean toClosestDataModel) {
 
     return render(
-        inputStream,
+        segment,
         input -> {
           try {
-            return input.getRight().render(input.getLeft());
+            return toClosestDataModel
+                ? input.getRight().renderToClosestDataModel(input.getLeft())
+                : input.getRight().render(input.getLeft());
           } catch (IOException e) {
             LOGGER.debug("An error occurred when rendering a nitf", e.getMessage(), e);
           }
@@ -378,57 +634,48 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
         });
   }
 
-  private BufferedImage renderImageUsingOriginalDataModel(InputStream inputStream)
-      throws NitfFormatException, InterruptedException {
+  /**
+   * Render an image segment straight to the overview resolution. The renderer decodes the
+   * segment one NITF block at a time and each block is scaled as it is drawn, so the memory used
+   * depends on the overview size and the block size rather than on the size of the image.
+   */
+  private Pair<ImageSegment, BufferedImage> renderOverview(ImageSegment segment) {
 
     return render(
-        inputStream,
+        segment,
         input -> {
+          long width = segment.getNumberOfColumns();
+          long height = segment.getNumberOfRows();
+          int overviewWidth = calculateOverviewWidth(width, height);
+          int overviewHeight = calculateOverviewHeight(width, height);
+
+          BufferedImage overviewImage =
+              new BufferedImage(overviewWidth, overviewHeight, BufferedImage.TYPE_3BYTE_BGR);
+          Graphics2D graphics = overviewImage.createGraphics();
           try {
-            return input.getRight().renderToClosestDataModel(input.getLeft());
+            graphics.setRenderingHint(
+                RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(
+                RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.scale((double) overviewWidth / width, (double) overviewHeight / height);
+            input.getRight().render(segment, graphics);
+            return overviewImage;
           } catch (IOException e) {
             LOGGER.debug("An error occurred when rendering a nitf", e.getMessage(), e);
+          } finally {
+            graphics.dispose();
           }
           return null;
         });
   }
 
-  private BufferedImage render(
-      InputStream inputStream,
-      Function<Pair<ImageSegment, NitfRenderer>, BufferedImage> imageSegmentFunction)
-      throws InterruptedException, NitfFormatException {
+  private Pair<ImageSegment, BufferedImage> render(
+      ImageSegment segment,
+      Function<Pair<ImageSegment, NitfRenderer>, BufferedImage> imageSegmentFunction) {
 
-    final ThreadLocal<BufferedImage> bufferedImage = new ThreadLocal<>();
-
-    if (inputStream != null) {
-      try {
-        available.acquire();
-        NitfRenderer renderer = nitfRendererSupplier.get();
-        NitfParserInputFlow parserInputFlow = nitfParserSupplier.get();
-
-        parserInputFlow
-            .inputStream(inputStream)
-            .allData()
-            .forEachImageSegment(
-                segment -> {
-                  if (bufferedImage.get() == null) {
-                    BufferedImage bi =
-                        imageSegmentFunction.apply(new ImmutablePair<>(segment, renderer));
-                    if (bi != null) {
-                      bufferedImage.set(bi);
-                    }
-                  }
-                })
-            .end();
-      } finally {
-        IOUtils.closeQuietly(inputStream);
-        available.release();
-      }
-    }
-
-    BufferedImage image = bufferedImage.get();
-    bufferedImage.remove();
-    return image;
+    BufferedImage image =
+        imageSegmentFunction.apply(new ImmutablePair<>(segment, nitfRendererSupplier.get()));
+    return image == null ? null : new ImmutablePair<>(segment, image);
   }
 
   private void addThumbnailToMetacard(Metacard metacard, BufferedImage bufferedImage) {
@@ -469,28 +716,33 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
     return null;
   }
 
-  private ProcessResource createOriginalImage(BufferedImage image, Metacard metacard) {
+  /**
+   * The JPEG 2000 original is encoded to a temporary file instead of a buffer in memory. Once a
+   * resource has been created for it, the file is deleted when the content store has read it and
+   * closed the stream.
+   */
+  private ProcessResource createOriginalImage(
+      Path originalPath, Metacard metacard, String qualifier) {
 
     try {
-      byte[] originalBytes = renderToJpeg2k(image);
-
-      InputStream originalBytesInputStream = new ByteArrayInputStream(originalBytes);
+      long originalSize = Files.size(originalPath);
+      InputStream originalInputStream =
+          Files.newInputStream(originalPath, StandardOpenOption.DELETE_ON_CLOSE);
 
       ProcessResource processResource =
           new ProcessResourceImpl(
               metacard.getId(),
-              originalBytesInputStream,
+              originalInputStream,
               IMAGE_JPEG2K,
-              buildDerivedImageTitle(metacard.getTitle(), ORIGINAL, JP2),
-              originalBytes.length,
-              ORIGINAL);
+              buildDerivedImageTitle(metacard.getTitle(), qualifier, JP2),
+              originalSize,
+              qualifier);
 
       ((ProcessResourceImpl) processResource).markAsModified();
 
       addDerivedResourceAttribute(metacard, processResource);
 
       return processResource;
-
     } catch (IOException e) {
       LOGGER.debug(e.getMessage(), e);
     }
@@ -530,37 +782,41 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
     return thumbnailBytes;
   }
 
-  private byte[] renderToJpeg2k(final BufferedImage bufferedImage) throws IOException {
-
-    BufferedImage imageToCompress = bufferedImage;
-
-    if (bufferedImage.getColorModel().getNumComponents() == ARGB_COMPONENT_COUNT) {
-
-      imageToCompress =
-          new BufferedImage(
-              bufferedImage.getWidth(), bufferedImage.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
-
-      Graphics2D g = imageToCompress.createGraphics();
-
-      g.drawImage(bufferedImage, 0, 0, null);
-    }
+  /**
+   * Encode the image to a temporary JPEG 2000 file. The encoder works on {@link #JP2_TILE_SIZE}
+   * tiles and writes straight to the file, so the memory it needs does not grow with the image. The
+   * alpha band of ARGB images is dropped with a band selection instead of an RGB copy of the image.
+   *
+   * @return the path of the temporary file, which the caller must delete
+   */
+  private Path renderToJpeg2k(final BufferedImage bufferedImage) throws IOException {
 
-    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Path originalPath = Files.createTempFile(ORIGINAL, "." + JP2);
 
     J2KImageWriter writer = new J2KImageWriter(new J2KImageWriterSpi());
-    J2KImageWriteParam writeParams = (J2KImageWriteParam) writer.getDefaultWriteParam();
-    writeParams.setLossless(false);
-    writeParams.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-    writeParams.setCompressionType("JPEG2000");
-    writeParams.setCompressionQuality(0.0f);
+    try (ImageOutputStream ios = new FileImageOutputStream(originalPath.toFile())) {
+      J2KImageWriteParam writeParams = (J2KImageWriteParam) writer.getDefaultWriteParam();
+      writeParams.setLossless(false);
+      writeParams.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      writeParams.setCompressionType("JPEG2000");
+      writeParams.setCompressionQuality(0.0f);
+      writeParams.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+      writeParams.setTiling(JP2_TILE_SIZE, JP2_TILE_SIZE, 0, 0);
+
+      if (bufferedImage.getColorModel().getNumComponents() == ARGB_COMPONENT_COUNT) {
+        writeParams.setSourceBands(RGB_BANDS);
+      }
 
-    ImageOutputStream ios = new MemoryCacheImageOutputStream(os);
-    writer.setOutput(ios);
-    writer.write(null, new IIOImage(imageToCompress, null, null), writeParams);
-    writer.dispose();
-    ios.close();
+      writer.setOutput(ios);
+      writer.write(null, new IIOImage(bufferedImage, null, null), writeParams);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(originalPath);
+      throw e;
+    } finally {
+      writer.dispose();
+    }
 
-    return os.toByteArray();
+    return originalPath;
   }
 
   private void addDerivedResourceAttribute(Metacard metacard, ProcessResource processResource) {
@@ -576,26 +832,17 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
     metacard.setAttribute(attribute);
   }
 
-  private int calculateOverviewHeight(BufferedImage image) {
-    final int width = image.getWidth();
-    final int height = image.getHeight();
-
-    if (width >= height) {
-      return (int) Math.round(height * (maxSideLength / width));
-    }
-
-    return Math.min(height, (int) maxSideLength);
+  /** The overview fits within {@link #maxSideLength} and is never larger than the image. */
+  private double calculateOverviewScale(long width, long height) {
+    return Math.min(1.0, maxSideLength / Math.max(width, height));
   }
 
-  private int calculateOverviewWidth(BufferedImage image) {
-    final int width = image.getWidth();
-    final int height = image.getHeight();
-
-    if (width >= height) {
-      return Math.min(width, (int) maxSideLength);
-    }
+  private int calculateOverviewHeight(long width, long height) {
+    return (int) Math.max(1, Math.round(height * calculateOverviewScale(width, height)));
+  }
 
-    return (int) Math.round(width * (maxSideLength / height));
+  private int calculateOverviewWidth(long width, long height) {
+    return (int) Math.max(1, Math.round(width * calculateOverviewScale(width, height)));
   }
 
   private boolean shouldProcess(ProcessResource processResource) {
@@ -606,14 +853,38 @@ public class NitfPostProcessPlugin implements PostProcessPlugin {
           processResource.getMimeType());
       return false;
     }
+    return true;
+  }
 
+  /**
+   * NITFs larger than {@link #maxNitfSizeMB} are not rendered at full resolution. Only their
+   * thumbnail and overview are created, rendered block by block, and the original is not stored.
+   */
+  private boolean isLargerThanMaxNitfSize(ProcessResource processResource) {
     if (processResource.getSize() / BYTES_PER_MEGABYTE > maxNitfSizeMB) {
       LOGGER.debug(
-          "Skipping content item (name={}, size={} MB) because it is larger than the configured maximum NITF file size to process of {} MB",
+          "Rendering content item (name={}, size={} MB) block by block because it is larger than the configured maximum NITF file size to render at full resolution of {} MB",
+          processResource.getName(),
           processResource.getSize() / BYTES_PER_MEGABYTE,
-          processResource.getName());
-      return false;
+          maxNitfSizeMB);
+      return true;
+    }
+    return false;
+  }
+
+  private static class SegmentDerivatives {
+
+    private final int segmentIndex;
+
+    private final BufferedImage overviewImage;
+
+    /** The temporary JPEG 2000 original, or null once it has been handed to a resource. */
+    private Path originalPath;
+
+    SegmentDerivatives(int segmentIndex, BufferedImage overviewImage, Path originalPath) {
+      this.segmentIndex = segmentIndex;
+      this.overviewImage = overviewImage;
+      this.originalPath = originalPath;
     }
-    return true;
   }
 }
@@ -0,0 +1,386 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.plugin.nitf;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the NITF render jobs of the post-processing plugin. Jobs are admitted by the memory they are
+ * estimated to need rather than by a fixed count: a job only starts once its estimate fits in what
+ * is left of the memory budget. A job estimated to need more than the whole budget runs on its own.
+ *
+ * <p>The jobs of one NITF are admitted together: when the queue has room, all of them are queued,
+ * even if that takes the queue past its limit, and otherwise all of them are rejected. A NITF is
+ * never left with only some of its jobs queued, and a NITF with more image segments than the limit
+ * can still be rendered.
+ */
+public final class NitfRenderExecutor implements NitfRenderExecutorMBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NitfRenderExecutor.class);
+
+  private final ThreadPoolExecutor executor;
+
+  private final AtomicInteger queuedJobs = new AtomicInteger();
+
+  private final AtomicInteger activeJobs = new AtomicInteger();
+
+  private final AtomicLong completedJobs = new AtomicLong();
+
+  private final AtomicLong rejectedJobs = new AtomicLong();
+
+  private final Object memoryLock = new Object();
+
+  private long memoryBudgetBytes;
+
+  private long reservedMemoryBytes;
+
+  private volatile int maxQueuedJobs;
+
+  private ObjectName objectName;
+
+  private MBeanServer mBeanServer;
+
+  /**
+   * @param threadCount number of render threads, must be greater than zero
+   * @param memoryBudgetBytes memory that render jobs may reserve at the same time, must be greater
+   *     than zero
+   * @param maxQueuedJobs number of jobs that may wait before new NITFs are rejected, must be
+   *     greater than zero
+   */
+  NitfRenderExecutor(int threadCount, long memoryBudgetBytes, int maxQueuedJobs) {
+    validateThreadCount(threadCount);
+    validateMemoryBudgetBytes(memoryBudgetBytes);
+    validateMaxQueuedJobs(maxQueuedJobs);
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor =
+        new ThreadPoolExecutor(
+            threadCount,
+            threadCount,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "nitf-render-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    this.maxQueuedJobs = maxQueuedJobs;
+  }
+
+  /**
+   * Queue a single render job.
+   *
+   * @param estimatedBytes the memory the job is estimated to need
+   * @return a future that is completed with the result of the job
+   * @throws RejectedExecutionException if the queue is full or the executor has been shut down
+   * @see #submitAll(List)
+   */
+  <T> CompletableFuture<T> submit(long estimatedBytes, Callable<T> job) {
+    return submitAll(Collections.singletonList(new Job<>(estimatedBytes, job))).get(0);
+  }
+
+  /**
+   * Queue the render jobs of one NITF. Either all of the jobs are queued or none of them are.
+   *
+   * <p>Cancelling one of the returned futures before its job starts means the job is skipped. A job
+   * that has already started is not interrupted, and it still completes its future.
+   *
+   * @param jobs the jobs to queue
+   * @return futures that are completed with the results of the jobs, in the same order as the jobs
+   * @throws RejectedExecutionException if the queue is full or the executor has been shut down
+   */
+  <T> List<CompletableFuture<T>> submitAll(List<Job<T>> jobs) {
+    int queued;
+    do {
+      queued = queuedJobs.get();
+      if (queued >= maxQueuedJobs) {
+        rejectedJobs.addAndGet(jobs.size());
+        throw new RejectedExecutionException("The NITF render queue is full");
+      }
+    } while (!queuedJobs.compareAndSet(queued, queued + jobs.size()));
+
+    List<CompletableFuture<T>> futures = new ArrayList<>(jobs.size());
+    for (int i = 0; i < jobs.size(); i++) {
+      RenderJob<T> renderJob = new RenderJob<>(jobs.get(i));
+      try {
+        executor.execute(renderJob);
+      } catch (RejectedExecutionException e) {
+        int unqueued = jobs.size() - i;
+        queuedJobs.addAndGet(-unqueued);
+        rejectedJobs.addAndGet(unqueued);
+        futures.forEach(future -> future.cancel(false));
+        throw e;
+      }
+      futures.add(renderJob.future);
+    }
+    return futures;
+  }
+
+  void setThreadCount(int threadCount) {
+    validateThreadCount(threadCount);
+    if (threadCount > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(threadCount);
+      executor.setCorePoolSize(threadCount);
+    } else {
+      executor.setCorePoolSize(threadCount);
+      executor.setMaximumPoolSize(threadCount);
+    }
+  }
+
+  void setMemoryBudgetBytes(long memoryBudgetBytes) {
+    validateMemoryBudgetBytes(memoryBudgetBytes);
+    synchronized (memoryLock) {
+      this.memoryBudgetBytes = memoryBudgetBytes;
+      memoryLock.notifyAll();
+    }
+  }
+
+  void setMaxQueuedJobs(int maxQueuedJobs) {
+    validateMaxQueuedJobs(maxQueuedJobs);
+    this.maxQueuedJobs = maxQueuedJobs;
+  }
+
+  void registerMBean() {
+    try {
+      objectName = new ObjectName(NitfRenderExecutor.class.getName() + ":service=nitf-render");
+      mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    } catch (MalformedObjectNameException e) {
+      LOGGER.info("Unable to create NITF Render Executor MBean.", e);
+    }
+    if (mBeanServer == null) {
+      return;
+    }
+    try {
+      try {
+        mBeanServer.registerMBean(this, objectName);
+        LOGGER.debug("Registered NITF Render Executor MBean under object name: {}", objectName);
+      } catch (InstanceAlreadyExistsException e) {
+        mBeanServer.unregisterMBean(objectName);
+        mBeanServer.registerMBean(this, objectName);
+        LOGGER.debug("Re-registered NITF Render Executor MBean", e);
+      }
+    } catch (MBeanRegistrationException
+        | InstanceNotFoundException
+        | InstanceAlreadyExistsException
+        | NotCompliantMBeanException e) {
+      LOGGER.info("Could not register MBean [{}].", objectName, e);
+    }
+  }
+
+  /**
+   * Stop the render threads and unregister the MBean. Running jobs are interrupted and queued jobs
+   * are cancelled.
+   */
+  void shutdown() {
+    for (Runnable runnable : executor.shutdownNow()) {
+      if (runnable instanceof RenderJob) {
+        queuedJobs.decrementAndGet();
+        ((RenderJob<?>) runnable).future.cancel(false);
+      }
+    }
+    try {
+      if (objectName != null && mBeanServer != null && mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+    } catch (Exception e) {
+      LOGGER.info("Exception unregistering MBean: ", e);
+    }
+  }
+
+  boolean isShutdown() {
+    return executor.isShutdown();
+  }
+
+  @Override
+  public int getThreadCount() {
+    return executor.getMaximumPoolSize();
+  }
+
+  @Override
+  public long getMemoryBudgetBytes() {
+    synchronized (memoryLock) {
+      return memoryBudgetBytes;
+    }
+  }
+
+  @Override
+  public long getReservedMemoryBytes() {
+    synchronized (memoryLock) {
+      return reservedMemoryBytes;
+    }
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queuedJobs.get();
+  }
+
+  @Override
+  public int getActiveJobCount() {
+    return activeJobs.get();
+  }
+
+  @Override
+  public long getCompletedJobCount() {
+    return completedJobs.get();
+  }
+
+  @Override
+  public long getRejectedJobCount() {
+    return rejectedJobs.get();
+  }
+
+  private long reserveMemory(long estimatedBytes) throws InterruptedException {
+    synchronized (memoryLock) {
+      while (reservedMemoryBytes > 0
+          && reservedMemoryBytes + admittedBytes(estimatedBytes) > memoryBudgetBytes) {
+        memoryLock.wait();
+      }
+      long reservedBytes = admittedBytes(estimatedBytes);
+      reservedMemoryBytes += reservedBytes;
+      return reservedBytes;
+    }
+  }
+
+  /** A job never reserves more than the whole budget, so that it can always start eventually. */
+  private long admittedBytes(long estimatedBytes) {
+    return Math.min(Math.max(estimatedBytes, 0), memoryBudgetBytes);
+  }
+
+  private void releaseMemory(long reservedBytes) {
+    synchronized (memoryLock) {
+      reservedMemoryBytes -= reservedBytes;
+      memoryLock.notifyAll();
+    }
+  }
+
+  private static void validateThreadCount(int threadCount) {
+    isTrue(threadCount > 0, "threadCount must be greater than zero");
+  }
+
+  private static void validateMemoryBudgetBytes(long memoryBudgetBytes) {
+    isTrue(memoryBudgetBytes > 0, "memoryBudgetBytes must be greater than zero");
+  }
+
+  private static void validateMaxQueuedJobs(int maxQueuedJobs) {
+    isTrue(maxQueuedJobs > 0, "maxQueuedJobs must be greater than zero");
+  }
+
+  /** A render job and the memory it is estimated to need. */
+  static final class Job<T> {
+
+    private final long estimatedBytes;
+
+    private final Callable<T> callable;
+
+    Job(long estimatedBytes, Callable<T> callable) {
+      this.estimatedBytes = estimatedBytes;
+      this.callable = callable;
+    }
+  }
+
+  /** A future that can only be cancelled until its job starts. */
+  private static final class RenderFuture<T> extends CompletableFuture<T> {
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /** @return false if the future was cancelled, in which case the job must not run */
+    private boolean start() {
+      return started.compareAndSet(false, true);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return start() && super.cancel(mayInterruptIfRunning);
+    }
+  }
+
+  private class RenderJob<T> implements Runnable {
+
+    private final long estimatedBytes;
+
+    private final Callable<T> job;
+
+    private final RenderFuture<T> future = new RenderFuture<>();
+
+    RenderJob(Job<T> job) {
+      this.estimatedBytes = job.estimatedBytes;
+      this.job = job.callable;
+    }
+
+    @Override
+    public void run() {
+      if (!future.start()) {
+        queuedJobs.decrementAndGet();
+        return;
+      }
+
+      long reservedBytes;
+      try {
+        reservedBytes = reserveMemory(estimatedBytes);
+      } catch (InterruptedException e) {
+        queuedJobs.decrementAndGet();
+        future.completeExceptionally(e);
+        Thread.currentThread().interrupt();
+        return;
+      }
+
+      queuedJobs.decrementAndGet();
+      activeJobs.incrementAndGet();
+      try {
+        T result;
+        try {
+          result = job.call();
+        } finally {
+          releaseMemory(reservedBytes);
+          activeJobs.decrementAndGet();
+          completedJobs.incrementAndGet();
+        }
+        future.complete(result);
+      } catch (Exception e) {
+        future.completeExceptionally(e);
+      } finally {
+        // does nothing unless the job failed with an error
+        future.completeExceptionally(
+            new IllegalStateException("The NITF render job did not finish"));
+      }
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.plugin.nitf;
+
+/** Reports the state of the NITF post-processing render jobs. */
+public interface NitfRenderExecutorMBean {
+
+  /** @return the number of render threads */
+  int getThreadCount();
+
+  /** @return the memory that render jobs may reserve at the same time, in bytes */
+  long getMemoryBudgetBytes();
+
+  /** @return the memory reserved by the render jobs that are running, in bytes */
+  long getReservedMemoryBytes();
+
+  /**
+   * @return the number of render jobs that are waiting, either for a thread or for their memory to
+   *     be available
+   */
+  int getQueueDepth();
+
+  /** @return the number of render jobs that are running */
+  int getActiveJobCount();
+
+  /** @return the number of render jobs that have finished, successfully or not */
+  long getCompletedJobCount();
+
+  /** @return the number of render jobs that were rejected because the queue was full */
+  long getRejectedJobCount();
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.plugin.nitf
+
+import spock.lang.Specification
+
+import java.awt.image.BufferedImage
+
+class ImageDecimatorSpec extends Specification {
+
+    def "averaging the source pixels of each target pixel"() {
+        setup:
+            BufferedImage image = new BufferedImage(4, 2, BufferedImage.TYPE_INT_RGB)
+            image.setRGB(0, 0, 0xFF0000)
+            image.setRGB(1, 0, 0x00FF00)
+        when:
+            BufferedImage result = ImageDecimator.decimate(image, 2, 1, 0)
+        then:
+            result.width == 2
+            result.height == 1
+            result.type == BufferedImage.TYPE_3BYTE_BGR
+            (result.getRGB(0, 0) & 0xFFFFFF) == 0x404000
+            (result.getRGB(1, 0) & 0xFFFFFF) == 0x000000
+    }
+
+    def "scaling high bit depth samples by their actual bit depth"() {
+        setup:
+            BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_USHORT_GRAY)
+            (0..1).each { x -> (0..1).each { y -> image.raster.setSample(x, y, 0, 2047) } }
+        when: "the 16-bit samples only use 11 bits"
+            BufferedImage result = ImageDecimator.decimate(image, 1, 1, 11)
+        then: "the brightest value is white"
+            (result.getRGB(0, 0) & 0xFFFFFF) == 0xFFFFFF
+    }
+
+    def "never enlarging the source image"() {
+        when:
+            BufferedImage result = ImageDecimator.decimate(new BufferedImage(3, 5, BufferedImage.TYPE_BYTE_GRAY), 1024, 1024, 0)
+        then:
+            result.width == 3
+            result.height == 5
+    }
+}
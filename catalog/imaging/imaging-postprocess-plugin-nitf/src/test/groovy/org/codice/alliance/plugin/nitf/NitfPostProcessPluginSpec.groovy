@@ -28,8 +28,10 @@ import org.codice.imaging.nitf.render.NitfRenderer
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.awt.Graphics2D
 import java.awt.image.BufferedImage
-import java.util.concurrent.Semaphore
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 import java.util.function.Supplier
 
 class NitfPostProcessPluginSpec extends Specification {
@@ -67,18 +69,21 @@ class NitfPostProcessPluginSpec extends Specification {
 
     private ProcessUpdateItem processUpdateItem1
 
-    private Semaphore lock;
+    private NitfRenderExecutor renderExecutor
+
+    private NitfRenderer nitfRenderer
 
     def setup() {
-        lock = Mock(Semaphore)
+        renderExecutor = new NitfRenderExecutor(2, 1024L * 1024L * 1024L, 10)
 
-        nitfPostProcessPlugin = new NitfPostProcessPlugin(lock, {
-            return Mock(NitfRenderer) {
-                final BufferedImage bufferedImage = Mock(BufferedImage)
+        final BufferedImage bufferedImage = new BufferedImage(64, 32, BufferedImage.TYPE_3BYTE_BGR)
+        nitfRenderer = Mock(NitfRenderer) {
+            render(_ as ImageSegment) >> bufferedImage
+            renderToClosestDataModel(_ as ImageSegment) >> bufferedImage
+        }
 
-                render() >> bufferedImage
-                renderToClosestDataModel() >> bufferedImage
-            }
+        nitfPostProcessPlugin = new NitfPostProcessPlugin(renderExecutor, {
+            return nitfRenderer
         }, {
             return new NitfParserInputFlowImpl()
         })
@@ -160,7 +165,7 @@ class NitfPostProcessPluginSpec extends Specification {
             NitfParserParsingFlow nitfParserParsingFlow = Mock(NitfParserParsingFlowImpl)
             nitfParserParsingFlow.allData() >> { new NitfFormatException() }
             NitfParserInputFlow nitfParserInputFlow = Mock(NitfParserInputFlow)
-            nitfParserInputFlow.inputStream(_ as InputStream) >> nitfParserParsingFlow
+            nitfParserInputFlow.file(_ as File) >> nitfParserParsingFlow
             NitfRenderer nitfRenderer = Mock(NitfRenderer)
             NitfPostProcessPlugin plugin = new NitfPostProcessPlugin({return nitfRenderer}, {nitfParserInputFlow})
         when: "the nitf renderer encounters a nitf format exception"
@@ -200,8 +205,7 @@ class NitfPostProcessPluginSpec extends Specification {
             1 * processCreateItem.markMetacardAsModified()
             result == createProcessRequest
             result.processItems.size() == 3
-        1 * lock.acquire()
-        1 * lock.release()
+            renderExecutor.completedJobCount == 1
     }
 
     def "handling basic update requests"() {
@@ -213,8 +217,143 @@ class NitfPostProcessPluginSpec extends Specification {
             1 * processUpdateItem.markMetacardAsModified()
             result == updateProcessRequest
             result.processItems.size() == 3
-        1 * lock.acquire()
-        1 * lock.release()
+            renderExecutor.completedJobCount == 1
+    }
+
+    def "rendering the image segment only once when storing the original"() {
+        when: "a valid process create request is submitted"
+            nitfPostProcessPlugin.processCreate(createProcessRequest)
+        then: "the thumbnail and overview are reduced from the original rendering"
+            1 * nitfRenderer.renderToClosestDataModel(_ as ImageSegment) >> new BufferedImage(64, 32, BufferedImage.TYPE_3BYTE_BGR)
+            0 * nitfRenderer.render(_ as ImageSegment)
+    }
+
+    def "rendering the image segment only once when not storing the original"() {
+        setup:
+            nitfPostProcessPlugin.setStoreOriginalImage(false)
+        when: "a valid process create request is submitted"
+            nitfPostProcessPlugin.processCreate(createProcessRequest)
+        then: "the segment is only rendered for display"
+            1 * nitfRenderer.render(_ as ImageSegment) >> new BufferedImage(64, 32, BufferedImage.TYPE_3BYTE_BGR)
+            0 * nitfRenderer.renderToClosestDataModel(_ as ImageSegment)
+    }
+
+    def "storing the original as a temporary JPEG 2000 file"() {
+        when: "a valid process create request is submitted"
+            def result = nitfPostProcessPlugin.processCreate(createProcessRequest)
+            ProcessResource original = result.processItems
+                    .collect { it.processResource }
+                    .find { it?.qualifier == "original" }
+        then: "the whole file can be read from the original resource"
+            original.mimeType == "image/jp2"
+            original.size > 0
+            original.inputStream.withCloseable { it.bytes.length } == original.size
+    }
+
+    def "parsing the resource in place from a temporary file"() {
+        setup:
+            List<File> parsedFiles = []
+            NitfParserInputFlow nitfParserInputFlow = Mock(NitfParserInputFlow)
+            NitfPostProcessPlugin plugin = new NitfPostProcessPlugin(renderExecutor, {
+                return nitfRenderer
+            }, {
+                return nitfParserInputFlow
+            })
+        when: "a valid process create request is submitted"
+            plugin.processCreate(createProcessRequest)
+        then: "the parser reads a copy of the resource from a file once to find and render the segments"
+            1 * nitfParserInputFlow.file(_ as File) >> { File file ->
+                parsedFiles << file
+                return new NitfParserInputFlowImpl().file(file)
+            }
+            0 * nitfParserInputFlow.inputStream(_)
+            1 * metacard.setAttribute({it.name == Core.THUMBNAIL; it.value != null})
+        and: "the copy is deleted once processing is done"
+            parsedFiles.unique().size() == 1
+            !parsedFiles[0].exists()
+    }
+
+    @Unroll
+    def "qualifying the derivatives of image segment #segmentIndex"(int segmentIndex, String expectedQualifier) {
+        expect: "the first segment keeps the plain qualifier and later segments are numbered"
+            NitfPostProcessPlugin.buildSegmentQualifier("overview", segmentIndex) == expectedQualifier
+
+        where:
+            segmentIndex || expectedQualifier
+            0            || "overview"
+            1            || "overview-2"
+            998          || "overview-999"
+    }
+
+    def "destroying the plugin"() {
+        when: "the plugin is destroyed"
+            nitfPostProcessPlugin.destroy()
+        then: "segments are no longer rendered"
+            renderExecutor.isShutdown()
+    }
+
+    def "rendering segments that do not fit in the render memory budget block by block"() {
+        setup:
+            NitfPostProcessPlugin plugin = new NitfPostProcessPlugin(new NitfRenderExecutor(2, 1, 10), {
+                return nitfRenderer
+            }, {
+                return new NitfParserInputFlowImpl()
+            })
+        when: "a valid process create request is submitted"
+            def result = plugin.processCreate(createProcessRequest)
+        then: "the thumbnail and overview are rendered block by block and the original is not stored"
+            1 * nitfRenderer.render(_ as ImageSegment, _ as Graphics2D)
+            0 * nitfRenderer.renderToClosestDataModel(_ as ImageSegment)
+            1 * metacard.setAttribute({it.name == Core.THUMBNAIL; it.value != null})
+            0 * metacard.setAttribute({it.name == Core.DERIVED_RESOURCE_URI; it.value.toString().contains("original")})
+            result.processItems.size() == 2
+    }
+
+    def "rejecting segments when the render queue is full"() {
+        setup:
+            NitfRenderExecutor fullExecutor = new NitfRenderExecutor(1, 1024L * 1024L, 1)
+            CountDownLatch started = new CountDownLatch(1)
+            CountDownLatch finish = new CountDownLatch(1)
+            fullExecutor.submit(10, { started.countDown(); finish.await() })
+            started.await(5, TimeUnit.SECONDS)
+            fullExecutor.submit(10, { "queued" })
+            NitfPostProcessPlugin plugin = new NitfPostProcessPlugin(fullExecutor, {
+                return nitfRenderer
+            }, {
+                return new NitfParserInputFlowImpl()
+            })
+        when: "a valid process create request is submitted"
+            def result = plugin.processCreate(createProcessRequest)
+        then: "nothing is rendered and the rejection is counted"
+            0 * metacard.setAttribute(_)
+            result.processItems.size() == 1
+            fullExecutor.rejectedJobCount == 1
+        cleanup:
+            finish.countDown()
+            fullExecutor.shutdown()
+    }
+
+    def "estimating the memory needed to render a segment"() {
+        setup:
+            ImageSegment segment = Mock(ImageSegment) {
+                getNumberOfRows() >> 2048L
+                getNumberOfColumns() >> 4096L
+                getNumBands() >> bands
+                getNumberOfBitsPerPixelPerBand() >> bitsPerBand
+                getNumberOfPixelsPerBlockHorizontal() >> 512L
+                getNumberOfPixelsPerBlockVertical() >> 512L
+            }
+        expect: "full resolution rendering needs the whole raster"
+            NitfPostProcessPlugin.estimateRenderBytes(segment) == 2048L * 4096L * bytesPerPixel
+        and: "block rendering needs the overview and one block"
+            nitfPostProcessPlugin.estimateBlockRenderBytes(segment) == 1024L * 512L * 3L + 512L * 512L * 4L
+
+        where:
+            bands | bitsPerBand || bytesPerPixel
+            1     | 8           || 4
+            3     | 8           || 4
+            1     | 11          || 4
+            4     | 16          || 8
     }
 
     def "handling delete requests"() {
@@ -236,19 +375,31 @@ class NitfPostProcessPluginSpec extends Specification {
     def "handling processing large files in create requests"() {
         setup:
             nitfPostProcessPlugin.setMaxNitfSizeMB(generateSizeLimit())
-        when: "a request contains a resource that is too large to process"
-            nitfPostProcessPlugin.processCreate(createProcessRequest)
-        then: "nothing should be added to the metacard"
-            0 * metacard.setAttribute(_)
+        when: "a request contains a resource that is too large to render at full resolution"
+            def result = nitfPostProcessPlugin.processCreate(createProcessRequest)
+        then: "the thumbnail and overview are rendered block by block and the original is not stored"
+            1 * nitfRenderer.render(_ as ImageSegment, _ as Graphics2D)
+            0 * nitfRenderer.render(_ as ImageSegment)
+            0 * nitfRenderer.renderToClosestDataModel(_ as ImageSegment)
+            1 * metacard.setAttribute({it.name == Core.THUMBNAIL; it.value != null})
+            1 * metacard.setAttribute({it.name == Core.DERIVED_RESOURCE_URI; it.value.toString().contains("overview")})
+            0 * metacard.setAttribute({it.name == Core.DERIVED_RESOURCE_URI; it.value.toString().contains("original")})
+            result.processItems.size() == 2
     }
 
     def "handling processing large files in update requests"() {
         setup:
             nitfPostProcessPlugin.setMaxNitfSizeMB(generateSizeLimit())
-        when: "a request contains a resource that is too large to process"
-            nitfPostProcessPlugin.processUpdate(updateProcessRequest)
-        then:
-            0 * metacard.setAttribute(_)
+        when: "a request contains a resource that is too large to render at full resolution"
+            def result = nitfPostProcessPlugin.processUpdate(updateProcessRequest)
+        then: "the thumbnail and overview are rendered block by block and the original is not stored"
+            1 * nitfRenderer.render(_ as ImageSegment, _ as Graphics2D)
+            0 * nitfRenderer.render(_ as ImageSegment)
+            0 * nitfRenderer.renderToClosestDataModel(_ as ImageSegment)
+            1 * metacard.setAttribute({it.name == Core.THUMBNAIL; it.value != null})
+            1 * metacard.setAttribute({it.name == Core.DERIVED_RESOURCE_URI; it.value.toString().contains("overview")})
+            0 * metacard.setAttribute({it.name == Core.DERIVED_RESOURCE_URI; it.value.toString().contains("original")})
+            result.processItems.size() == 2
     }
 
     def "handling create requests with overview disabled"() {
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) Codice Foundation
+ * <p/>
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.plugin.nitf
+
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+class NitfRenderExecutorSpec extends Specification {
+
+    private NitfRenderExecutor renderExecutor
+
+    def cleanup() {
+        renderExecutor?.shutdown()
+    }
+
+    def "running jobs that fit in the memory budget at the same time"() {
+        setup:
+            renderExecutor = new NitfRenderExecutor(2, 100, 10)
+            CountDownLatch started = new CountDownLatch(2)
+            CountDownLatch finish = new CountDownLatch(1)
+        when: "two jobs that fit in the budget together are submitted"
+            def futures = (1..2).collect { n ->
+                renderExecutor.submit(50, { started.countDown(); finish.await(); n })
+            }
+        then: "both jobs start"
+            started.await(5, TimeUnit.SECONDS)
+            renderExecutor.activeJobCount == 2
+            renderExecutor.reservedMemoryBytes == 100
+        when:
+            finish.countDown()
+        then:
+            futures*.get() == [1, 2]
+            renderExecutor.completedJobCount == 2
+            renderExecutor.reservedMemoryBytes == 0
+    }
+
+    def "running jobs that do not fit in the memory budget one at a time"() {
+        setup:
+            renderExecutor = new NitfRenderExecutor(4, 100, 10)
+            AtomicLong maxReserved = new AtomicLong()
+        when: "jobs that each need most of the budget are submitted"
+            def futures = (1..4).collect {
+                renderExecutor.submit(60, {
+                    maxReserved.accumulateAndGet(renderExecutor.reservedMemoryBytes, { a, b -> Math.max(a, b) })
+                    Thread.sleep(10)
+                    true
+                })
+            }
+            futures*.get()
+        then: "no more memory than the budget is ever reserved"
+            maxReserved.get() == 60
+            renderExecutor.completedJobCount == 4
+    }
+
+    def "running a job larger than the whole memory budget"() {
+        setup:
+            renderExecutor = new NitfRenderExecutor(1, 100, 10)
+        when:
+            CompletableFuture<String> future = renderExecutor.submit(1000, { "rendered" })
+        then: "the job runs on its own"
+            future.get(5, TimeUnit.SECONDS) == "rendered"
+    }
+
+    def "rejecting jobs when the queue is full"() {
+        setup:
+            renderExecutor = new NitfRenderExecutor(1, 100, 1)
+            CountDownLatch started = new CountDownLatch(1)
+            CountDownLatch finish = new CountDownLatch(1)
+            renderExecutor.submit(10, { started.countDown(); finish.await() })
+            started.await(5, TimeUnit.SECONDS)
+            renderExecutor.submit(10, { "queued" })
+        when: "a job is submitted while the queue is full"
+            renderExecutor.submit(10, { "rejected" })
+        then:
+            thrown(RejectedExecutionException)
+            renderExecutor.queueDepth == 1
+            renderExecutor.rejectedJobCount == 1
+        cleanup:
+            finish.countDown()
+    }
+
+    def "admitting all of a NITF's jobs when there are more jobs than the queue limit"() {
+        setup:
+            renderExecutor = new NitfRenderExecutor(2, 100, 2)
+            def jobs = (1..5).collect { n -> new NitfRenderExecutor.Job<Integer>(10, { n }) }
+        when: "the queue has room for the NITF"
+            def futures = renderExecutor.submitAll(jobs)
+        then: "every job runs"
+            futures*.get(5, TimeUnit.SECONDS) == [1, 2, 3, 4, 5]
+            renderExecutor.rejectedJobCount == 0
+    }
+
+    def "rejecting all of a NITF's jobs when the queue is full"() {
+        setup:
+            renderExecutor = new NitfRenderExecutor(1, 100, 1)
+            CountDownLatch started = new CountDownLatch(1)
+            CountDownLatch finish = new CountDownLatch(1)
+            renderExecutor.submit(10, { started.countDown(); finish.await() })
+            started.await(5, TimeUnit.SECONDS)
+            renderExecutor.submit(10, { "queued" })
+            def jobs = (1..3).collect { n -> new NitfRenderExecutor.Job<Integer>(10, { n }) }
+        when: "a NITF is submitted while the queue is full"
+            renderExecutor.submitAll(jobs)
+        then: "none of its jobs are queued"
+            thrown(RejectedExecutionException)
+            renderExecutor.queueDepth == 1
+            renderExecutor.rejectedJobCount == 3
+        cleanup:
+            finish.countDown()
+    }
+
+    def "skipping a job that is cancelled before it starts"() {
+        setup:
+            renderExecutor = new NitfRenderExecutor(1, 100, 10)
+            CountDownLatch started = new CountDownLatch(1)
+            CountDownLatch finish = new CountDownLatch(1)
+            CompletableFuture<Object> running = renderExecutor.submit(10, {
+                started.countDown(); finish.await(); "running"
+            })
+            started.await(5, TimeUnit.SECONDS)
+            boolean ran = false
+            CompletableFuture<Object> queued = renderExecutor.submit(10, { ran = true })
+        when: "both jobs are cancelled"
+            boolean runningCancelled = running.cancel(false)
+            boolean queuedCancelled = queued.cancel(false)
+            finish.countDown()
+        then: "only the job that had not started is cancelled"
+            !runningCancelled
+            queuedCancelled
+            running.get(5, TimeUnit.SECONDS) == "running"
+        when: "a later job runs on the same thread"
+            renderExecutor.submit(10, { "later" }).get(5, TimeUnit.SECONDS)
+        then: "the cancelled job never runs"
+            !ran
+            renderExecutor.queueDepth == 0
+    }
+
+    def "failing the future of a failed job"() {
+        setup:
+            renderExecutor = new NitfRenderExecutor(1, 100, 10)
+        when:
+            renderExecutor.submit(10, { throw new IOException("unreadable") }).get()
+        then:
+            ExecutionException e = thrown()
+            e.cause instanceof IOException
+            renderExecutor.reservedMemoryBytes == 0
+    }
+
+    def "cancelling queued jobs on shutdown"() {
+        setup:
+            renderExecutor = new NitfRenderExecutor(1, 100, 10)
+            CountDownLatch started = new CountDownLatch(1)
+            renderExecutor.submit(10, { started.countDown(); Thread.sleep(10000) })
+            started.await(5, TimeUnit.SECONDS)
+            CompletableFuture<String> queued = renderExecutor.submit(10, { "queued" })
+        when:
+            renderExecutor.shutdown()
+        then:
+            queued.isCancelled()
+            renderExecutor.isShutdown()
+    }
+
+    def "changing the configuration"() {
+        setup:
+            renderExecutor = new NitfRenderExecutor(1, 100, 10)
+        when:
+            renderExecutor.setThreadCount(4)
+            renderExecutor.setMemoryBudgetBytes(200)
+        then:
+            renderExecutor.threadCount == 4
+            renderExecutor.memoryBudgetBytes == 200
+        when: "the configuration is invalid"
+            renderExecutor.setThreadCount(0)
+        then:
+            thrown(IllegalArgumentException)
+        when: "the queue has no room for a job"
+            renderExecutor.setMaxQueuedJobs(0)
+        then:
+            thrown(IllegalArgumentException)
+    }
+}
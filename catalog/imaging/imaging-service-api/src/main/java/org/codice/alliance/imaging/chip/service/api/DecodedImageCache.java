@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.imaging.chip.service.api;
+
+import ddf.catalog.data.Metacard;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * A DecodedImageCache keeps the decoded images of the derived resources of metacards, such as the
+ * overview and the original, so that repeated chip and overlay requests on one product do not
+ * decode the same image again. Images are keyed by the source and id of the metacard and the
+ * qualifier of the derived resource, and an image is discarded when its metacard is updated.
+ *
+ * <p>Cached images are shared between requests and must not be modified.
+ */
+public interface DecodedImageCache {
+
+  /**
+   * @param metacard the metacard that the image belongs to.
+   * @param qualifier the qualifier of the derived resource, for example "overview".
+   * @param decoder decodes the image when it is not in the cache.
+   * @return the decoded image, or null if the decoder returned null.
+   * @throws IOException when the decoder fails.
+   */
+  BufferedImage getImage(Metacard metacard, String qualifier, ImageDecoder decoder)
+      throws IOException;
+
+  /**
+   * Discard the images of a metacard.
+   *
+   * @param metacardId the id of the metacard.
+   */
+  void invalidate(String metacardId);
+
+  /** Decodes an image that is not in the cache. */
+  @FunctionalInterface
+  interface ImageDecoder {
+
+    /**
+     * @return the decoded image, or null if the image could not be decoded.
+     * @throws IOException when the image can't be read.
+     */
+    BufferedImage decode() throws IOException;
+  }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.imaging.transformer.api;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.transform.CatalogTransformerException;
+import ddf.catalog.transform.InputTransformer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * An {@link InputTransformer} that can also transform several inputs in one call, so that bulk
+ * loads can transform them concurrently.
+ */
+public interface BatchInputTransformer extends InputTransformer {
+
+  /**
+   * Transforms several inputs. The input streams are not closed.
+   *
+   * @param inputStreams the inputs to transform
+   * @return the metacards, in the order of the input streams
+   * @throws IOException if one of the inputs can't be read
+   * @throws CatalogTransformerException if one of the inputs can't be transformed
+   */
+  List<Metacard> transformAll(List<InputStream> inputStreams)
+      throws IOException, CatalogTransformerException;
+}
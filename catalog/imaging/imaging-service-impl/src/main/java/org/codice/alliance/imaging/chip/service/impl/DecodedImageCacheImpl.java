@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.imaging.chip.service.impl;
+
+import ddf.catalog.data.Attribute;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.types.Core;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.codice.alliance.imaging.chip.service.api.DecodedImageCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An implementation of DecodedImageCache that keeps the least recently used images that fit in a
+ * fixed number of bytes. The size of an image is the size of its raster data. An image is stored
+ * with the modified date of its metacard and is discarded when it is requested for a metacard with
+ * a different modified date, so that updates made on other sources are noticed as well.
+ */
+public class DecodedImageCacheImpl implements DecodedImageCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DecodedImageCacheImpl.class);
+
+  private static final long DEFAULT_MAX_SIZE_BYTES = Runtime.getRuntime().maxMemory() / 8;
+
+  private final Map<CacheKey, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final long maxSizeBytes;
+
+  private long sizeBytes;
+
+  public DecodedImageCacheImpl() {
+    this(DEFAULT_MAX_SIZE_BYTES);
+  }
+
+  public DecodedImageCacheImpl(long maxSizeBytes) {
+    if (maxSizeBytes < 0) {
+      throw new IllegalArgumentException("argument 'maxSizeBytes' may not be less than 0.");
+    }
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public BufferedImage getImage(Metacard metacard, String qualifier, ImageDecoder decoder)
+      throws IOException {
+    validateNotNull(metacard, "metacard");
+    validateNotNull(decoder, "decoder");
+
+    if (metacard.getId() == null) {
+      return decoder.decode();
+    }
+
+    CacheKey key = new CacheKey(metacard.getSourceId(), metacard.getId(), qualifier);
+    Serializable version = getVersion(metacard);
+
+    synchronized (this) {
+      CacheEntry entry = entries.get(key);
+      if (entry != null) {
+        if (Objects.equals(entry.version, version)) {
+          LOGGER.trace("Using the cached {} image of metacard {}.", qualifier, key.metacardId);
+          return entry.image;
+        }
+        remove(key);
+      }
+    }
+
+    // decoding is done outside of the lock so that different images can be decoded at once
+    BufferedImage image = decoder.decode();
+    if (image != null) {
+      put(key, new CacheEntry(image, version));
+    }
+    return image;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void invalidate(String metacardId) {
+    Iterator<Map.Entry<CacheKey, CacheEntry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<CacheKey, CacheEntry> entry = iterator.next();
+      if (Objects.equals(entry.getKey().metacardId, metacardId)) {
+        sizeBytes -= entry.getValue().sizeBytes;
+        iterator.remove();
+      }
+    }
+  }
+
+  synchronized long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  private synchronized void put(CacheKey key, CacheEntry entry) {
+    if (entry.sizeBytes > maxSizeBytes) {
+      LOGGER.debug(
+          "The {} image of metacard {} is too large to cache ({} bytes).",
+          key.qualifier,
+          key.metacardId,
+          entry.sizeBytes);
+      return;
+    }
+
+    remove(key);
+    Iterator<CacheEntry> eldest = entries.values().iterator();
+    while (sizeBytes + entry.sizeBytes > maxSizeBytes && eldest.hasNext()) {
+      sizeBytes -= eldest.next().sizeBytes;
+      eldest.remove();
+    }
+    entries.put(key, entry);
+    sizeBytes += entry.sizeBytes;
+  }
+
+  private void remove(CacheKey key) {
+    CacheEntry entry = entries.remove(key);
+    if (entry != null) {
+      sizeBytes -= entry.sizeBytes;
+    }
+  }
+
+  private static Serializable getVersion(Metacard metacard) {
+    Attribute modified = metacard.getAttribute(Core.METACARD_MODIFIED);
+    if (modified != null && modified.getValue() != null) {
+      return modified.getValue();
+    }
+    return metacard.getModifiedDate();
+  }
+
+  static long sizeOf(BufferedImage image) {
+    DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+    return (long) dataBuffer.getSize()
+        * dataBuffer.getNumBanks()
+        * DataBuffer.getDataTypeSize(dataBuffer.getDataType())
+        / Byte.SIZE;
+  }
+
+  private void validateNotNull(Object value, String argumentName) {
+    if (value == null) {
+      throw new IllegalArgumentException(
+          String.format("argument '%s' may not be null.", argumentName));
+    }
+  }
+
+  private static class CacheKey {
+
+    private final String sourceId;
+
+    private final String metacardId;
+
+    private final String qualifier;
+
+    CacheKey(String sourceId, String metacardId, String qualifier) {
+      this.sourceId = sourceId;
+      this.metacardId = metacardId;
+      this.qualifier = qualifier;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey cacheKey = (CacheKey) o;
+      return Objects.equals(sourceId, cacheKey.sourceId)
+          && Objects.equals(metacardId, cacheKey.metacardId)
+          && Objects.equals(qualifier, cacheKey.qualifier);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(sourceId, metacardId, qualifier);
+    }
+  }
+
+  private static class CacheEntry {
+
+    private final BufferedImage image;
+
+    private final Serializable version;
+
+    private final long sizeBytes;
+
+    CacheEntry(BufferedImage image, Serializable version) {
+      this.image = image;
+      this.version = version;
+      this.sizeBytes = sizeOf(image);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.imaging.chip.service.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+import ddf.catalog.data.impl.MetacardImpl;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.codice.alliance.imaging.chip.service.api.DecodedImageCache;
+import org.junit.Before;
+import org.junit.Test;
+
+/** DecodedImageCacheImpl tests */
+public class DecodedImageCacheImplTest {
+
+  private static final long IMAGE_SIZE_BYTES = 10 * 10 * 3;
+
+  private DecodedImageCacheImpl decodedImageCache;
+
+  private AtomicInteger decodeCount;
+
+  private DecodedImageCache.ImageDecoder decoder;
+
+  @Before
+  public void setUp() {
+    decodedImageCache = new DecodedImageCacheImpl(IMAGE_SIZE_BYTES * 2);
+    decodeCount = new AtomicInteger();
+    decoder =
+        () -> {
+          decodeCount.incrementAndGet();
+          return new BufferedImage(10, 10, BufferedImage.TYPE_3BYTE_BGR);
+        };
+  }
+
+  @Test
+  public void testCachedImage() throws IOException {
+    MetacardImpl metacard = createMetacard("abc123");
+
+    BufferedImage image = decodedImageCache.getImage(metacard, "overview", decoder);
+
+    assertThat(decodedImageCache.getImage(metacard, "overview", decoder), sameInstance(image));
+    assertThat(decodeCount.get(), is(1));
+    assertThat(decodedImageCache.getSizeBytes(), is(IMAGE_SIZE_BYTES));
+  }
+
+  @Test
+  public void testQualifiersAreCachedSeparately() throws IOException {
+    MetacardImpl metacard = createMetacard("abc123");
+
+    BufferedImage overview = decodedImageCache.getImage(metacard, "overview", decoder);
+    BufferedImage original = decodedImageCache.getImage(metacard, "original", decoder);
+
+    assertThat(original, not(sameInstance(overview)));
+    assertThat(decodeCount.get(), is(2));
+  }
+
+  @Test
+  public void testUpdatedMetacard() throws IOException {
+    MetacardImpl metacard = createMetacard("abc123");
+    BufferedImage image = decodedImageCache.getImage(metacard, "overview", decoder);
+
+    metacard.setModifiedDate(new Date(1));
+
+    assertThat(
+        decodedImageCache.getImage(metacard, "overview", decoder), not(sameInstance(image)));
+    assertThat(decodeCount.get(), is(2));
+    assertThat(decodedImageCache.getSizeBytes(), is(IMAGE_SIZE_BYTES));
+  }
+
+  @Test
+  public void testInvalidate() throws IOException {
+    MetacardImpl metacard = createMetacard("abc123");
+    decodedImageCache.getImage(metacard, "overview", decoder);
+    decodedImageCache.getImage(metacard, "original", decoder);
+
+    decodedImageCache.invalidate("abc123");
+
+    assertThat(decodedImageCache.getSizeBytes(), is(0L));
+    decodedImageCache.getImage(metacard, "overview", decoder);
+    assertThat(decodeCount.get(), is(3));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedImageIsEvicted() throws IOException {
+    MetacardImpl first = createMetacard("first");
+    MetacardImpl second = createMetacard("second");
+    MetacardImpl third = createMetacard("third");
+
+    decodedImageCache.getImage(first, "overview", decoder);
+    decodedImageCache.getImage(second, "overview", decoder);
+    decodedImageCache.getImage(first, "overview", decoder);
+    decodedImageCache.getImage(third, "overview", decoder);
+
+    assertThat(decodedImageCache.getSizeBytes(), is(IMAGE_SIZE_BYTES * 2));
+    decodedImageCache.getImage(first, "overview", decoder);
+    assertThat(decodeCount.get(), is(3));
+    decodedImageCache.getImage(second, "overview", decoder);
+    assertThat(decodeCount.get(), is(4));
+  }
+
+  @Test
+  public void testImageLargerThanCache() throws IOException {
+    decodedImageCache = new DecodedImageCacheImpl(IMAGE_SIZE_BYTES - 1);
+    MetacardImpl metacard = createMetacard("abc123");
+
+    decodedImageCache.getImage(metacard, "overview", decoder);
+    decodedImageCache.getImage(metacard, "overview", decoder);
+
+    assertThat(decodeCount.get(), is(2));
+    assertThat(decodedImageCache.getSizeBytes(), is(0L));
+  }
+
+  @Test
+  public void testMetacardWithoutId() throws IOException {
+    MetacardImpl metacard = new MetacardImpl();
+
+    decodedImageCache.getImage(metacard, "overview", decoder);
+    decodedImageCache.getImage(metacard, "overview", decoder);
+
+    assertThat(decodeCount.get(), is(2));
+  }
+
+  @Test
+  public void testNullImageIsNotCached() throws IOException {
+    MetacardImpl metacard = createMetacard("abc123");
+
+    decodedImageCache.getImage(metacard, "overview", () -> null);
+
+    assertThat(decodedImageCache.getSizeBytes(), is(0L));
+  }
+
+  private MetacardImpl createMetacard(String id) {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setId(id);
+    metacard.setModifiedDate(new Date(0));
+    return metacard;
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.imaging.chip.service.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.DeleteResponse;
+import ddf.catalog.operation.Update;
+import ddf.catalog.operation.UpdateResponse;
+import java.util.Arrays;
+import java.util.Collections;
+import org.codice.alliance.imaging.chip.service.api.DecodedImageCache;
+import org.junit.Before;
+import org.junit.Test;
+
+/** DecodedImageCacheInvalidationPlugin tests */
+public class DecodedImageCacheInvalidationPluginTest {
+
+  private DecodedImageCache decodedImageCache;
+
+  private DecodedImageCacheInvalidationPlugin plugin;
+
+  @Before
+  public void setUp() {
+    decodedImageCache = mock(DecodedImageCache.class);
+    plugin = new DecodedImageCacheInvalidationPlugin(decodedImageCache);
+  }
+
+  @Test
+  public void testCreateLeavesCacheUntouched() {
+    CreateResponse createResponse = mock(CreateResponse.class);
+
+    assertThat(plugin.process(createResponse), sameInstance(createResponse));
+    verifyZeroInteractions(decodedImageCache, createResponse);
+  }
+
+  @Test
+  public void testUpdateInvalidatesOldAndNewMetacards() {
+    Update update = mock(Update.class);
+    Metacard oldMetacard = createMetacard("old");
+    Metacard newMetacard = createMetacard("new");
+    when(update.getOldMetacard()).thenReturn(oldMetacard);
+    when(update.getNewMetacard()).thenReturn(newMetacard);
+
+    UpdateResponse updateResponse = mock(UpdateResponse.class);
+    when(updateResponse.getUpdatedMetacards()).thenReturn(Collections.singletonList(update));
+
+    assertThat(plugin.process(updateResponse), sameInstance(updateResponse));
+    verify(decodedImageCache).invalidate("old");
+    verify(decodedImageCache).invalidate("new");
+  }
+
+  @Test
+  public void testDeleteInvalidatesDeletedMetacards() {
+    DeleteResponse deleteResponse = mock(DeleteResponse.class);
+    when(deleteResponse.getDeletedMetacards())
+        .thenReturn(Arrays.asList(createMetacard("abc123"), createMetacard("def456")));
+
+    assertThat(plugin.process(deleteResponse), sameInstance(deleteResponse));
+    verify(decodedImageCache).invalidate("abc123");
+    verify(decodedImageCache).invalidate("def456");
+  }
+
+  @Test
+  public void testMetacardsWithoutIdsAreIgnored() {
+    DeleteResponse deleteResponse = mock(DeleteResponse.class);
+    when(deleteResponse.getDeletedMetacards())
+        .thenReturn(Arrays.asList(mock(Metacard.class), null));
+
+    plugin.process(deleteResponse);
+
+    verifyZeroInteractions(decodedImageCache);
+  }
+
+  private Metacard createMetacard(String id) {
+    Metacard metacard = mock(Metacard.class);
+    when(metacard.getId()).thenReturn(id);
+    return metacard;
+  }
+}
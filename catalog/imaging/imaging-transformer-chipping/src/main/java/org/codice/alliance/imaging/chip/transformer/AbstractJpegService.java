@@ -17,16 +17,34 @@ import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.WritableRaster;
-import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import javax.imageio.stream.ImageInputStreamImpl;
+import java.nio.file.Files;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 import org.codice.imaging.nitf.core.image.ImageCompression;
 import org.codice.imaging.nitf.core.image.ImageMode;
 import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 abstract class AbstractJpegService implements JpegService {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(AbstractJpegService.class);
+
+  /**
+   * Only images that share their raster with a larger image, such as the result of {@link
+   * BufferedImage#getSubimage(int, int, int, int)}, are copied before they are encoded.
+   */
+  private boolean isSubimage(BufferedImage bufferedImage) {
+    WritableRaster raster = bufferedImage.getRaster();
+    return raster.getParent() != null
+        || raster.getSampleModelTranslateX() != 0
+        || raster.getSampleModelTranslateY() != 0;
+  }
+
   private BufferedImage copyImage(BufferedImage source) {
 
     ColorModel colorModel = source.getColorModel();
@@ -45,29 +63,35 @@ abstract class AbstractJpegService implements JpegService {
     return bufferedImage;
   }
 
-  private ImageInputStreamImpl createImageInputStream(final byte[] jpegData) {
-    return new ImageInputStreamImpl() {
-
-      private InputStream inputStream = new ByteArrayInputStream(jpegData);
-
+  /** The temporary file is deleted when the stream is closed. */
+  private ImageInputStream createImageInputStream(final File jpegFile) throws IOException {
+    return new FileImageInputStream(jpegFile) {
       @Override
-      public int read() throws IOException {
-        return inputStream.read();
-      }
-
-      @Override
-      public int read(byte[] b, int off, int len) throws IOException {
-        return inputStream.read(b, off, len);
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          deleteTemporaryFile(jpegFile);
+        }
       }
     };
   }
 
-  private void setImageDataLengthField(ImageSegment chipImageSegment, byte[] jpegData) {
-    chipImageSegment.setDataLength(jpegData.length);
+  private void deleteTemporaryFile(File file) {
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      LOGGER.debug("unable to delete the temporary file '{}'", file, e);
+    }
+  }
+
+  private void setImageDataLengthField(ImageSegment chipImageSegment, long jpegDataLength) {
+    chipImageSegment.setDataLength(jpegDataLength);
   }
 
-  private void setImageDataField(ImageSegment chipImageSegment, final byte[] jpegData) {
-    chipImageSegment.setData(createImageInputStream(jpegData));
+  private void setImageDataField(ImageSegment chipImageSegment, final File jpegFile)
+      throws IOException {
+    chipImageSegment.setData(createImageInputStream(jpegFile));
   }
 
   abstract ImageCompression getImageCompressionType();
@@ -76,6 +100,12 @@ abstract class AbstractJpegService implements JpegService {
 
   abstract ImageMode getImageMode();
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The encoded data is written to a temporary file rather than held in memory. The file is
+   * deleted when the data stream of the image segment is closed.
+   */
   @Override
   public final void createJpeg(
       BufferedImage bufferedImage,
@@ -89,38 +119,52 @@ abstract class AbstractJpegService implements JpegService {
       throw new IllegalStateException("the number of bands must be set");
     }
 
-    BufferedImage copy = copyImage(bufferedImage);
+    BufferedImage image = isSubimage(bufferedImage) ? copyImage(bufferedImage) : bufferedImage;
 
-    byte[] jpegData;
-    if (isBlocking) {
-      jpegData = encodeBlocks(copy, blockWidth, blockHeight);
-    } else {
-      jpegData = encodeWholeImage(copy);
-    }
+    File jpegFile = File.createTempFile("nitfchip-", ".j2k");
+    try {
+      try (ImageOutputStream outputStream = new FileImageOutputStream(jpegFile)) {
+        if (isBlocking) {
+          encodeBlocks(image, blockWidth, blockHeight, outputStream);
+        } else {
+          encodeWholeImage(image, outputStream);
+        }
+      }
+
+      long jpegDataLength = jpegFile.length();
 
-    double bitsPerPixelPerBand =
-        calculateActualBitsPerPixelPerBand(bufferedImage, chipImageSegment, jpegData);
+      double bitsPerPixelPerBand =
+          calculateActualBitsPerPixelPerBand(bufferedImage, chipImageSegment, jpegDataLength);
 
-    setImageCompressionTypeField(chipImageSegment);
-    setCompresionRateField(chipImageSegment, bitsPerPixelPerBand);
-    setImageDataField(chipImageSegment, jpegData);
-    setImageDataLengthField(chipImageSegment, jpegData);
-    setImageModeField(chipImageSegment);
+      setImageCompressionTypeField(chipImageSegment);
+      setCompresionRateField(chipImageSegment, bitsPerPixelPerBand);
+      setImageDataField(chipImageSegment, jpegFile);
+      setImageDataLengthField(chipImageSegment, jpegDataLength);
+      setImageModeField(chipImageSegment);
+    } catch (IOException | RuntimeException e) {
+      deleteTemporaryFile(jpegFile);
+      throw e;
+    }
   }
 
-  private byte[] encodeBlocks(BufferedImage bufferedImage, int blockWidth, int blockHeight)
+  private void encodeBlocks(
+      BufferedImage bufferedImage,
+      int blockWidth,
+      int blockHeight,
+      ImageOutputStream outputStream)
       throws IOException {
-    return createJpeg(bufferedImage, blockWidth, blockHeight);
+    createJpeg(bufferedImage, blockWidth, blockHeight, outputStream);
   }
 
-  private byte[] encodeWholeImage(BufferedImage bufferedImage) throws IOException {
-    return createJpeg(bufferedImage);
+  private void encodeWholeImage(BufferedImage bufferedImage, ImageOutputStream outputStream)
+      throws IOException {
+    createJpeg(bufferedImage, outputStream);
   }
 
   /** bits per pixel per band */
   private double calculateActualBitsPerPixelPerBand(
-      BufferedImage bufferedImage, ImageSegment chipImageSegment, byte[] jpegData) {
-    return (getNumberOfBits(jpegData) / getTotalNumberOfPixels(bufferedImage))
+      BufferedImage bufferedImage, ImageSegment chipImageSegment, long jpegDataLength) {
+    return (getNumberOfBits(jpegDataLength) / getTotalNumberOfPixels(bufferedImage))
         / getNumberOfBands(chipImageSegment);
   }
 
@@ -132,8 +176,8 @@ abstract class AbstractJpegService implements JpegService {
     return (double) bufferedImage.getWidth() * bufferedImage.getHeight();
   }
 
-  private double getNumberOfBits(byte[] jpegData) {
-    return bytesToBits(jpegData.length);
+  private double getNumberOfBits(long jpegDataLength) {
+    return bytesToBits(jpegDataLength);
   }
 
   private void setImageModeField(ImageSegment chipImageSegment) {
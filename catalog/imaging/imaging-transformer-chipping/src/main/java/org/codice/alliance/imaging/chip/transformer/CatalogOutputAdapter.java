@@ -15,34 +15,45 @@ package org.codice.alliance.imaging.chip.transformer;
 
 import static org.apache.commons.lang.Validate.notNull;
 
+import ddf.catalog.content.data.ContentItem;
 import ddf.catalog.data.BinaryContent;
+import ddf.catalog.data.Metacard;
 import ddf.catalog.data.impl.BinaryContentImpl;
 import ddf.catalog.operation.ResourceResponse;
 import ddf.catalog.resource.Resource;
 import ddf.catalog.transform.CatalogTransformerException;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 import javax.activation.MimeType;
 import javax.activation.MimeTypeParseException;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.FileCacheImageInputStream;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
-import javax.imageio.stream.MemoryCacheImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.codice.alliance.imaging.chip.service.api.ChipOutOfBoundsException;
+import org.codice.alliance.imaging.chip.service.api.DecodedImageCache;
 import org.codice.alliance.imaging.chip.service.impl.CoordinateConverter;
 import org.codice.ddf.platform.util.TemporaryFileBackedOutputStream;
 import org.codice.imaging.nitf.core.common.FileType;
@@ -100,6 +111,8 @@ public class CatalogOutputAdapter {
 
   private Semaphore lock;
 
+  private DecodedImageCache decodedImageCache;
+
   /**
    * These are the SDEs that should be copied to the NITF chip. This list was assembled from
    * information gathered from ASDE, CSDE, and GEOSDE.
@@ -123,8 +136,50 @@ public class CatalogOutputAdapter {
 
   private static final String JPG = "jpg";
 
-  public CatalogOutputAdapter(Semaphore lock) {
+  public CatalogOutputAdapter(Semaphore lock, DecodedImageCache decodedImageCache) {
     this.lock = lock;
+    this.decodedImageCache = decodedImageCache;
+  }
+
+  /**
+   * @param metacard the metacard that the resource belongs to.
+   * @param resourceResponse a ResourceResponse object returned by CatalogFramework for a derived
+   *     resource of the metacard.
+   * @return the requested BufferedImage, which is only decoded the first time it is requested
+   *     until the metacard is updated. The image is shared between requests and must not be
+   *     modified.
+   * @throws IOException when there's a problem reading the image from the ResourceResponse
+   *     InputStream.
+   */
+  @SuppressWarnings("WeakerAccess")
+  public BufferedImage getImage(Metacard metacard, ResourceResponse resourceResponse)
+      throws IOException {
+    validateArgument(metacard, "metacard");
+    validateArgument(resourceResponse, "resourceResponse");
+    validateArgument(resourceResponse.getResource(), "resourceResponse.resource");
+
+    AtomicBoolean decoded = new AtomicBoolean();
+    BufferedImage image =
+        decodedImageCache.getImage(
+            metacard,
+            getQualifier(resourceResponse),
+            () -> {
+              decoded.set(true);
+              return getImage(resourceResponse);
+            });
+    if (!decoded.get()) {
+      IOUtils.closeQuietly(resourceResponse.getResource().getInputStream());
+    }
+    return image;
+  }
+
+  private String getQualifier(ResourceResponse resourceResponse) {
+    if (resourceResponse.getRequest() == null) {
+      return null;
+    }
+    Serializable qualifier =
+        resourceResponse.getRequest().getPropertyValue(ContentItem.QUALIFIER_KEYWORD);
+    return qualifier == null ? null : qualifier.toString();
   }
 
   /**
@@ -158,10 +213,161 @@ public class CatalogOutputAdapter {
     return image;
   }
 
+  /**
+   * Open an image for reading without decoding it, so that only the region of a chip needs to be
+   * decoded. The reader must be passed to {@link #readRegion} or {@link #disposeImageReader}.
+   *
+   * @param resourceResponse a ResourceResponse object returned by CatalogFramework.
+   * @return an ImageReader positioned on the image of the resource.
+   * @throws IOException when the resource can't be read or no reader supports its format.
+   */
+  @SuppressWarnings("WeakerAccess")
+  public ImageReader getImageReader(ResourceResponse resourceResponse) throws IOException {
+    validateArgument(resourceResponse, "resourceResponse");
+    validateArgument(resourceResponse.getResource(), "resourceResponse.resource");
+    InputStream resourceStream = resourceResponse.getResource().getInputStream();
+    validateObjectState(resourceStream, "resourceResponse.resource.inputStream");
+
+    ImageInputStream imageInputStream = null;
+    try {
+      imageInputStream = createImageInputStream(resourceStream);
+      Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(imageInputStream);
+      if (!imageReaders.hasNext()) {
+        throw new IOException(
+            String.format(
+                "No image reader found for resource %s.",
+                resourceResponse.getResource().getName()));
+      }
+      ImageReader imageReader = imageReaders.next();
+      imageReader.setInput(imageInputStream, true, true);
+      return imageReader;
+    } catch (IOException | RuntimeException e) {
+      IOUtils.closeQuietly(imageInputStream);
+      IOUtils.closeQuietly(resourceStream);
+      throw e;
+    }
+  }
+
+  /**
+   * Create an image input stream, cached in the same way as {@link
+   * ImageIO#createImageInputStream(Object)}, that also closes the resource stream it reads from.
+   */
+  private static ImageInputStream createImageInputStream(InputStream resourceStream)
+      throws IOException {
+    if (ImageIO.getUseCache()) {
+      return new FileCacheImageInputStream(resourceStream, ImageIO.getCacheDirectory()) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            resourceStream.close();
+          }
+        }
+      };
+    }
+
+    return new MemoryCacheImageInputStream(resourceStream) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          resourceStream.close();
+        }
+      }
+    };
+  }
+
+  /**
+   * Decode only the region of an image that a chip covers. The region is clipped to the image in
+   * the same way as {@link
+   * org.codice.alliance.imaging.chip.service.api.ChipService#crop(BufferedImage, int, int, int,
+   * int)}. The reader is disposed of afterwards.
+   *
+   * @param imageReader the reader returned by {@link #getImageReader(ResourceResponse)}.
+   * @param x The x coordinate of the top left corner of the chip.
+   * @param y The y coordinate of the top left corner of the chip.
+   * @param w The width of the chip.
+   * @param h The height of the chip.
+   * @return the pixels of the chip.
+   * @throws IOException when the image can't be decoded.
+   * @throws ChipOutOfBoundsException when x &gt; image width, y &gt; image height, w &lt; 0 or h
+   *     &lt; 0.
+   */
+  @SuppressWarnings("WeakerAccess")
+  public BufferedImage readRegion(ImageReader imageReader, int x, int y, int w, int h)
+      throws IOException, ChipOutOfBoundsException {
+    validateArgument(imageReader, "imageReader");
+    try {
+      Rectangle region =
+          getSourceRegion(imageReader.getWidth(0), imageReader.getHeight(0), x, y, w, h);
+      ImageReadParam imageReadParam = imageReader.getDefaultReadParam();
+      imageReadParam.setSourceRegion(region);
+
+      lock.acquire();
+      try {
+        return imageReader.read(0, imageReadParam);
+      } finally {
+        lock.release();
+      }
+    } catch (InterruptedException e) {
+      LOGGER.debug("Interrupt received while doing image processing.", e);
+      Thread.currentThread().interrupt();
+    } finally {
+      disposeImageReader(imageReader);
+    }
+    return null;
+  }
+
+  private Rectangle getSourceRegion(int width, int height, int x, int y, int w, int h)
+      throws ChipOutOfBoundsException {
+    if (w < 0 || h < 0) {
+      throw new ChipOutOfBoundsException(
+          String.format(
+              "method arguments 'w', 'h' may not be less than 0. Values were %s and %s.", w, h));
+    }
+
+    if (x > width || y > height) {
+      throw new ChipOutOfBoundsException(
+          String.format(
+              "method arguments 'x' and 'y' may not be greater than the width and height of the supplied image."
+                  + "\n   image width = %s, x = %s\n   image height = %s, y = %s",
+              width, x, height, y));
+    }
+
+    Rectangle region = new Rectangle(x, y, w, h).intersection(new Rectangle(width, height));
+    if (region.isEmpty()) {
+      throw new ChipOutOfBoundsException(
+          String.format("The chip [%s, %s, %s, %s] does not overlap the image.", x, y, w, h));
+    }
+    return region;
+  }
+
+  /**
+   * Release an image reader returned by {@link #getImageReader(ResourceResponse)} and close its
+   * input, together with the resource stream it reads from. Does nothing if the reader has already
+   * been released.
+   *
+   * @param imageReader the reader to release, may be null.
+   */
+  @SuppressWarnings("WeakerAccess")
+  public void disposeImageReader(ImageReader imageReader) {
+    if (imageReader == null || imageReader.getInput() == null) {
+      return;
+    }
+    Object input = imageReader.getInput();
+    imageReader.setInput(null);
+    imageReader.dispose();
+    if (input instanceof ImageInputStream) {
+      IOUtils.closeQuietly((ImageInputStream) input);
+    }
+  }
+
   /**
    * @param image the BufferedImage to be converted.
    * @return a BinaryContent object containing the image data.
-   * @throws IOException when the BufferedImage can't be written to temporary in-memory space.
+   * @throws IOException when the BufferedImage can't be written to a temporary file.
    * @throws MimeTypeParseException thrown if the mime type is invalid
    */
   @SuppressWarnings("WeakerAccess")
@@ -179,8 +385,7 @@ public class CatalogOutputAdapter {
 
         graphics.drawImage(image, 0, 0, null);
 
-        InputStream fis = new ByteArrayInputStream(createJpg(rgbImage));
-        binaryContent = new BinaryContentImpl(fis, new MimeType(IMAGE_JPG));
+        binaryContent = createTemporaryFileBinaryContent(createJpg(rgbImage), IMAGE_JPG);
       } finally {
         lock.release();
       }
@@ -191,13 +396,15 @@ public class CatalogOutputAdapter {
     return binaryContent;
   }
 
-  private byte[] createJpg(BufferedImage image) throws IOException {
-    try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-      try (ImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(os)) {
-        ImageIO.write(image, JPG, imageOutputStream);
-      }
-      return os.toByteArray();
+  private Path createJpg(BufferedImage image) throws IOException {
+    Path jpgFile = Files.createTempFile("chip-", "." + JPG);
+    try (ImageOutputStream imageOutputStream = new FileImageOutputStream(jpgFile.toFile())) {
+      ImageIO.write(image, JPG, imageOutputStream);
+    } catch (IOException | RuntimeException e) {
+      deleteTemporaryFile(jpgFile);
+      throw e;
     }
+    return jpgFile;
   }
 
   /**
@@ -279,13 +486,13 @@ public class CatalogOutputAdapter {
       throws IOException, MimeTypeParseException, NitfFormatException {
     try {
       lock.acquire();
+      ImageSegment chipImageSegment = null;
       try {
         NitfHeader chipHeader = createChipHeader(nitfSegmentsFlow);
 
         nitfSegmentsFlow.fileHeader(nitfHeader -> copySDEs(nitfHeader, chipHeader));
 
-        ImageSegment chipImageSegment =
-            createChipImageSegment(chip, sourceX, sourceY, nitfSegmentsFlow);
+        chipImageSegment = createChipImageSegment(chip, sourceX, sourceY, nitfSegmentsFlow);
 
         addIchipbTre(chip, sourceX, sourceY, chipImageSegment);
 
@@ -296,6 +503,10 @@ public class CatalogOutputAdapter {
 
         return nitfToBinaryContent(chipHeader, chipImageSegment);
       } finally {
+        // closing the chip image data deletes its temporary file
+        if (chipImageSegment != null) {
+          IOUtils.closeQuietly(chipImageSegment.getData());
+        }
         lock.release();
         nitfSegmentsFlow.end();
       }
@@ -689,25 +900,42 @@ public class CatalogOutputAdapter {
 
   private BinaryContent nitfToBinaryContent(NitfHeader header, ImageSegment imageSegment)
       throws IOException, MimeTypeParseException {
-    byte[] data;
-    File tmpFile = File.createTempFile("nitfchip-", ".ntf");
+    Path tmpFile = Files.createTempFile("nitfchip-", ".ntf");
     try {
       new NitfCreationFlowImpl()
           .fileHeader(() -> header)
           .imageSegment(() -> imageSegment)
-          .write(tmpFile.getAbsolutePath());
+          .write(tmpFile.toString());
+    } catch (RuntimeException e) {
+      deleteTemporaryFile(tmpFile);
+      throw e;
+    }
 
-      try (FileInputStream fis = new FileInputStream(tmpFile)) {
-        data = IOUtils.toByteArray(fis);
-      }
+    return createTemporaryFileBinaryContent(tmpFile, IMAGE_NITF);
+  }
 
-    } finally {
-      if (!tmpFile.delete()) {
-        LOGGER.debug("unable to delete the temporary file '{}'", tmpFile);
-      }
+  /** The file is deleted when the stream of the content is closed, or now if that fails. */
+  private BinaryContent createTemporaryFileBinaryContent(Path file, String mimeType)
+      throws IOException, MimeTypeParseException {
+    try {
+      MimeType contentMimeType = new MimeType(mimeType);
+      long size = Files.size(file);
+      BinaryContentImpl binaryContent =
+          new BinaryContentImpl(new TemporaryFileInputStream(file), contentMimeType);
+      binaryContent.setSize(size);
+      return binaryContent;
+    } catch (IOException | MimeTypeParseException | RuntimeException e) {
+      deleteTemporaryFile(file);
+      throw e;
     }
+  }
 
-    return new BinaryContentImpl(new ByteArrayInputStream(data), new MimeType(IMAGE_NITF));
+  private void deleteTemporaryFile(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOGGER.debug("unable to delete the temporary file '{}'", file, e);
+    }
   }
 
   @SuppressWarnings("UnnecessaryLocalVariable")
@@ -14,8 +14,10 @@
 package org.codice.alliance.imaging.chip.transformer;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
+import javax.imageio.ImageReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,17 +43,47 @@ public class CropAdapter {
       throw new IllegalArgumentException("method argument 'args' may not be null.");
     }
 
-    int x = getArg(args, "x");
-    int y = getArg(args, "y");
-    int w = getArg(args, "w");
-    int h = getArg(args, "h");
-
     double scaleFactor = 1.0;
 
     if (original != null && overview != null) {
       scaleFactor = original.getWidth() / ((double) overview.getWidth());
     }
 
+    return scaleChip(scaleFactor, args);
+  }
+
+  /**
+   * @param original a reader for the full-sized image that the chip will be taken from, so that
+   *     its size is known without decoding it.
+   * @param overview a scaled-down version of the same image.
+   * @param args A map containing values for the top left corner of the chip (x, y) and the height
+   *     and width of the chip (w, h) as taken from the overview image.
+   * @return a vector of [x, y, w, h] translated to the full size image.
+   * @throws IOException when the size of the full-sized image can't be read.
+   */
+  public int[] scaleChipToOriginal(
+      ImageReader original, BufferedImage overview, Map<String, Serializable> args)
+      throws IOException {
+
+    if (args == null) {
+      throw new IllegalArgumentException("method argument 'args' may not be null.");
+    }
+
+    double scaleFactor = 1.0;
+
+    if (original != null && overview != null) {
+      scaleFactor = original.getWidth(0) / ((double) overview.getWidth());
+    }
+
+    return scaleChip(scaleFactor, args);
+  }
+
+  private int[] scaleChip(double scaleFactor, Map<String, Serializable> args) {
+    int x = getArg(args, "x");
+    int y = getArg(args, "y");
+    int w = getArg(args, "w");
+    int h = getArg(args, "h");
+
     int scaledX = multiply(scaleFactor, x);
     int scaledY = multiply(scaleFactor, y);
     int scaledW = multiply(scaleFactor, w);
@@ -17,19 +17,18 @@ import com.github.jaiimageio.jpeg2000.J2KImageWriteParam;
 import com.github.jaiimageio.jpeg2000.impl.J2KImageWriter;
 import com.github.jaiimageio.jpeg2000.impl.J2KImageWriterSpi;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.stream.ImageOutputStream;
-import javax.imageio.stream.MemoryCacheImageOutputStream;
 import org.codice.imaging.nitf.core.image.ImageCompression;
 import org.codice.imaging.nitf.core.image.ImageMode;
 
 class Jpeg2000ServiceImpl extends AbstractJpegService {
 
   @Override
-  public byte[] createJpeg(BufferedImage bufferedImage, int blockWidth, int blockHeight)
+  public void createJpeg(
+      BufferedImage bufferedImage, int blockWidth, int blockHeight, ImageOutputStream outputStream)
       throws IOException {
 
     J2KImageWriter writer = createWriter();
@@ -39,19 +38,20 @@ class Jpeg2000ServiceImpl extends AbstractJpegService {
     writeParams.setTiling(blockWidth, blockHeight, 0, 0);
     writeParams.setSOP(true);
 
-    return encodeToByteArray(bufferedImage, writer, writeParams);
+    encode(bufferedImage, writer, writeParams, outputStream);
   }
 
-  private byte[] encodeToByteArray(
-      BufferedImage bufferedImage, J2KImageWriter writer, J2KImageWriteParam writeParams)
+  private void encode(
+      BufferedImage bufferedImage,
+      J2KImageWriter writer,
+      J2KImageWriteParam writeParams,
+      ImageOutputStream outputStream)
       throws IOException {
-    try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-      try (ImageOutputStream ios = new MemoryCacheImageOutputStream(os)) {
-        writer.setOutput(ios);
-        writer.write(null, new IIOImage(bufferedImage, null, null), writeParams);
-        writer.dispose();
-      }
-      return os.toByteArray();
+    try {
+      writer.setOutput(outputStream);
+      writer.write(null, new IIOImage(bufferedImage, null, null), writeParams);
+    } finally {
+      writer.dispose();
     }
   }
 
@@ -67,13 +67,14 @@ class Jpeg2000ServiceImpl extends AbstractJpegService {
   }
 
   @Override
-  public byte[] createJpeg(BufferedImage bufferedImage) throws IOException {
+  public void createJpeg(BufferedImage bufferedImage, ImageOutputStream outputStream)
+      throws IOException {
 
     J2KImageWriter writer = createWriter();
     J2KImageWriteParam writeParams = (J2KImageWriteParam) writer.getDefaultWriteParam();
     setCommonWriteParams(writeParams);
 
-    return encodeToByteArray(bufferedImage, writer, writeParams);
+    encode(bufferedImage, writer, writeParams, outputStream);
   }
 
   @Override
@@ -15,6 +15,7 @@ package org.codice.alliance.imaging.chip.transformer;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import javax.imageio.stream.ImageOutputStream;
 import org.codice.imaging.nitf.core.image.ImageSegment;
 
 /** Service to convert a BufferedImage into JPEG image data. */
@@ -24,10 +25,10 @@ public interface JpegService {
    * Convert a buffered image into JPEG binary data.
    *
    * @param bufferedImage must be non-null
-   * @return binary data
+   * @param outputStream the stream that the binary data is written to
    * @throws IOException
    */
-  byte[] createJpeg(BufferedImage bufferedImage) throws IOException;
+  void createJpeg(BufferedImage bufferedImage, ImageOutputStream outputStream) throws IOException;
 
   /**
    * Convert a buffered image into blocks of JPEG binary data.
@@ -35,10 +36,11 @@ public interface JpegService {
    * @param bufferedImage must be non-null
    * @param blockWidth the block width
    * @param blockHeight the block height
-   * @return binary data
+   * @param outputStream the stream that the binary data is written to
    * @throws IOException
    */
-  byte[] createJpeg(BufferedImage bufferedImage, int blockWidth, int blockHeight)
+  void createJpeg(
+      BufferedImage bufferedImage, int blockWidth, int blockHeight, ImageOutputStream outputStream)
       throws IOException;
 
   /**
@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.imaging.chip.transformer;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a temporary file and deletes it when the stream is closed, so that a chip can be returned
+ * to the client without holding the whole of it in memory.
+ */
+class TemporaryFileInputStream extends FilterInputStream {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TemporaryFileInputStream.class);
+
+  private final Path file;
+
+  TemporaryFileInputStream(Path file) throws IOException {
+    super(new BufferedInputStream(Files.newInputStream(file)));
+    this.file = file;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        LOGGER.debug("unable to delete the temporary file '{}'", file, e);
+      }
+    }
+  }
+}
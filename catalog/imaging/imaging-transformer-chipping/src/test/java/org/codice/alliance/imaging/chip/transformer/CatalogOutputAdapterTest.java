@@ -14,7 +14,10 @@
 package org.codice.alliance.imaging.chip.transformer;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.Matchers.closeTo;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
@@ -23,11 +26,16 @@ import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyObject;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.io.ByteSource;
+import ddf.catalog.content.data.ContentItem;
 import ddf.catalog.data.BinaryContent;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.operation.ResourceRequest;
 import ddf.catalog.operation.ResourceResponse;
 import ddf.catalog.resource.Resource;
 import java.awt.image.BufferedImage;
@@ -37,12 +45,16 @@ import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Semaphore;
 import java.util.regex.Pattern;
 import javax.activation.MimeTypeParseException;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import org.codice.alliance.imaging.chip.service.api.ChipOutOfBoundsException;
+import org.codice.alliance.imaging.chip.service.impl.DecodedImageCacheImpl;
 import org.codice.ddf.platform.util.TemporaryFileBackedOutputStream;
 import org.codice.imaging.nitf.core.DataSource;
 import org.codice.imaging.nitf.core.common.DateTime;
@@ -96,7 +108,7 @@ public class CatalogOutputAdapterTest {
   @Before
   public void setUp() throws IOException {
     lock = mock(Semaphore.class);
-    this.catalogOutputAdapter = new CatalogOutputAdapter(lock);
+    this.catalogOutputAdapter = new CatalogOutputAdapter(lock, new DecodedImageCacheImpl());
   }
 
   @Test(expected = IllegalArgumentException.class)
@@ -120,6 +132,117 @@ public class CatalogOutputAdapterTest {
     catalogOutputAdapter.getImage(resourceResponse);
   }
 
+  @Test
+  public void testGetCachedImage() throws IOException, InterruptedException {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setId("abc123");
+    metacard.setModifiedDate(new Date(0));
+
+    BufferedImage image = catalogOutputAdapter.getImage(metacard, getOverviewResponse());
+    InputStream secondInputStream = mock(InputStream.class);
+    ResourceResponse secondResponse = getOverviewResponse(secondInputStream);
+    BufferedImage cachedImage = catalogOutputAdapter.getImage(metacard, secondResponse);
+
+    assertThat(cachedImage, sameInstance(image));
+    verify(lock).acquire();
+    verify(secondInputStream, never()).read(anyObject(), anyInt(), anyInt());
+    verify(secondInputStream).close();
+  }
+
+  @Test
+  public void testGetCachedImageAfterUpdate() throws IOException {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setId("abc123");
+    metacard.setModifiedDate(new Date(0));
+
+    BufferedImage image = catalogOutputAdapter.getImage(metacard, getOverviewResponse());
+    metacard.setModifiedDate(new Date(1));
+    BufferedImage updatedImage = catalogOutputAdapter.getImage(metacard, getOverviewResponse());
+
+    assertThat(updatedImage, not(sameInstance(image)));
+  }
+
+  private ResourceResponse getOverviewResponse() throws IOException {
+    return getOverviewResponse(getInputStream(I_3001A));
+  }
+
+  private ResourceResponse getOverviewResponse(InputStream inputStream) throws IOException {
+    ResourceRequest resourceRequest = mock(ResourceRequest.class);
+    when(resourceRequest.getPropertyValue(ContentItem.QUALIFIER_KEYWORD)).thenReturn("overview");
+    ResourceResponse resourceResponse = mock(ResourceResponse.class);
+    Resource resource = mock(Resource.class);
+    when(resourceResponse.getRequest()).thenReturn(resourceRequest);
+    when(resourceResponse.getResource()).thenReturn(resource);
+    when(resource.getInputStream()).thenReturn(inputStream);
+    return resourceResponse;
+  }
+
+  @Test
+  public void testReadRegion() throws IOException, ChipOutOfBoundsException, InterruptedException {
+    BufferedImage original = ImageIO.read(getInputStream(I_3001A));
+    ImageReader imageReader = catalogOutputAdapter.getImageReader(getOverviewResponse());
+
+    BufferedImage chip = catalogOutputAdapter.readRegion(imageReader, 100, 200, 256, 128);
+
+    assertThat(chip.getWidth(), is(256));
+    assertThat(chip.getHeight(), is(128));
+    assertThat(chip.getRGB(0, 0), is(original.getRGB(100, 200)));
+    assertThat(chip.getRGB(255, 127), is(original.getRGB(355, 327)));
+    assertThat(imageReader.getInput(), is(nullValue()));
+    verify(lock).acquire();
+    verify(lock).release();
+  }
+
+  @Test
+  public void testReadRegionClippedToImage() throws IOException, ChipOutOfBoundsException {
+    ImageReader imageReader = catalogOutputAdapter.getImageReader(getOverviewResponse());
+
+    BufferedImage chip = catalogOutputAdapter.readRegion(imageReader, -10, 1000, 100, 100);
+
+    assertThat(chip.getWidth(), is(90));
+    assertThat(chip.getHeight(), is(24));
+  }
+
+  @Test(expected = ChipOutOfBoundsException.class)
+  public void testReadRegionOutOfBounds() throws IOException, ChipOutOfBoundsException {
+    ImageReader imageReader = catalogOutputAdapter.getImageReader(getOverviewResponse());
+
+    try {
+      catalogOutputAdapter.readRegion(imageReader, 2000, 10, 100, 100);
+    } finally {
+      assertThat(imageReader.getInput(), is(nullValue()));
+    }
+  }
+
+  @Test
+  public void testReadRegionClosesResourceStream() throws IOException, ChipOutOfBoundsException {
+    InputStream resourceStream = spy(getInputStream(I_3001A));
+    ImageReader imageReader =
+        catalogOutputAdapter.getImageReader(getOverviewResponse(resourceStream));
+
+    catalogOutputAdapter.readRegion(imageReader, 100, 200, 256, 128);
+
+    verify(resourceStream).close();
+  }
+
+  @Test
+  public void testDisposeImageReaderClosesResourceStream() throws IOException {
+    InputStream resourceStream = spy(getInputStream(I_3001A));
+    ImageReader imageReader =
+        catalogOutputAdapter.getImageReader(getOverviewResponse(resourceStream));
+
+    catalogOutputAdapter.disposeImageReader(imageReader);
+    catalogOutputAdapter.disposeImageReader(imageReader);
+
+    verify(resourceStream).close();
+  }
+
+  @Test(expected = IOException.class)
+  public void testGetImageReaderUnsupportedFormat() throws IOException {
+    catalogOutputAdapter.getImageReader(
+        getOverviewResponse(new ByteArrayInputStream(new byte[] {1, 2, 3})));
+  }
+
   @Test
   public void testGetImage() throws IOException, InterruptedException {
     InputStream is = getInputStream(I_3001A);
@@ -615,7 +738,7 @@ public class CatalogOutputAdapterTest {
     doThrow(IOException.class).when(tfbos).write(anyObject(), anyInt(), anyInt());
 
     catalogOutputAdapter =
-        new CatalogOutputAdapter(new Semaphore(3, true)) {
+        new CatalogOutputAdapter(new Semaphore(3, true), new DecodedImageCacheImpl()) {
           @Override
           protected TemporaryFileBackedOutputStream createTemporaryFileBackedOutputStream() {
             return tfbos;
@@ -657,7 +780,7 @@ public class CatalogOutputAdapterTest {
     when(tfbos.asByteSource()).thenReturn(byteSource);
 
     catalogOutputAdapter =
-        new CatalogOutputAdapter(new Semaphore(3, true)) {
+        new CatalogOutputAdapter(new Semaphore(3, true), new DecodedImageCacheImpl()) {
           @Override
           protected TemporaryFileBackedOutputStream createTemporaryFileBackedOutputStream() {
             return tfbos;
@@ -687,7 +810,7 @@ public class CatalogOutputAdapterTest {
     when(tfbos.asByteSource()).thenReturn(byteSource);
 
     catalogOutputAdapter =
-        new CatalogOutputAdapter(new Semaphore(3, true)) {
+        new CatalogOutputAdapter(new Semaphore(3, true), new DecodedImageCacheImpl()) {
           @Override
           protected TemporaryFileBackedOutputStream createTemporaryFileBackedOutputStream() {
             return tfbos;
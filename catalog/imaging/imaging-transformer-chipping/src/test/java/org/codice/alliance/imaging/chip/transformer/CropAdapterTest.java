@@ -19,8 +19,10 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
+import javax.imageio.ImageReader;
 import org.apache.commons.collections.map.HashedMap;
 import org.junit.Before;
 import org.junit.Test;
@@ -131,4 +133,22 @@ public class CropAdapterTest {
       assertThat(scaledValues[i], is(values[i] * 2));
     }
   }
+
+  @Test
+  public void testScaleChipToOriginal() throws IOException {
+    ImageReader originalReader = mock(ImageReader.class);
+    when(originalReader.getWidth(0)).thenReturn(2048);
+    when(overviewImage.getWidth()).thenReturn(1024);
+    int[] values = new int[] {100, 100, 400, 400};
+    args.put("x", values[0]);
+    args.put("y", values[1]);
+    args.put("w", values[2]);
+    args.put("h", values[3]);
+
+    int[] scaledValues = cropAdapter.scaleChipToOriginal(originalReader, overviewImage, args);
+
+    for (int i = 0; i < values.length; i++) {
+      assertThat(scaledValues[i], is(values[i] * 2));
+    }
+  }
 }
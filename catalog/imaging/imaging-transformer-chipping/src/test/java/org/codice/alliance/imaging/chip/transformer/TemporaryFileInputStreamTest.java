@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.imaging.chip.transformer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class TemporaryFileInputStreamTest {
+
+  @Test
+  public void testFileIsDeletedOnClose() throws IOException {
+    Path file = Files.createTempFile("chip-", ".tmp");
+    Files.write(file, "chip".getBytes(StandardCharsets.UTF_8));
+
+    try (InputStream inputStream = new TemporaryFileInputStream(file)) {
+      assertThat(IOUtils.toString(inputStream, StandardCharsets.UTF_8), is("chip"));
+      assertThat(Files.exists(file), is(true));
+    }
+
+    assertThat(Files.exists(file), is(false));
+  }
+}
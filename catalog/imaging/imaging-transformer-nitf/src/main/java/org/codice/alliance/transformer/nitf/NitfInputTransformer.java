@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.transformer.nitf;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.transform.CatalogTransformerException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.codice.alliance.imaging.nitf.api.NitfParserService;
+import org.codice.alliance.imaging.transformer.api.BatchInputTransformer;
+import org.codice.alliance.transformer.nitf.common.NitfHeaderTransformer;
+import org.codice.alliance.transformer.nitf.gmti.NitfGmtiTransformer;
+import org.codice.alliance.transformer.nitf.image.NitfImageTransformer;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.fluent.NitfSegmentsFlow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts a NITF into an image or GMTI metacard. The parsed NITF is dispatched to the matching
+ * transformer in process, using the channel chosen by {@link RoutingSlip}. Several NITFs can be
+ * transformed concurrently with {@link #transformAll(List)}.
+ */
+public class NitfInputTransformer implements BatchInputTransformer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NitfInputTransformer.class);
+
+  private final NitfParserService nitfParserService;
+
+  private final RoutingSlip routingSlip;
+
+  private final NitfHeaderTransformer nitfHeaderTransformer;
+
+  private final MetacardFactory imageMetacardFactory;
+
+  private final NitfImageTransformer nitfImageTransformer;
+
+  private final MetacardFactory gmtiMetacardFactory;
+
+  private final NitfGmtiTransformer nitfGmtiTransformer;
+
+  private final ThreadPoolExecutor executor;
+
+  public NitfInputTransformer(
+      NitfParserService nitfParserService,
+      RoutingSlip routingSlip,
+      NitfHeaderTransformer nitfHeaderTransformer,
+      MetacardFactory imageMetacardFactory,
+      NitfImageTransformer nitfImageTransformer,
+      MetacardFactory gmtiMetacardFactory,
+      NitfGmtiTransformer nitfGmtiTransformer) {
+    notNull(nitfParserService, "The nitfParserService must be non-null");
+    notNull(routingSlip, "The routingSlip must be non-null");
+    notNull(nitfHeaderTransformer, "The nitfHeaderTransformer must be non-null");
+    notNull(imageMetacardFactory, "The imageMetacardFactory must be non-null");
+    notNull(nitfImageTransformer, "The nitfImageTransformer must be non-null");
+    notNull(gmtiMetacardFactory, "The gmtiMetacardFactory must be non-null");
+    notNull(nitfGmtiTransformer, "The nitfGmtiTransformer must be non-null");
+
+    this.nitfParserService = nitfParserService;
+    this.routingSlip = routingSlip;
+    this.nitfHeaderTransformer = nitfHeaderTransformer;
+    this.imageMetacardFactory = imageMetacardFactory;
+    this.nitfImageTransformer = nitfImageTransformer;
+    this.gmtiMetacardFactory = gmtiMetacardFactory;
+    this.nitfGmtiTransformer = nitfGmtiTransformer;
+
+    int threadCount = getDefaultThreadCount();
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor =
+        new ThreadPoolExecutor(
+            threadCount,
+            threadCount,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "nitf-transform-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * @param threadCount number of threads used by {@link #transformAll(List)}, or 0 to use the
+   *     number of processors, must not be negative
+   */
+  public void setThreadCount(int threadCount) {
+    isTrue(threadCount >= 0, "The threadCount must not be negative");
+    if (threadCount == 0) {
+      threadCount = getDefaultThreadCount();
+    }
+    if (threadCount > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(threadCount);
+      executor.setCorePoolSize(threadCount);
+    } else {
+      executor.setCorePoolSize(threadCount);
+      executor.setMaximumPoolSize(threadCount);
+    }
+  }
+
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+  private static int getDefaultThreadCount() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  @Override
+  public Metacard transform(InputStream inputStream)
+      throws IOException, CatalogTransformerException {
+    return transform(inputStream, null);
+  }
+
+  @Override
+  public Metacard transform(InputStream inputStream, String id)
+      throws IOException, CatalogTransformerException {
+    NitfSegmentsFlow nitfSegmentsFlow;
+    try {
+      // metacards only need the headers and TREs, so the segment data is skipped
+      nitfSegmentsFlow = nitfParserService.parseNitf(inputStream, false);
+    } catch (NitfFormatException | RuntimeException e) {
+      throw new CatalogTransformerException(e);
+    }
+
+    try {
+      return transform(nitfSegmentsFlow, id);
+    } catch (RuntimeException e) {
+      throw new CatalogTransformerException(e);
+    } finally {
+      nitfParserService.endNitfSegmentsFlow(nitfSegmentsFlow);
+    }
+  }
+
+  /**
+   * Transforms several NITFs concurrently, at most one per thread of the transformer's pool. The
+   * input streams are not closed.
+   *
+   * @param inputStreams the NITFs to transform
+   * @return the metacards, in the order of the input streams
+   * @throws IOException if one of the NITFs can't be read
+   * @throws CatalogTransformerException if one of the NITFs can't be transformed, in which case the
+   *     transforms that have not finished yet are cancelled
+   */
+  @Override
+  public List<Metacard> transformAll(List<InputStream> inputStreams)
+      throws IOException, CatalogTransformerException {
+    notNull(inputStreams, "The inputStreams must be non-null");
+
+    List<Future<Metacard>> futures = new ArrayList<>(inputStreams.size());
+    try {
+      for (InputStream inputStream : inputStreams) {
+        futures.add(executor.submit(() -> transform(inputStream)));
+      }
+
+      List<Metacard> metacards = new ArrayList<>(futures.size());
+      for (Future<Metacard> future : futures) {
+        metacards.add(getMetacard(future));
+      }
+      return metacards;
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+  }
+
+  private Metacard getMetacard(Future<Metacard> future)
+      throws IOException, CatalogTransformerException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CatalogTransformerException("Interrupted while transforming the NITFs", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof CatalogTransformerException) {
+        throw (CatalogTransformerException) cause;
+      }
+      throw new CatalogTransformerException(cause);
+    }
+  }
+
+  private Metacard transform(NitfSegmentsFlow nitfSegmentsFlow, String id) {
+    String channel = routingSlip.channel(nitfSegmentsFlow);
+    LOGGER.debug("Transforming the NITF with the {} channel", channel);
+
+    if (RoutingSlip.GMTI_ROUTE.equals(channel)) {
+      Metacard metacard = gmtiMetacardFactory.createMetacard(id);
+      nitfHeaderTransformer.transform(nitfSegmentsFlow, metacard);
+      return nitfGmtiTransformer.transform(nitfSegmentsFlow, metacard);
+    }
+
+    Metacard metacard = imageMetacardFactory.createMetacard(id);
+    nitfHeaderTransformer.transform(nitfSegmentsFlow, metacard);
+    return nitfImageTransformer.transform(nitfSegmentsFlow, metacard);
+  }
+}
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiFunction;
 import javax.imageio.ImageIO;
+import org.codice.alliance.imaging.chip.service.api.DecodedImageCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,26 +36,43 @@ public class OverviewSupplier
 
   private static final Logger LOGGER = LoggerFactory.getLogger(OverviewSupplier.class);
 
+  private static final String OVERVIEW = "overview";
+
   private final MetacardTransformer resourceMetacardTransformer;
 
-  public OverviewSupplier(MetacardTransformer resourceMetacardTransformer) {
+  private final DecodedImageCache decodedImageCache;
+
+  public OverviewSupplier(
+      MetacardTransformer resourceMetacardTransformer, DecodedImageCache decodedImageCache) {
     this.resourceMetacardTransformer = resourceMetacardTransformer;
+    this.decodedImageCache = decodedImageCache;
   }
 
   @Override
   public Optional<BufferedImage> apply(Metacard metacard, Map<String, Serializable> arguments) {
+    try {
+      return Optional.ofNullable(
+          decodedImageCache.getImage(metacard, OVERVIEW, () -> readOverview(metacard)));
+    } catch (IOException e) {
+      LOGGER.debug("Could not get the overview image.", e);
+    }
+
+    return Optional.empty();
+  }
+
+  private BufferedImage readOverview(Metacard metacard) throws IOException {
     try {
       final Map<String, Serializable> resourceTransformerArguments = new HashMap<>();
-      resourceTransformerArguments.put(ContentItem.QUALIFIER_KEYWORD, "overview");
+      resourceTransformerArguments.put(ContentItem.QUALIFIER_KEYWORD, OVERVIEW);
       final BinaryContent overviewContent =
           resourceMetacardTransformer.transform(metacard, resourceTransformerArguments);
       try (final InputStream inputStream = overviewContent.getInputStream()) {
-        return Optional.ofNullable(ImageIO.read(inputStream));
+        return ImageIO.read(inputStream);
       }
-    } catch (IOException | CatalogTransformerException e) {
+    } catch (CatalogTransformerException e) {
       LOGGER.debug("Could not get the overview image.", e);
     }
 
-    return Optional.empty();
+    return null;
   }
 }
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.transformer.nitf.common;
+
+import ddf.catalog.data.Attribute;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.AttributeImpl;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the attribute values found while walking the segments of a NITF and sets them on the
+ * {@link Metacard} in a single step, so that a multi-valued attribute is built once instead of
+ * being copied every time a value is appended.
+ */
+public class AttributeAccumulator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AttributeAccumulator.class);
+
+  private final Metacard metacard;
+
+  private final Map<String, List<Serializable>> values = new LinkedHashMap<>();
+
+  public AttributeAccumulator(Metacard metacard) {
+    this.metacard = metacard;
+  }
+
+  public Metacard getMetacard() {
+    return metacard;
+  }
+
+  public void addValue(String attributeName, Serializable value) {
+    LOGGER.trace("Adding the metacard attribute value [{}, {}]", attributeName, value);
+    values.computeIfAbsent(attributeName, name -> new ArrayList<>()).add(value);
+  }
+
+  /**
+   * Sets the collected attributes on the metacard. Values are appended after any values the
+   * metacard already has for the same attribute.
+   */
+  public void setAttributes() {
+    values.forEach(this::setMetacardAttribute);
+    values.clear();
+  }
+
+  private void setMetacardAttribute(String attributeName, List<Serializable> newValues) {
+    Attribute currentAttribute = metacard.getAttribute(attributeName);
+
+    List<Serializable> attributeValues = newValues;
+    if (currentAttribute != null && currentAttribute.getValues() != null) {
+      attributeValues = new ArrayList<>(currentAttribute.getValues());
+      attributeValues.addAll(newValues);
+    }
+    LOGGER.trace("Setting the metacard attribute [{}, {}]", attributeName, attributeValues);
+    metacard.setAttribute(new AttributeImpl(attributeName, attributeValues));
+  }
+}
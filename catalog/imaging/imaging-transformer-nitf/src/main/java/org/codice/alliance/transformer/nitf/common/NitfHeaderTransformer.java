@@ -31,7 +31,9 @@ public class NitfHeaderTransformer extends SegmentHandler {
   }
 
   private void handleNitfHeader(Metacard metacard, NitfHeader header) {
-    handleSegmentHeader(metacard, header, NitfHeaderAttribute.getAttributes());
-    handleTres(metacard, header);
+    AttributeAccumulator accumulator = new AttributeAccumulator(metacard);
+    handleSegmentHeader(accumulator, header, NitfHeaderAttribute.getAttributes());
+    handleTres(accumulator, header);
+    accumulator.setAttributes();
   }
 }
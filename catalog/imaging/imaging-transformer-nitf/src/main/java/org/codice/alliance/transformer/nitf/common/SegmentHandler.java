@@ -13,10 +13,7 @@
  */
 package org.codice.alliance.transformer.nitf.common;
 
-import ddf.catalog.data.Attribute;
 import ddf.catalog.data.AttributeDescriptor;
-import ddf.catalog.data.Metacard;
-import ddf.catalog.data.impl.AttributeImpl;
 import ddf.catalog.data.impl.BasicTypes;
 import ddf.catalog.data.types.Validation;
 import java.io.Serializable;
@@ -38,41 +35,46 @@ public class SegmentHandler {
   private static final Logger LOGGER = LoggerFactory.getLogger(SegmentHandler.class);
 
   protected <T> void handleSegmentHeader(
-      Metacard metacard, T segment, List<NitfAttribute<T>> attributes) {
-    attributes.forEach(attribute -> handleValue(metacard, attribute, segment));
+      AttributeAccumulator accumulator, T segment, List<NitfAttribute<T>> attributes) {
+    attributes.forEach(attribute -> handleValue(accumulator, attribute, segment));
   }
 
-  protected <T> void handleSegmentHeader(Metacard metacard, T segment, NitfAttribute[] attributes) {
-    handleSegmentHeader(metacard, segment, Arrays.asList(attributes));
+  protected <T> void handleSegmentHeader(
+      AttributeAccumulator accumulator, T segment, NitfAttribute[] attributes) {
+    handleSegmentHeader(accumulator, segment, Arrays.asList(attributes));
   }
 
   protected void handleTres(
-      Metacard metacard, TaggedRecordExtensionHandler taggedRecordextensionHandler) {
+      AttributeAccumulator accumulator, TaggedRecordExtensionHandler taggedRecordextensionHandler) {
     List<Tre> tres = taggedRecordextensionHandler.getTREsRawStructure().getTREs();
 
     tres.forEach(
         tre ->
             Optional.ofNullable(TreDescriptor.forName(tre.getName().trim()))
-                .ifPresent(treDescriptor -> handleTre(metacard, tre, treDescriptor.getValues())));
+                .ifPresent(
+                    treDescriptor -> handleTre(accumulator, tre, treDescriptor.getValues())));
   }
 
-  private <T> void handleTre(Metacard metacard, Tre tre, List<NitfAttribute<T>> treValues) {
-    treValues.forEach(attribute -> handleTreValues(metacard, attribute, tre));
+  private <T> void handleTre(
+      AttributeAccumulator accumulator, Tre tre, List<NitfAttribute<T>> treValues) {
+    treValues.forEach(attribute -> handleTreValues(accumulator, attribute, tre));
   }
 
-  private void handleTreValues(Metacard metacard, NitfAttribute attribute, Tre tre) {
+  private void handleTreValues(AttributeAccumulator accumulator, NitfAttribute attribute, Tre tre) {
     NitfAttributeImpl treAttribute = (NitfAttributeImpl) attribute;
     List<NitfAttribute<TreGroup>> indexedAttributes = treAttribute.getIndexedAttributes();
     if (indexedAttributes != null && !indexedAttributes.isEmpty()) {
       List<TreGroup> treGroups = TreUtility.getTreGroups(tre, attribute.getShortName());
       if (treGroups != null) {
-        treGroups.forEach(treGroup -> handleSegmentHeader(metacard, treGroup, indexedAttributes));
+        treGroups.forEach(
+            treGroup -> handleSegmentHeader(accumulator, treGroup, indexedAttributes));
       }
     }
-    handleValue(metacard, attribute, tre);
+    handleValue(accumulator, attribute, tre);
   }
 
-  private <T> void handleValue(Metacard metacard, NitfAttribute attribute, T segment) {
+  private <T> void handleValue(
+      AttributeAccumulator accumulator, NitfAttribute attribute, T segment) {
     Function<T, Serializable> accessor = attribute.getAccessorFunction();
 
     Serializable value;
@@ -82,17 +84,18 @@ public class SegmentHandler {
       LOGGER.debug(
           "Error accessing NITF attribute value. Skipping attribute [{}] on Metacard with ID [{}]",
           attribute.getLongName(),
-          metacard.getId(),
+          accumulator.getMetacard().getId(),
           e);
 
       if (!ExtNitfUtility.isExtAttribute(attribute)) {
-        handleBadAttribute(metacard, attribute, e.getOriginalValue());
+        handleBadAttribute(accumulator, attribute, e.getOriginalValue());
       }
       return;
     }
 
+    // most attributes share one accessor for the NITF and extended NITF values
     Function<T, Serializable> extAccessor = attribute.getExtAccessorFunction();
-    Serializable extValue = extAccessor.apply(segment);
+    Serializable extValue = extAccessor == accessor ? value : extAccessor.apply(segment);
 
     Set<AttributeDescriptor> descriptors = attribute.getAttributeDescriptors();
 
@@ -117,25 +120,25 @@ public class SegmentHandler {
     for (AttributeDescriptor descriptor : descriptors) {
       if (descriptor.getName().contains(ExtNitfUtility.EXT_NITF_PREFIX)) {
         if (extValue != null) {
-          setMetacardAttribute(metacard, descriptor.getName(), extValue);
+          accumulator.addValue(descriptor.getName(), extValue);
         }
       } else {
         if (value != null) {
-          setMetacardAttribute(metacard, descriptor.getName(), value);
+          accumulator.addValue(descriptor.getName(), value);
         }
       }
     }
   }
 
   private void handleBadAttribute(
-      Metacard metacard, NitfAttribute attribute, Serializable originalValue) {
+      AttributeAccumulator accumulator, NitfAttribute attribute, Serializable originalValue) {
     Set<AttributeDescriptor> attributeDescriptors = attribute.getAttributeDescriptors();
 
     for (AttributeDescriptor descriptor : attributeDescriptors) {
-      setMetacardAttribute(metacard, descriptor.getName(), originalValue);
+      accumulator.addValue(descriptor.getName(), originalValue);
     }
 
-    attachValidationWarning(metacard, attribute);
+    attachValidationWarning(accumulator, attribute);
   }
 
   /**
@@ -143,26 +146,12 @@ public class SegmentHandler {
    * descriptors are defined in the {@link
    * org.codice.alliance.transformer.nitf.AbstractNitfMetacardType}
    */
-  private void attachValidationWarning(Metacard metacard, NitfAttribute attribute) {
+  private void attachValidationWarning(AttributeAccumulator accumulator, NitfAttribute attribute) {
     String warningMessage =
         String.format(
             "Error while processing NITF attribute %s (%s). This NITF attribute was set to its original value and needs to be fixed manually.",
             attribute.getLongName(), attribute.getShortName());
 
-    setMetacardAttribute(metacard, Validation.VALIDATION_WARNINGS, warningMessage);
-  }
-
-  private void setMetacardAttribute(Metacard metacard, String attributeName, Serializable value) {
-    Attribute currentAttribute = metacard.getAttribute(attributeName);
-
-    if (currentAttribute == null) {
-      currentAttribute = new AttributeImpl(attributeName, value);
-    } else {
-      AttributeImpl newAttribute = new AttributeImpl(currentAttribute);
-      newAttribute.addValue(value);
-      currentAttribute = newAttribute;
-    }
-    LOGGER.trace("Setting the metacard attribute [{}, {}]", attributeName, value);
-    metacard.setAttribute(currentAttribute);
+    accumulator.addValue(Validation.VALIDATION_WARNINGS, warningMessage);
   }
 }
@@ -13,8 +13,9 @@
  */
 package org.codice.alliance.transformer.nitf.common;
 
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.codice.alliance.transformer.nitf.complex.CmetaaAttribute;
 import org.codice.alliance.transformer.nitf.gmti.MtirpbAttribute;
 import org.codice.imaging.nitf.core.tre.Tre;
@@ -33,17 +34,29 @@ public enum TreDescriptor {
   PIATGB(PiatgbAttribute.getAttributes()),
   STDIDC(StdidcAttribute.getAttributes());
 
+  private static final Map<String, TreDescriptor> DESCRIPTORS_BY_NAME = new HashMap<>();
+
+  static {
+    for (TreDescriptor treDescriptor : values()) {
+      DESCRIPTORS_BY_NAME.put(treDescriptor.name(), treDescriptor);
+    }
+  }
+
   private final List<NitfAttribute<Tre>> nitfAttributes;
 
   TreDescriptor(List<NitfAttribute<Tre>> nitfAttributes) {
     this.nitfAttributes = nitfAttributes;
   }
 
+  /**
+   * Looks up the descriptor of a TRE. Called for every TRE of every segment, so the lookup uses a
+   * table built once when the class is loaded.
+   *
+   * @param name the TRE name, e.g. {@code PIAIMC}
+   * @return the descriptor, or {@code null} if the TRE is not mapped to metacard attributes
+   */
   public static TreDescriptor forName(String name) {
-    return Arrays.stream(TreDescriptor.values())
-        .filter(treDescriptor -> treDescriptor.name().equals(name))
-        .findFirst()
-        .orElse(null);
+    return DESCRIPTORS_BY_NAME.get(name);
   }
 
   public List<NitfAttribute<Tre>> getValues() {
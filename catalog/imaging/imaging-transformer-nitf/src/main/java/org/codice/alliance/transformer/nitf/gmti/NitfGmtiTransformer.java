@@ -13,14 +13,15 @@
  */
 package org.codice.alliance.transformer.nitf.gmti;
 
-import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.GeometryFactory;
-import com.vividsolutions.jts.io.ParseException;
-import com.vividsolutions.jts.io.WKTReader;
+import com.vividsolutions.jts.geom.MultiPoint;
 import ddf.catalog.data.Attribute;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.impl.AttributeImpl;
 import ddf.catalog.data.types.Core;
+import java.io.Serializable;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
@@ -58,30 +59,22 @@ public class NitfGmtiTransformer extends SegmentHandler {
   }
 
   private void transformTargetLocation(Metacard metacard) {
-    String locationString = formatTargetLocation(metacard);
-
-    try {
-      LOGGER.debug("Formatted Target Location(s) = {}", locationString);
-
-      if (locationString != null) {
-        // validate the wkt
-        WKTReader wktReader = new WKTReader(geometryFactory);
-        Geometry geometry = wktReader.read(locationString);
-
-        LOGGER.debug("Setting the metacard attribute [{}, {}]", Core.LOCATION, geometry.toText());
-        IndexedMtirpbAttribute.INDEXED_TARGET_LOCATION_ATTRIBUTE
-            .getAttributeDescriptors()
-            .forEach(
-                descriptor ->
-                    setMetacardAttribute(metacard, descriptor.getName(), geometry.toText()));
-      }
-
-    } catch (ParseException e) {
-      LOGGER.debug(e.getMessage(), e);
+    MultiPoint targetLocations = createTargetLocations(metacard);
+
+    if (targetLocations != null) {
+      String wkt = targetLocations.toText();
+      LOGGER.debug("Setting the metacard attribute [{}, {}]", Core.LOCATION, wkt);
+      IndexedMtirpbAttribute.INDEXED_TARGET_LOCATION_ATTRIBUTE
+          .getAttributeDescriptors()
+          .forEach(descriptor -> setMetacardAttribute(metacard, descriptor.getName(), wkt));
     }
   }
 
-  private String formatTargetLocation(Metacard metacard) {
+  /**
+   * Builds the target locations of all the target reports as a single {@link MultiPoint}. Returns
+   * {@code null} if there are no target locations or if any of them is malformed.
+   */
+  private MultiPoint createTargetLocations(Metacard metacard) {
     Attribute locationAttribute =
         IndexedMtirpbAttribute.INDEXED_TARGET_LOCATION_ATTRIBUTE
             .getAttributeDescriptors()
@@ -90,45 +83,38 @@ public class NitfGmtiTransformer extends SegmentHandler {
             .findFirst()
             .orElse(null);
 
-    if (locationAttribute != null) {
-      StringBuilder stringBuilder = new StringBuilder("MULTIPOINT (");
+    if (locationAttribute == null || locationAttribute.getValues() == null) {
+      return null;
+    }
 
-      locationAttribute
-          .getValues()
-          .forEach(
-              value -> {
-                parseLocation(stringBuilder, value.toString());
-                stringBuilder.append(",");
-              });
-
-      stringBuilder.deleteCharAt(stringBuilder.lastIndexOf(","));
-      stringBuilder.append(")");
-      return stringBuilder.toString();
+    List<Serializable> values = locationAttribute.getValues();
+    Coordinate[] coordinates = new Coordinate[values.size()];
+
+    for (int i = 0; i < coordinates.length; i++) {
+      coordinates[i] = parseLocation(String.valueOf(values.get(i)));
+      if (coordinates[i] == null) {
+        LOGGER.debug("Unable to parse the target location [{}]", values.get(i));
+        return null;
+      }
     }
 
-    return null;
+    if (coordinates.length == 0) {
+      return null;
+    }
+
+    return geometryFactory.createMultiPoint(coordinates);
   }
 
   private void transformAircraftLocation(Metacard metacard) {
     String aircraftLocation = formatAircraftLocation(metacard);
 
-    try {
-      LOGGER.debug("Formatted Aircraft Location = {}", aircraftLocation);
-
-      if (aircraftLocation != null) {
-        // validate the wkt
-        WKTReader wktReader = new WKTReader(geometryFactory);
-        wktReader.read(aircraftLocation);
-
-        MtirpbAttribute.AIRCRAFT_LOCATION_ATTRIBUTE
-            .getAttributeDescriptors()
-            .forEach(
-                descriptor ->
-                    setMetacardAttribute(metacard, descriptor.getName(), aircraftLocation));
-      }
+    LOGGER.debug("Formatted Aircraft Location = {}", aircraftLocation);
 
-    } catch (ParseException e) {
-      LOGGER.debug(e.getMessage(), e);
+    if (aircraftLocation != null) {
+      MtirpbAttribute.AIRCRAFT_LOCATION_ATTRIBUTE
+          .getAttributeDescriptors()
+          .forEach(
+              descriptor -> setMetacardAttribute(metacard, descriptor.getName(), aircraftLocation));
     }
   }
 
@@ -144,32 +130,33 @@ public class NitfGmtiTransformer extends SegmentHandler {
     if (aircraftLocation != null
         && StringUtils.isNotEmpty(aircraftLocation.getValue().toString())) {
 
-      String unformattedAircraftLocation = aircraftLocation.getValue().toString();
-
-      StringBuilder sb = new StringBuilder("POINT (");
-      parseLocation(sb, unformattedAircraftLocation);
-      sb.append(")");
+      Matcher matcher = LOCATION_PATTERN.matcher(aircraftLocation.getValue().toString());
 
-      return sb.toString();
+      if (matcher.matches()) {
+        return String.format("POINT (%s %s)", matcher.group(1), matcher.group(2));
+      }
     }
 
     return null;
   }
 
-  private void parseLocation(StringBuilder stringBuilder, String locationString) {
+  private Coordinate parseLocation(String locationString) {
 
     if (StringUtils.isEmpty(locationString)) {
-      return;
+      return null;
     }
 
     Matcher matcher = LOCATION_PATTERN.matcher(locationString);
 
     if (matcher.matches()) {
-      String lon = matcher.group(1);
-      String lat = matcher.group(2);
-
-      stringBuilder.append(String.format("%s %s", lon, lat));
+      Coordinate coordinate =
+          new Coordinate(
+              Double.parseDouble(matcher.group(1)), Double.parseDouble(matcher.group(2)));
+      geometryFactory.getPrecisionModel().makePrecise(coordinate);
+      return coordinate;
     }
+
+    return null;
   }
 
   public void setGeometryFactory(GeometryFactory geometryFactory) {
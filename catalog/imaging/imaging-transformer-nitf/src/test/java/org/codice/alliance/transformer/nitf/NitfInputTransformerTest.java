@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.transformer.nitf;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.vividsolutions.jts.geom.GeometryFactory;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.types.Core;
+import ddf.catalog.transform.CatalogTransformerException;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.codice.alliance.imaging.nitf.api.NitfParserService;
+import org.codice.alliance.transformer.nitf.common.NitfHeaderTransformer;
+import org.codice.alliance.transformer.nitf.gmti.GmtiMetacardType;
+import org.codice.alliance.transformer.nitf.gmti.NitfGmtiTransformer;
+import org.codice.alliance.transformer.nitf.image.ImageMetacardType;
+import org.codice.alliance.transformer.nitf.image.NitfImageTransformer;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.fluent.NitfSegmentsFlow;
+import org.codice.imaging.nitf.fluent.impl.NitfParserInputFlowImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NitfInputTransformerTest {
+
+  private static final String IMAGE_TRE_NTF_FILENAME = "src/test/resources/imageTre.ntf";
+
+  private static final String NO_IMAGE_TRE_NTF_FILENAME = "src/test/resources/noImageTre.ntf";
+
+  private static final String ID = "101";
+
+  private NitfParserService nitfParserService;
+
+  private NitfInputTransformer nitfInputTransformer;
+
+  @Before
+  public void setUp() {
+    TreUtilityTest.createFileIfNecessary(
+        IMAGE_TRE_NTF_FILENAME, TreUtilityTest::createNitfImageTres);
+    TreUtilityTest.createFileIfNecessary(
+        NO_IMAGE_TRE_NTF_FILENAME, TreUtilityTest::createNitfNoImageTres);
+    NitfTestCommons.setupNitfUtilities("US", Collections.singletonList("USA"));
+
+    nitfParserService = mock(NitfParserService.class);
+
+    MetacardFactory imageMetacardFactory = new MetacardFactory();
+    imageMetacardFactory.setMetacardType(new ImageMetacardType());
+
+    MetacardFactory gmtiMetacardFactory = new MetacardFactory();
+    gmtiMetacardFactory.setMetacardType(new GmtiMetacardType());
+
+    NitfGmtiTransformer nitfGmtiTransformer = new NitfGmtiTransformer();
+    nitfGmtiTransformer.setGeometryFactory(new GeometryFactory());
+
+    nitfInputTransformer =
+        new NitfInputTransformer(
+            nitfParserService,
+            new RoutingSlip(),
+            new NitfHeaderTransformer(),
+            imageMetacardFactory,
+            new NitfImageTransformer(),
+            gmtiMetacardFactory,
+            nitfGmtiTransformer);
+  }
+
+  @After
+  public void tearDown() {
+    nitfInputTransformer.destroy();
+  }
+
+  @Test
+  public void testTransformImage() throws Exception {
+    NitfSegmentsFlow nitfSegmentsFlow = parse(IMAGE_TRE_NTF_FILENAME);
+
+    Metacard metacard = nitfInputTransformer.transform(mock(InputStream.class), ID);
+
+    assertThat(metacard.getMetacardType().getName(), is(new ImageMetacardType().getName()));
+    assertThat(metacard.getAttribute(Core.ID).getValue(), is(ID));
+    verify(nitfParserService).endNitfSegmentsFlow(nitfSegmentsFlow);
+  }
+
+  @Test
+  public void testTransformGmti() throws Exception {
+    NitfSegmentsFlow nitfSegmentsFlow = parse(NO_IMAGE_TRE_NTF_FILENAME);
+
+    Metacard metacard = nitfInputTransformer.transform(mock(InputStream.class), ID);
+
+    assertThat(metacard.getMetacardType().getName(), is(new GmtiMetacardType().getName()));
+    assertThat(metacard.getAttribute(Core.ID).getValue(), is(ID));
+    verify(nitfParserService).endNitfSegmentsFlow(nitfSegmentsFlow);
+  }
+
+  @Test(expected = CatalogTransformerException.class)
+  public void testTransformInvalidNitf() throws Exception {
+    when(nitfParserService.parseNitf(any(InputStream.class), eq(false)))
+        .thenThrow(NitfFormatException.class);
+
+    try {
+      nitfInputTransformer.transform(mock(InputStream.class));
+    } finally {
+      verify(nitfParserService, never()).endNitfSegmentsFlow(any(NitfSegmentsFlow.class));
+    }
+  }
+
+  @Test(expected = CatalogTransformerException.class)
+  public void testTransformFailureEndsSegmentsFlow() throws Exception {
+    NitfSegmentsFlow nitfSegmentsFlow = mock(NitfSegmentsFlow.class);
+    when(nitfSegmentsFlow.fileHeader(any())).thenThrow(new IllegalStateException());
+    when(nitfParserService.parseNitf(any(InputStream.class), eq(false)))
+        .thenReturn(nitfSegmentsFlow);
+
+    try {
+      nitfInputTransformer.transform(mock(InputStream.class), ID);
+    } finally {
+      verify(nitfParserService).endNitfSegmentsFlow(nitfSegmentsFlow);
+    }
+  }
+
+  @Test
+  public void testTransformAllKeepsInputOrder() throws Exception {
+    nitfInputTransformer.setThreadCount(2);
+    InputStream gmtiInputStream = mock(InputStream.class);
+    InputStream imageInputStream = mock(InputStream.class);
+    parse(gmtiInputStream, NO_IMAGE_TRE_NTF_FILENAME);
+    parse(imageInputStream, IMAGE_TRE_NTF_FILENAME);
+
+    List<Metacard> metacards =
+        nitfInputTransformer.transformAll(
+            Arrays.asList(gmtiInputStream, imageInputStream, gmtiInputStream));
+
+    List<String> metacardTypes =
+        metacards
+            .stream()
+            .map(metacard -> metacard.getMetacardType().getName())
+            .collect(Collectors.toList());
+    assertThat(
+        metacardTypes,
+        contains(
+            new GmtiMetacardType().getName(),
+            new ImageMetacardType().getName(),
+            new GmtiMetacardType().getName()));
+  }
+
+  @Test(expected = CatalogTransformerException.class)
+  public void testTransformAllInvalidNitf() throws Exception {
+    InputStream imageInputStream = mock(InputStream.class);
+    InputStream invalidInputStream = mock(InputStream.class);
+    parse(imageInputStream, IMAGE_TRE_NTF_FILENAME);
+    when(nitfParserService.parseNitf(eq(invalidInputStream), eq(false)))
+        .thenThrow(NitfFormatException.class);
+
+    nitfInputTransformer.transformAll(Arrays.asList(imageInputStream, invalidInputStream));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidThreadCount() {
+    nitfInputTransformer.setThreadCount(-1);
+  }
+
+  @Test
+  public void testTransformAllWithDefaultThreadCount() throws Exception {
+    nitfInputTransformer.setThreadCount(0);
+    InputStream imageInputStream = mock(InputStream.class);
+    parse(imageInputStream, IMAGE_TRE_NTF_FILENAME);
+
+    List<Metacard> metacards =
+        nitfInputTransformer.transformAll(Collections.singletonList(imageInputStream));
+
+    assertThat(metacards.size(), is(1));
+  }
+
+  private void parse(InputStream inputStream, String filename) throws Exception {
+    when(nitfParserService.parseNitf(eq(inputStream), eq(false)))
+        .thenAnswer(
+            invocation -> new NitfParserInputFlowImpl().file(new File(filename)).headerOnly());
+  }
+
+  private NitfSegmentsFlow parse(String filename) throws Exception {
+    NitfSegmentsFlow nitfSegmentsFlow =
+        new NitfParserInputFlowImpl().file(new File(filename)).headerOnly();
+    when(nitfParserService.parseNitf(any(InputStream.class), eq(false)))
+        .thenReturn(nitfSegmentsFlow);
+    return nitfSegmentsFlow;
+  }
+}
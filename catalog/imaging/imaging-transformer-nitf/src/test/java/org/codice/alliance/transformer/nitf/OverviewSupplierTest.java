@@ -15,6 +15,7 @@ package org.codice.alliance.transformer.nitf;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
@@ -22,6 +23,7 @@ import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 import ddf.catalog.content.data.ContentItem;
 import ddf.catalog.data.BinaryContent;
@@ -31,7 +33,10 @@ import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.data.types.Core;
 import ddf.catalog.transform.CatalogTransformerException;
 import ddf.catalog.transform.MetacardTransformer;
+import java.awt.image.BufferedImage;
 import java.util.Collections;
+import java.util.Date;
+import org.codice.alliance.imaging.chip.service.impl.DecodedImageCacheImpl;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
@@ -40,6 +45,8 @@ public class OverviewSupplierTest {
 
   private OverviewSupplier supplier;
 
+  private MetacardTransformer resourceMetacardTransformer;
+
   private class IsMetacardWithDerivedOverviewResource extends ArgumentMatcher<Metacard> {
     private final OverviewPredicate predicate = new OverviewPredicate();
 
@@ -60,7 +67,7 @@ public class OverviewSupplierTest {
         .when(overviewContent)
         .getInputStream();
 
-    final MetacardTransformer resourceMetacardTransformer = mock(MetacardTransformer.class);
+    resourceMetacardTransformer = mock(MetacardTransformer.class);
     doReturn(overviewContent)
         .when(resourceMetacardTransformer)
         .transform(
@@ -72,7 +79,7 @@ public class OverviewSupplierTest {
             argThat(not(isMetacardWithDerivedOverviewResource())),
             eq(Collections.singletonMap(ContentItem.QUALIFIER_KEYWORD, "overview")));
 
-    supplier = new OverviewSupplier(resourceMetacardTransformer);
+    supplier = new OverviewSupplier(resourceMetacardTransformer, new DecodedImageCacheImpl());
   }
 
   @Test
@@ -82,6 +89,20 @@ public class OverviewSupplierTest {
     assertThat(supplier.apply(metacard, null).isPresent(), is(true));
   }
 
+  @Test
+  public void testCachedOverview() throws CatalogTransformerException {
+    final MetacardImpl metacard = new MetacardImpl();
+    metacard.setId("abc123");
+    metacard.setModifiedDate(new Date(0));
+    metacard.setAttribute(new AttributeImpl(Core.DERIVED_RESOURCE_URI, "content:abc123#overview"));
+
+    final BufferedImage overview = supplier.apply(metacard, null).orElse(null);
+    assertThat(supplier.apply(metacard, null).orElse(null), is(sameInstance(overview)));
+    verify(resourceMetacardTransformer)
+        .transform(
+            metacard, Collections.singletonMap(ContentItem.QUALIFIER_KEYWORD, "overview"));
+  }
+
   @Test
   public void testNoOverview() {
     assertThat(supplier.apply(new MetacardImpl(), null).isPresent(), is(false));
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.transformer.nitf.common;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.AttributeImpl;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.types.Validation;
+import java.io.Serializable;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AttributeAccumulatorTest {
+
+  private Metacard metacard;
+
+  private AttributeAccumulator accumulator;
+
+  @Before
+  public void setUp() {
+    metacard = new MetacardImpl();
+    accumulator = new AttributeAccumulator(metacard);
+  }
+
+  @Test
+  public void testValuesAreSetInOneStep() {
+    accumulator.addValue(Validation.VALIDATION_WARNINGS, "first");
+    accumulator.addValue(Validation.VALIDATION_WARNINGS, "second");
+
+    assertThat(metacard.getAttribute(Validation.VALIDATION_WARNINGS), is(nullValue()));
+
+    accumulator.setAttributes();
+
+    assertThat(
+        metacard.getAttribute(Validation.VALIDATION_WARNINGS).getValues(),
+        is(Arrays.<Serializable>asList("first", "second")));
+  }
+
+  @Test
+  public void testValuesAreAppendedToExistingValues() {
+    metacard.setAttribute(new AttributeImpl(Validation.VALIDATION_WARNINGS, "existing"));
+
+    accumulator.addValue(Validation.VALIDATION_WARNINGS, "first");
+    accumulator.addValue(Validation.VALIDATION_WARNINGS, "second");
+    accumulator.setAttributes();
+
+    assertThat(
+        metacard.getAttribute(Validation.VALIDATION_WARNINGS).getValues(),
+        is(Arrays.<Serializable>asList("existing", "first", "second")));
+  }
+
+  @Test
+  public void testValuesAreSetOnlyOnce() {
+    accumulator.addValue(Validation.VALIDATION_WARNINGS, "first");
+    accumulator.setAttributes();
+    accumulator.setAttributes();
+
+    assertThat(
+        metacard.getAttribute(Validation.VALIDATION_WARNINGS).getValues(),
+        is(Arrays.<Serializable>asList("first")));
+  }
+}
@@ -26,15 +26,19 @@ import ddf.catalog.data.Attribute;
 import ddf.catalog.data.AttributeDescriptor;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.MetacardType;
+import ddf.catalog.data.impl.AttributeImpl;
 import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.data.impl.MetacardTypeImpl;
+import ddf.catalog.data.types.Core;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -156,6 +160,38 @@ public class NitfGmtiTransformerTest {
     }
   }
 
+  @Test
+  public void testMultipleTargetLocations() {
+    Metacard metacard =
+        createTargetLocationMetacard("+52.1234567-004.1234567", "+53.123456-005.123456");
+
+    nitfGmtiTransformer.transform(mock(NitfSegmentsFlow.class), metacard);
+
+    assertThat(
+        metacard.getAttribute(Core.LOCATION).getValue(),
+        is("MULTIPOINT ((52.1234567 -4.1234567), (53.123456 -5.123456))"));
+  }
+
+  @Test
+  public void testMalformedTargetLocation() {
+    Metacard metacard = createTargetLocationMetacard("+52.1234567-004.1234567", "malformed");
+
+    nitfGmtiTransformer.transform(mock(NitfSegmentsFlow.class), metacard);
+
+    assertThat(metacard.getAttribute(Core.LOCATION).getValues().size(), is(2));
+  }
+
+  private Metacard createTargetLocationMetacard(Serializable... targetLocations) {
+    Metacard metacard = new MetacardImpl();
+    IndexedMtirpbAttribute.INDEXED_TARGET_LOCATION_ATTRIBUTE
+        .getAttributeDescriptors()
+        .forEach(
+            descriptor ->
+                metacard.setAttribute(
+                    new AttributeImpl(descriptor.getName(), Arrays.asList(targetLocations))));
+    return metacard;
+  }
+
   private Map<NitfAttribute, String> initMtirpbAttributes() {
     // key value pair of nitf attributes and expected getAttributes
     Map<NitfAttribute, String> map = new HashMap<>();
@@ -14,19 +14,19 @@
 package org.codice.alliance.video.stream.mpegts;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.OutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 
-/** Factory for create OutputStream objects. */
-public interface OutputStreamFactory {
+/** Factory for creating FileChannel objects. */
+public interface FileChannelFactory {
 
   /**
-   * Create an OutputStream that writes to a file and supports appending.
+   * Create a FileChannel that appends to a file. The channel is expected to stay open until the
+   * caller closes it.
    *
    * @param file must be non-null
-   * @param append must be non-null
    * @return a non-null value
-   * @throws FileNotFoundException
+   * @throws IOException
    */
-  OutputStream create(File file, boolean append) throws FileNotFoundException;
+  FileChannel create(File file) throws IOException;
 }
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.video.stream.mpegts;
+
+import static org.apache.commons.lang3.Validate.inclusiveBetween;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Owns the threads that are shared by every {@link UdpStreamMonitor}: one sized Netty event loop
+ * group for receiving datagrams and one scheduler for periodic stream work such as rollover
+ * checks. On Linux the native epoll transport is used when it is available.
+ *
+ * <p>The number of threads can be set with the system properties {@link
+ * #EVENT_LOOP_THREADS_PROPERTY} and {@link #SCHEDULER_THREADS_PROPERTY}.
+ */
+public class SharedStreamResources {
+
+  public static final String EVENT_LOOP_THREADS_PROPERTY =
+      "org.codice.alliance.video.stream.eventLoopThreads";
+
+  public static final String SCHEDULER_THREADS_PROPERTY =
+      "org.codice.alliance.video.stream.schedulerThreads";
+
+  /** Largest expected datagram payload. MPEG-TS over UDP normally sends 7 packets (1316 bytes). */
+  static final int MAX_DATAGRAM_PAYLOAD_SIZE = 2048;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SharedStreamResources.class);
+
+  private static final int DEFAULT_SCHEDULER_THREADS = 2;
+
+  private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+  private final EventLoopGroup eventLoopGroup;
+
+  private final ScheduledThreadPoolExecutor scheduler;
+
+  private final boolean epoll;
+
+  private final int eventLoopThreads;
+
+  /**
+   * Multicast is always served by the NIO transport. This is the same group as {@link
+   * #eventLoopGroup} unless epoll is in use, in which case it is created on first use.
+   */
+  private EventLoopGroup nioEventLoopGroup;
+
+  public SharedStreamResources() {
+    this(
+        Epoll.isAvailable(),
+        Integer.getInteger(EVENT_LOOP_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()),
+        Integer.getInteger(SCHEDULER_THREADS_PROPERTY, DEFAULT_SCHEDULER_THREADS));
+  }
+
+  /**
+   * @param useEpoll true if the native epoll transport should be used
+   * @param eventLoopThreads must be positive
+   * @param schedulerThreads must be positive
+   */
+  SharedStreamResources(boolean useEpoll, int eventLoopThreads, int schedulerThreads) {
+    inclusiveBetween(1, Integer.MAX_VALUE, eventLoopThreads, "eventLoopThreads must be positive");
+    inclusiveBetween(1, Integer.MAX_VALUE, schedulerThreads, "schedulerThreads must be positive");
+
+    this.epoll = useEpoll;
+    this.eventLoopThreads = eventLoopThreads;
+
+    DefaultThreadFactory eventLoopThreadFactory = new DefaultThreadFactory("udp-stream", true);
+
+    if (useEpoll) {
+      eventLoopGroup = new EpollEventLoopGroup(eventLoopThreads, eventLoopThreadFactory);
+    } else {
+      eventLoopGroup = new NioEventLoopGroup(eventLoopThreads, eventLoopThreadFactory);
+      nioEventLoopGroup = eventLoopGroup;
+    }
+
+    scheduler =
+        new ScheduledThreadPoolExecutor(
+            schedulerThreads, new DefaultThreadFactory("udp-stream-scheduler", true));
+    scheduler.setRemoveOnCancelPolicy(true);
+
+    LOGGER.debug(
+        "created shared stream resources: epoll={} eventLoopThreads={} schedulerThreads={}",
+        useEpoll,
+        eventLoopThreads,
+        schedulerThreads);
+  }
+
+  public boolean isEpoll() {
+    return epoll;
+  }
+
+  public ScheduledExecutorService getScheduler() {
+    return scheduler;
+  }
+
+  /**
+   * Configure a bootstrap for a unicast datagram server with the shared event loop group. Each read
+   * receives one datagram into a buffer of {@link #MAX_DATAGRAM_PAYLOAD_SIZE} bytes.
+   *
+   * @param bootstrap must be non-null
+   * @return the bootstrap
+   */
+  public Bootstrap configureUnicast(Bootstrap bootstrap) {
+    if (epoll) {
+      return bootstrap
+          .group(eventLoopGroup)
+          .channel(EpollDatagramChannel.class)
+          .option(
+              ChannelOption.RCVBUF_ALLOCATOR,
+              new FixedRecvByteBufAllocator(MAX_DATAGRAM_PAYLOAD_SIZE));
+    }
+    return bootstrap
+        .group(eventLoopGroup)
+        .channel(NioDatagramChannel.class)
+        .option(
+            ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(MAX_DATAGRAM_PAYLOAD_SIZE));
+  }
+
+  /**
+   * Get the event loop group for multicast servers, which always use the NIO transport.
+   *
+   * @return non-null event loop group
+   */
+  public synchronized EventLoopGroup getMulticastEventLoopGroup() {
+    if (nioEventLoopGroup == null) {
+      nioEventLoopGroup =
+          new NioEventLoopGroup(eventLoopThreads, new DefaultThreadFactory("udp-multicast", true));
+    }
+    return nioEventLoopGroup;
+  }
+
+  /** Called by osgi to release the shared threads. */
+  public synchronized void shutdown() {
+    LOGGER.debug("shutting down shared stream resources");
+    scheduler.shutdownNow();
+    shutdownGroup(eventLoopGroup);
+    if (nioEventLoopGroup != null && nioEventLoopGroup != eventLoopGroup) {
+      shutdownGroup(nioEventLoopGroup);
+    }
+  }
+
+  private void shutdownGroup(EventLoopGroup group) {
+    try {
+      group.shutdownGracefully().await(SHUTDOWN_TIMEOUT);
+    } catch (InterruptedException e) {
+      LOGGER.debug("interrupted while shutting down event loop group", e);
+      Thread.currentThread().interrupt();
+    }
+  }
+}
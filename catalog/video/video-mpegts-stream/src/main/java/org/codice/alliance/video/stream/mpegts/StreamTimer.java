@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.video.stream.mpegts;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the periodic work of a single stream on a scheduler that is shared by all streams.
+ * Unlike {@link java.util.Timer}, no thread is created per stream, and {@link #cancel()} only
+ * cancels the tasks that were scheduled through this timer.
+ */
+public class StreamTimer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StreamTimer.class);
+
+  private final ScheduledExecutorService scheduler;
+
+  private final List<ScheduledFuture<?>> scheduledTasks = new CopyOnWriteArrayList<>();
+
+  /** @param scheduler must be non-null */
+  public StreamTimer(ScheduledExecutorService scheduler) {
+    notNull(scheduler, "scheduler must be non-null");
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Run a task repeatedly. An exception thrown by the task is logged and does not stop later runs.
+   *
+   * @param task must be non-null
+   * @param delay milliseconds before the first run
+   * @param period milliseconds between runs
+   */
+  public void scheduleAtFixedRate(Runnable task, long delay, long period) {
+    notNull(task, "task must be non-null");
+    scheduledTasks.add(
+        scheduler.scheduleAtFixedRate(
+            () -> {
+              try {
+                task.run();
+              } catch (RuntimeException e) {
+                LOGGER.debug("stream timer task failed", e);
+              }
+            },
+            delay,
+            period,
+            TimeUnit.MILLISECONDS));
+  }
+
+  /** Cancel all tasks scheduled through this timer. The shared scheduler keeps running. */
+  public void cancel() {
+    scheduledTasks.forEach(future -> future.cancel(false));
+    scheduledTasks.clear();
+  }
+}
@@ -20,11 +20,11 @@ import static org.apache.commons.lang3.Validate.notNull;
 import ddf.catalog.CatalogFramework;
 import ddf.catalog.data.MetacardType;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.InternetProtocolFamily;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import java.net.Inet4Address;
@@ -55,10 +55,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Starts a Netty server with a pipeline specified by {@link UdpStreamProcessor}. The following
- * properties must be set:
+ * Starts a Netty server with a pipeline specified by {@link UdpStreamProcessor}. The server runs on
+ * the event loop group of the {@link SharedStreamResources}, which is shared by all monitors. The
+ * following properties must be set:
  *
  * <ul>
+ *   <li>{@link #setStreamResources(SharedStreamResources)}
  *   <li>{@link #setMonitoredAddress(String)}
  *   <li>{@link #setFilenameTemplate(String)}
  *   <li>{@link #setRolloverCondition(RolloverCondition)}
@@ -82,6 +84,10 @@ public class UdpStreamMonitor implements StreamMonitor {
 
   public static final long ELAPSED_TIME_MAX = Long.MAX_VALUE;
 
+  public static final int PACKET_BUFFER_KILOBYTES_MIN = 1;
+
+  public static final int PACKET_BUFFER_KILOBYTES_MAX = Integer.MAX_VALUE / 1024;
+
   /** This is the id string used in metatype.xml. */
   public static final String METATYPE_TITLE = "parentTitle";
 
@@ -106,6 +112,9 @@ public class UdpStreamMonitor implements StreamMonitor {
 
   public static final String METATYPE_NETWORK_INTERFACE = "networkInterface";
 
+  /** This is the id string used in metatype.xml. */
+  public static final String METATYPE_PACKET_BUFFER_KILOBYTES = "packetBufferKilobytes";
+
   static final int MONITORED_PORT_MIN = 1;
 
   static final int MONITORED_PORT_MAX = 65535;
@@ -123,9 +132,7 @@ public class UdpStreamMonitor implements StreamMonitor {
 
   private Integer monitoredPort;
 
-  private EventLoopGroup eventLoopGroup;
-
-  private Thread serverThread;
+  private SharedStreamResources streamResources;
 
   private String parentTitle;
 
@@ -161,6 +168,12 @@ public class UdpStreamMonitor implements StreamMonitor {
     udpStreamProcessor.setStreamShutdownPlugin(streamShutdownPlugin);
   }
 
+  /** @param streamResources must be non-null */
+  public void setStreamResources(SharedStreamResources streamResources) {
+    notNull(streamResources, "streamResources must be non-null");
+    this.streamResources = streamResources;
+  }
+
   public Boolean getStartImmediately() {
     return this.startImmediately;
   }
@@ -233,7 +246,7 @@ public class UdpStreamMonitor implements StreamMonitor {
   }
 
   private boolean isReady() {
-    return monitoredAddress != null && udpStreamProcessor.isReady();
+    return monitoredAddress != null && streamResources != null && udpStreamProcessor.isReady();
   }
 
   /**
@@ -258,8 +271,7 @@ public class UdpStreamMonitor implements StreamMonitor {
     shutdown();
     if (isReady()) {
       udpStreamProcessor.init();
-      serverThread = new Thread(new Server());
-      serverThread.start();
+      startServer();
       monitoring = true;
       startTime = new Date();
     } else {
@@ -331,28 +343,19 @@ public class UdpStreamMonitor implements StreamMonitor {
   }
 
   private void shutdown() {
-    if (eventLoopGroup != null) {
-      try {
-        eventLoopGroup.shutdownGracefully().sync();
-      } catch (InterruptedException e) {
-        LOGGER.debug("Graceful shutdown of channel interrupted", e);
-      }
-    }
-
     if (channelFuture != null) {
+      LOGGER.debug("closing monitor channel");
       try {
-        channelFuture.channel().closeFuture().sync();
+        channelFuture.channel().close().sync();
       } catch (InterruptedException e) {
-        LOGGER.debug("Graceful shutdown of channel future interrupted", e);
+        LOGGER.debug("Graceful shutdown of channel interrupted", e);
+        Thread.currentThread().interrupt();
+      } finally {
+        monitoring = false;
+        startTime = null;
       }
     }
 
-    if (serverThread != null) {
-      LOGGER.debug("shutting down monitor server thread");
-      joinServerThread();
-      serverThread = null;
-    }
-
     if (udpStreamProcessor != null) {
       udpStreamProcessor.shutdown();
     }
@@ -360,17 +363,6 @@ public class UdpStreamMonitor implements StreamMonitor {
     channelFuture = null;
   }
 
-  private void joinServerThread() {
-    try {
-      serverThread.join();
-    } catch (InterruptedException e) {
-      LOGGER.debug("interrupted while waiting for server thread to join", e);
-    } finally {
-      monitoring = false;
-      startTime = null;
-    }
-  }
-
   /**
    * The StreamEndPlugin gets called when a stream ends by either being stopped or timed-out.
    *
@@ -424,6 +416,12 @@ public class UdpStreamMonitor implements StreamMonitor {
         return;
       }
 
+      if (properties.containsKey(METATYPE_PACKET_BUFFER_KILOBYTES)
+          && properties.get(METATYPE_PACKET_BUFFER_KILOBYTES) != null
+          && !checkMetaTypeClass(properties, METATYPE_PACKET_BUFFER_KILOBYTES, Integer.class)) {
+        return;
+      }
+
       setMonitoredAddress((String) properties.get(METATYPE_MONITORED_ADDRESS));
       setNetworkInterface((String) properties.get(METATYPE_NETWORK_INTERFACE));
       setMegabyteCountRolloverCondition(
@@ -434,6 +432,9 @@ public class UdpStreamMonitor implements StreamMonitor {
       setMetacardUpdateInitialDelay((Long) properties.get(METATYPE_METACARD_UPDATE_INITIAL_DELAY));
       setParentTitle((String) properties.get(METATYPE_PARENT_TITLE));
       setDistanceTolerance((Double) properties.get(METATYPE_DISTANCE_TOLERANCE));
+      if (properties.get(METATYPE_PACKET_BUFFER_KILOBYTES) != null) {
+        setPacketBufferKilobytes((Integer) properties.get(METATYPE_PACKET_BUFFER_KILOBYTES));
+      }
 
       init();
     }
@@ -515,6 +516,11 @@ public class UdpStreamMonitor implements StreamMonitor {
     udpStreamProcessor.setElapsedTimeRolloverCondition(milliseconds);
   }
 
+  /** @param kilobytes must be non-null and positive */
+  public void setPacketBufferKilobytes(Integer kilobytes) {
+    udpStreamProcessor.setPacketBufferKilobytes(kilobytes);
+  }
+
   private boolean isMulticast(String address) {
 
     try {
@@ -555,16 +561,17 @@ public class UdpStreamMonitor implements StreamMonitor {
       Bootstrap bootstrap, NetworkInterface networkInterface, InetAddress inetAddress) {
 
     bootstrap
-        .group(eventLoopGroup)
+        .group(streamResources.getMulticastEventLoopGroup())
         .channelFactory(() -> new NioDatagramChannel(InternetProtocolFamily.IPv4))
         .handler(new Pipeline(udpStreamProcessor))
         .localAddress(inetAddress, monitoredPort)
         .option(ChannelOption.IP_MULTICAST_IF, networkInterface)
-        .option(ChannelOption.SO_REUSEADDR, true);
+        .option(ChannelOption.SO_REUSEADDR, true)
+        .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
 
     try {
       channelFuture = bootstrap.bind(monitoredPort).sync();
-      NioDatagramChannel ch = (NioDatagramChannel) channelFuture.channel();
+      DatagramChannel ch = (DatagramChannel) channelFuture.channel();
 
       ch.joinGroup(new InetSocketAddress(monitoredAddress, monitoredPort), networkInterface).sync();
     } catch (InterruptedException e) {
@@ -573,10 +580,10 @@ public class UdpStreamMonitor implements StreamMonitor {
   }
 
   private void runUnicastServer(Bootstrap bootstrap) {
-    bootstrap
-        .group(eventLoopGroup)
-        .channel(NioDatagramChannel.class)
-        .handler(new Pipeline(udpStreamProcessor));
+    streamResources
+        .configureUnicast(bootstrap)
+        .handler(new Pipeline(udpStreamProcessor))
+        .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
     try {
       channelFuture = bootstrap.bind(monitoredAddress, monitoredPort).sync();
     } catch (InterruptedException e) {
@@ -584,7 +591,7 @@ public class UdpStreamMonitor implements StreamMonitor {
     }
   }
 
-  private static class Pipeline extends ChannelInitializer<NioDatagramChannel> {
+  private static class Pipeline extends ChannelInitializer<DatagramChannel> {
 
     private final UdpStreamProcessor udpStreamProcessor;
 
@@ -593,40 +600,37 @@ public class UdpStreamMonitor implements StreamMonitor {
     }
 
     @Override
-    protected void initChannel(NioDatagramChannel nioDatagramChannel) throws Exception {
-      nioDatagramChannel.pipeline().addLast(udpStreamProcessor.createChannelHandlers());
+    protected void initChannel(DatagramChannel datagramChannel) throws Exception {
+      datagramChannel.pipeline().addLast(udpStreamProcessor.createChannelHandlers());
     }
   }
 
-  private class Server implements Runnable {
-
-    @Override
-    public void run() {
-
-      LOGGER.debug(
-          "starting udp listening thread: address={} port={}", monitoredAddress, monitoredPort);
-
-      Bootstrap bootstrap = new Bootstrap();
+  private void startServer() {
 
-      eventLoopGroup = new NioEventLoopGroup();
+    LOGGER.debug(
+        "starting udp server: address={} port={} epoll={}",
+        monitoredAddress,
+        monitoredPort,
+        streamResources.isEpoll());
 
-      if (isMulticast(monitoredAddress)) {
+    Bootstrap bootstrap = new Bootstrap();
 
-        Optional<Pair<NetworkInterface, InetAddress>> networkPair =
-            findLocalAddress(networkInterface);
+    if (isMulticast(monitoredAddress)) {
 
-        if (networkPair.isPresent()) {
+      Optional<Pair<NetworkInterface, InetAddress>> networkPair =
+          findLocalAddress(networkInterface);
 
-          runMulticastServer(bootstrap, networkPair.get().getKey(), networkPair.get().getValue());
-        } else {
-          LOGGER.debug(
-              "cannot start multicast server because the IPv4 address for interface '{}' cannot be found",
-              networkInterface);
-        }
+      if (networkPair.isPresent()) {
 
+        runMulticastServer(bootstrap, networkPair.get().getKey(), networkPair.get().getValue());
       } else {
-        runUnicastServer(bootstrap);
+        LOGGER.debug(
+            "cannot start multicast server because the IPv4 address for interface '{}' cannot be found",
+            networkInterface);
       }
+
+    } else {
+      runUnicastServer(bootstrap);
     }
   }
 }
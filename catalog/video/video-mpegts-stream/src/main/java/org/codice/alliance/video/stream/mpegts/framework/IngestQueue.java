@@ -0,0 +1,349 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.video.stream.mpegts.framework;
+
+import static org.apache.commons.lang3.Validate.inclusiveBetween;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded queue that hands items to a consumer in batches on a background thread, preserving
+ * the order in which the items were added. Only one batch is processed at a time, so the consumer
+ * does not need to be thread-safe. Nothing blocks the caller: {@link #offer(Object)} rejects items
+ * when the queue is full, and {@link #whenConsumed()} returns a future instead of waiting.
+ *
+ * <p>The capacity is the total weight of the items that have been added but not yet consumed. By
+ * default every item weighs one, so the capacity is a count of items. An item is always accepted
+ * when nothing else is pending, even if it weighs more than the capacity.
+ *
+ * <p>The queue periodically logs its depth, the number of rejected items and the latency between
+ * an item being added and its batch being consumed.
+ *
+ * @param <T> the item type
+ */
+public class IngestQueue<T> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IngestQueue.class);
+
+  private static final long IDLE_THREAD_SECONDS = 60;
+
+  private static final long ACTIVITY_LOG_PERIOD = TimeUnit.SECONDS.toMillis(10);
+
+  private final BlockingQueue<Entry<T>> queue;
+
+  private final long capacity;
+
+  private final int maxBatchSize;
+
+  private final ToLongFunction<T> weigher;
+
+  private final Consumer<List<T>> batchConsumer;
+
+  private final Executor executor;
+
+  private final AtomicBoolean draining = new AtomicBoolean(false);
+
+  private final Object countLock = new Object();
+
+  /** Futures from {@link #whenConsumed()}, oldest first. Guarded by {@link #countLock}. */
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+  /** The number of items ever added. Guarded by {@link #countLock}. */
+  private long addedCount;
+
+  /** The number of items ever consumed. Guarded by {@link #countLock}. */
+  private long consumedCount;
+
+  /** The number of items rejected because the queue was full. Guarded by {@link #countLock}. */
+  private long rejectedCount;
+
+  /** The weight of the items added but not yet consumed. Guarded by {@link #countLock}. */
+  private long pendingWeight;
+
+  /** Only accessed by the consumer. */
+  private long maxLatencyMillis;
+
+  /** Only accessed by the consumer. */
+  private long lastActivityLog;
+
+  /**
+   * Consumes batches on a dedicated thread that exits after being idle for a minute.
+   *
+   * @param name used to name the consumer thread, must be non-null
+   * @param capacity must be positive
+   * @param maxBatchSize must be positive
+   * @param batchConsumer must be non-null
+   */
+  public IngestQueue(String name, int capacity, int maxBatchSize, Consumer<List<T>> batchConsumer) {
+    this(capacity, maxBatchSize, batchConsumer, createExecutor(name));
+  }
+
+  /**
+   * @param capacity must be positive
+   * @param maxBatchSize must be positive
+   * @param batchConsumer must be non-null
+   * @param executor must be non-null
+   */
+  public IngestQueue(
+      int capacity, int maxBatchSize, Consumer<List<T>> batchConsumer, Executor executor) {
+    this(capacity, maxBatchSize, item -> 1, batchConsumer, executor);
+  }
+
+  /**
+   * Consumes batches on a dedicated thread that exits after being idle for a minute.
+   *
+   * @param name used to name the consumer thread, must be non-null
+   * @param capacity the maximum total weight of the pending items, must be positive
+   * @param maxBatchSize must be positive
+   * @param weigher returns the non-negative weight of an item, must be non-null
+   * @param batchConsumer must be non-null
+   */
+  public IngestQueue(
+      String name,
+      long capacity,
+      int maxBatchSize,
+      ToLongFunction<T> weigher,
+      Consumer<List<T>> batchConsumer) {
+    this(capacity, maxBatchSize, weigher, batchConsumer, createExecutor(name));
+  }
+
+  /**
+   * @param capacity the maximum total weight of the pending items, must be positive
+   * @param maxBatchSize must be positive
+   * @param weigher returns the non-negative weight of an item, must be non-null
+   * @param batchConsumer must be non-null
+   * @param executor must be non-null
+   */
+  public IngestQueue(
+      long capacity,
+      int maxBatchSize,
+      ToLongFunction<T> weigher,
+      Consumer<List<T>> batchConsumer,
+      Executor executor) {
+    inclusiveBetween(1, Long.MAX_VALUE, capacity, "capacity must be positive");
+    inclusiveBetween(1, Integer.MAX_VALUE, maxBatchSize, "maxBatchSize must be positive");
+    notNull(weigher, "weigher must be non-null");
+    notNull(batchConsumer, "batchConsumer must be non-null");
+    notNull(executor, "executor must be non-null");
+
+    this.queue = new LinkedBlockingQueue<>();
+    this.capacity = capacity;
+    this.maxBatchSize = maxBatchSize;
+    this.weigher = weigher;
+    this.batchConsumer = batchConsumer;
+    this.executor = executor;
+  }
+
+  private static Executor createExecutor(String name) {
+    notNull(name, "name must be non-null");
+    ThreadPoolExecutor threadPoolExecutor =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            IDLE_THREAD_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new DefaultThreadFactory(name, true));
+    threadPoolExecutor.allowCoreThreadTimeOut(true);
+    return threadPoolExecutor;
+  }
+
+  /**
+   * Add an item to the end of the queue if there is space. This never blocks.
+   *
+   * @param item must be non-null
+   * @return true if the item was added, false if the queue is full
+   */
+  public boolean offer(T item) {
+    notNull(item, "item must be non-null");
+
+    long weight = Math.max(0, weigher.applyAsLong(item));
+
+    synchronized (countLock) {
+      if (pendingWeight > 0 && pendingWeight + weight > capacity) {
+        rejectedCount++;
+        return false;
+      }
+      queue.add(new Entry<>(item, weight, System.nanoTime()));
+      pendingWeight += weight;
+      addedCount++;
+    }
+
+    scheduleDrain();
+    return true;
+  }
+
+  /**
+   * Get a future that completes once every item added before this call has been consumed. The
+   * future is completed on the consumer thread, or immediately if there is nothing to wait for.
+   *
+   * @return non-null future
+   */
+  public CompletableFuture<Void> whenConsumed() {
+    synchronized (countLock) {
+      if (consumedCount >= addedCount) {
+        return CompletableFuture.completedFuture(null);
+      }
+      Waiter waiter = new Waiter(addedCount);
+      waiters.add(waiter);
+      return waiter.future;
+    }
+  }
+
+  /** @return the number of items waiting to be consumed, not counting the batch in progress */
+  public int getDepth() {
+    return queue.size();
+  }
+
+  /** @return the weight of the items added but not yet consumed, including the batch in progress */
+  public long getPendingWeight() {
+    synchronized (countLock) {
+      return pendingWeight;
+    }
+  }
+
+  /** @return the number of items rejected because the queue was full */
+  public long getRejectedCount() {
+    synchronized (countLock) {
+      return rejectedCount;
+    }
+  }
+
+  private void scheduleDrain() {
+    if (draining.compareAndSet(false, true)) {
+      executor.execute(this::drain);
+    }
+  }
+
+  private void drain() {
+    try {
+      List<Entry<T>> batch = new ArrayList<>(maxBatchSize);
+      while (queue.drainTo(batch, maxBatchSize) > 0) {
+        try {
+          batchConsumer.accept(batch.stream().map(Entry::getItem).collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+          LOGGER.debug("unable to consume a batch of queued items: batchSize={}", batch.size(), e);
+        } finally {
+          recordLatency(batch.get(0));
+          consumed(batch.size(), batch.stream().mapToLong(Entry::getWeight).sum());
+          batch.clear();
+        }
+      }
+    } finally {
+      draining.set(false);
+    }
+
+    if (!queue.isEmpty()) {
+      scheduleDrain();
+    }
+  }
+
+  /** The oldest entry in a batch has the largest latency. */
+  private void recordLatency(Entry<T> oldest) {
+    long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.getEnqueueNanos());
+    if (latency > maxLatencyMillis) {
+      maxLatencyMillis = latency;
+    }
+    LOGGER.trace("consumed queued batch: latencyMillis={} depth={}", latency, queue.size());
+    logActivity(latency);
+  }
+
+  private void logActivity(long latency) {
+    long now = System.currentTimeMillis();
+    if (now - lastActivityLog >= ACTIVITY_LOG_PERIOD) {
+      lastActivityLog = now;
+      long rejected;
+      long weight;
+      synchronized (countLock) {
+        rejected = rejectedCount;
+        weight = pendingWeight;
+      }
+      LOGGER.debug(
+          "ingest queue activity: depth={} pendingWeight={} latencyMillis={} maxLatencyMillis={} rejected={}",
+          queue.size(),
+          weight,
+          latency,
+          maxLatencyMillis,
+          rejected);
+    }
+  }
+
+  private void consumed(int count, long weight) {
+    List<Waiter> completed = new ArrayList<>();
+    synchronized (countLock) {
+      consumedCount += count;
+      pendingWeight -= weight;
+      while (!waiters.isEmpty() && waiters.peek().target <= consumedCount) {
+        completed.add(waiters.poll());
+      }
+    }
+    completed.forEach(waiter -> waiter.future.complete(null));
+  }
+
+  /** Completes its future once {@link #consumedCount} reaches {@link #target}. */
+  private static class Waiter {
+
+    private final long target;
+
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    private Waiter(long target) {
+      this.target = target;
+    }
+  }
+
+  private static class Entry<T> {
+
+    private final T item;
+
+    private final long weight;
+
+    private final long enqueueNanos;
+
+    private Entry(T item, long weight, long enqueueNanos) {
+      this.item = item;
+      this.weight = weight;
+      this.enqueueNanos = enqueueNanos;
+    }
+
+    private T getItem() {
+      return item;
+    }
+
+    private long getWeight() {
+      return weight;
+    }
+
+    private long getEnqueueNanos() {
+      return enqueueNanos;
+    }
+  }
+}
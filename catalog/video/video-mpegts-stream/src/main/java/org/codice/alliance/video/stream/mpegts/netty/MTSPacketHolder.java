@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.video.stream.mpegts.netty;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import org.taktik.mpegts.MTSPacket;
+
+/**
+ * Pairs a parsed {@link MTSPacket} with the retained slice of the inbound datagram buffer that
+ * backs it. The packet reads directly from the slice, so the holder must not be released until the
+ * packet has been consumed. Netty decoders release the holder automatically after decoding.
+ */
+class MTSPacketHolder extends DefaultByteBufHolder {
+
+  private final MTSPacket mtsPacket;
+
+  /**
+   * @param data must be non-null
+   * @param mtsPacket must be non-null
+   */
+  MTSPacketHolder(ByteBuf data, MTSPacket mtsPacket) {
+    super(data);
+    notNull(mtsPacket, "mtsPacket must be non-null");
+    this.mtsPacket = mtsPacket;
+  }
+
+  MTSPacket getMtsPacket() {
+    return mtsPacket;
+  }
+
+  @Override
+  public MTSPacketHolder replace(ByteBuf content) {
+    return new MTSPacketHolder(content, mtsPacket);
+  }
+}
@@ -22,8 +22,11 @@ import org.codice.alliance.libs.mpegts.MpegTsDecoder;
 import org.codice.alliance.libs.mpegts.MpegTsDecoderImpl;
 import org.taktik.mpegts.MTSPacket;
 
-/** Converts a series of MTSPackets to PESPackets. */
-class MTSPacketToPESPacketDecoder extends MessageToMessageDecoder<MTSPacket> {
+/**
+ * Converts a series of MTSPackets to PESPackets. Accepts either bare {@link MTSPacket} objects or
+ * {@link MTSPacketHolder} objects, which are released once the packet has been decoded.
+ */
+class MTSPacketToPESPacketDecoder extends MessageToMessageDecoder<Object> {
 
   private final MpegTsDecoder mpegTsDecoder;
 
@@ -36,13 +39,21 @@ class MTSPacketToPESPacketDecoder extends MessageToMessageDecoder<MTSPacket> {
   }
 
   @Override
-  protected void decode(ChannelHandlerContext ctx, MTSPacket mtsPacket, List<Object> outputList)
+  public boolean acceptInboundMessage(Object msg) throws Exception {
+    return msg instanceof MTSPacket || msg instanceof MTSPacketHolder;
+  }
+
+  @Override
+  protected void decode(ChannelHandlerContext ctx, Object msg, List<Object> outputList)
       throws Exception {
 
     notNull(ctx, "ctx must be non-null");
-    notNull(mtsPacket, "mtsPacket must be non-null");
+    notNull(msg, "msg must be non-null");
     notNull(outputList, "outputList must be non-null");
 
+    MTSPacket mtsPacket =
+        msg instanceof MTSPacketHolder ? ((MTSPacketHolder) msg).getMtsPacket() : (MTSPacket) msg;
+
     mpegTsDecoder.read(mtsPacket, outputList::add);
   }
 }
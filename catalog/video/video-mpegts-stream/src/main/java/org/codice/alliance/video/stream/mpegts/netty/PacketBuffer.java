@@ -13,25 +13,24 @@
  */
 package org.codice.alliance.video.stream.mpegts.netty;
 
+import static org.apache.commons.lang3.Validate.inclusiveBetween;
 import static org.apache.commons.lang3.Validate.notNull;
 
+import io.netty.buffer.ByteBuf;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
-import org.codice.alliance.video.stream.mpegts.OutputStreamFactory;
+import org.codice.alliance.video.stream.mpegts.FileChannelFactory;
 import org.codice.alliance.video.stream.mpegts.filename.TempFileGenerator;
 import org.codice.alliance.video.stream.mpegts.filename.TempFileGeneratorImpl;
 import org.codice.alliance.video.stream.mpegts.rollover.RolloverCondition;
@@ -43,8 +42,14 @@ import org.slf4j.LoggerFactory;
  * is on a clean IDR boundary. If an IDR boundary cannot be found, the data will be eventually flush
  * on a arbitrary point to avoid memory exhaustion. This implementation is thread-safe.
  *
- * <p>NOTE: This implementation could probably be improved by using some kind of circular buffer
- * with read and write pointers
+ * <p>Packet data is copied into a ring buffer. Frames are tracked as offsets into the ring, so
+ * flushing a frameset is a single gathered write of at most two regions of the ring. The temporary
+ * file is written through one {@link FileChannel} that stays open until the file is rotated. If the
+ * ring fills up before a frameset is complete, then the ring is grown so that the frameset can
+ * still be flushed on an IDR boundary. Only when the ring has reached its maximum capacity is all
+ * buffered data flushed. The ring is allocated at its initial capacity on the first write and
+ * released when the buffer is reset or flushed at the end of a stream, so idle streams do not hold
+ * on to it.
  */
 public class PacketBuffer {
 
@@ -54,6 +59,15 @@ public class PacketBuffer {
    */
   public static final long ACTIVITY_TIMEOUT = TimeUnit.SECONDS.toMillis(1);
 
+  /** The default number of bytes that the ring buffer initially holds. */
+  public static final int DEFAULT_CAPACITY = 2 * 1024 * 1024;
+
+  /**
+   * The default number of bytes that the ring buffer may grow to. This holds several seconds of a
+   * 20 Mbps stream, which is more than a typical frameset.
+   */
+  public static final int DEFAULT_MAX_CAPACITY = 64 * 1024 * 1024;
+
   private static final Logger LOGGER = LoggerFactory.getLogger(PacketBuffer.class);
 
   /**
@@ -85,11 +99,16 @@ public class PacketBuffer {
 
   private static final long ACTIVITY_LOG_PERIOD = TimeUnit.SECONDS.toMillis(10);
 
-  private final Timer timer = new Timer();
+  /** The capacity of a newly allocated ring. */
+  private int capacity;
+
+  private int maxCapacity = DEFAULT_MAX_CAPACITY;
 
-  private List<Frame> frames = new ArrayList<>();
+  /** The capacity of {@link #ring}, which is between {@link #capacity} and the maximum. */
+  private int ringCapacity;
 
-  private List<byte[]> incompleteFrame = new ArrayList<>();
+  /** Complete frames that have not been flushed yet, oldest first. */
+  private final List<Frame> frames = new ArrayList<>();
 
   private Lock lock = new ReentrantLock();
 
@@ -97,15 +116,37 @@ public class PacketBuffer {
 
   private File currentTempFile = null;
 
+  /** Open channel to {@link #currentTempFile}. May be null. */
+  private FileChannel currentChannel = null;
+
   private Long tempFileCreateTime = null;
 
   private long bytesWrittenToTempFile = 0;
 
-  private long incompleteFrameBytes = 0;
-
   private long maxIncompleteFrameBytes = DEFAULT_MAX_INCOMPLETE_FRAME_BYTES;
 
-  private OutputStreamFactory outputStreamFactory = FileOutputStream::new;
+  private FileChannelFactory fileChannelFactory =
+      file ->
+          FileChannel.open(
+              file.toPath(),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.APPEND);
+
+  /** Allocated on the first write. */
+  private ByteBuffer ring;
+
+  /** Two views of {@link #ring} that are reused for every gathered write. */
+  private ByteBuffer[] gatherBuffers;
+
+  /** Total number of bytes ever written into the ring. */
+  private long writePosition = 0;
+
+  /** Total number of bytes ever flushed or discarded from the ring. */
+  private long readPosition = 0;
+
+  /** Ring position of the first byte of the frame that is still being received. */
+  private long incompleteFrameStart = 0;
 
   private long bytesReceived = 0;
 
@@ -121,24 +162,58 @@ public class PacketBuffer {
    */
   private long lastActivity = 0;
 
+  /** Timestamp of the most recent activity log message. */
+  private long lastActivityLog = 0;
+
   /** By default, new Date objects are created by calling {@link Date#Date()}. */
   private Supplier<Date> dateSupplier = Date::new;
 
   public PacketBuffer() {
-    timer.schedule(
-        new TimerTask() {
-          @Override
-          public void run() {
-            LOGGER.debug(
-                "packet buffer activity: bytesReceived={} packetsReceived={} bytesWritten={} filesWritten={}",
-                bytesReceived,
-                packetsReceived,
-                bytesWritten,
-                filesWritten);
-          }
-        },
-        0,
-        ACTIVITY_LOG_PERIOD);
+    this(DEFAULT_CAPACITY);
+  }
+
+  /** @param capacity number of bytes the ring buffer initially holds, must be positive */
+  public PacketBuffer(int capacity) {
+    inclusiveBetween(1, Integer.MAX_VALUE, capacity, "capacity must be positive");
+    this.capacity = capacity;
+    this.ringCapacity = capacity;
+  }
+
+  /**
+   * Change the number of bytes the ring buffer initially holds. Any buffered data is flushed to the
+   * temp file first and the ring is released, so the new capacity is used from the next write.
+   *
+   * @param capacity must be positive
+   */
+  public void setCapacity(int capacity) {
+    inclusiveBetween(1, Integer.MAX_VALUE, capacity, "capacity must be positive");
+    lock.lock();
+    try {
+      if (capacity == this.capacity) {
+        return;
+      }
+      flushAllBufferedData();
+      this.capacity = capacity;
+      releaseRing();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Change the number of bytes the ring buffer may grow to. The ring never shrinks below its
+   * initial capacity, so a maximum below the initial capacity has no effect.
+   *
+   * @param maxCapacity must be positive
+   */
+  public void setMaxCapacity(int maxCapacity) {
+    inclusiveBetween(1, Integer.MAX_VALUE, maxCapacity, "maxCapacity must be positive");
+    lock.lock();
+    try {
+      this.maxCapacity = maxCapacity;
+    } finally {
+      lock.unlock();
+    }
   }
 
   /** @param tempFileGenerator must be non-null */
@@ -147,10 +222,10 @@ public class PacketBuffer {
     this.tempFileGenerator = tempFileGenerator;
   }
 
-  /** @param outputStreamFactory must be non-null */
-  public void setOutputStreamFactory(OutputStreamFactory outputStreamFactory) {
-    notNull(outputStreamFactory, "outputStreamFactory must be non-null");
-    this.outputStreamFactory = outputStreamFactory;
+  /** @param fileChannelFactory must be non-null */
+  public void setFileChannelFactory(FileChannelFactory fileChannelFactory) {
+    notNull(fileChannelFactory, "fileChannelFactory must be non-null");
+    this.fileChannelFactory = fileChannelFactory;
   }
 
   /** @param maxIncompleteFrameBytes must be non-null */
@@ -165,7 +240,11 @@ public class PacketBuffer {
         + "bytesWrittenToTempFile="
         + bytesWrittenToTempFile
         + ", incompleteFrameBytes="
-        + incompleteFrameBytes
+        + getIncompleteFrameBytes()
+        + ", capacity="
+        + capacity
+        + ", ringCapacity="
+        + ringCapacity
         + '}';
   }
 
@@ -174,11 +253,43 @@ public class PacketBuffer {
     lock.lock();
     try {
       frames.clear();
-      incompleteFrame.clear();
+      readPosition = writePosition;
+      incompleteFrameStart = writePosition;
+      closeChannel();
       currentTempFile = null;
       tempFileCreateTime = null;
       bytesWrittenToTempFile = 0;
-      incompleteFrameBytes = 0;
+      releaseRing();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drop the ring buffer when it holds no data. It is allocated again at its initial capacity by
+   * the next write.
+   */
+  private void releaseRing() {
+    if (getBufferedBytes() == 0) {
+      ring = null;
+      gatherBuffers = null;
+      ringCapacity = capacity;
+    }
+  }
+
+  int getRingCapacity() {
+    lock.lock();
+    try {
+      return ringCapacity;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  boolean isRingAllocated() {
+    lock.lock();
+    try {
+      return ring != null;
     } finally {
       lock.unlock();
     }
@@ -220,17 +331,49 @@ public class PacketBuffer {
     if (rawPacket == null || rawPacket.length == 0) {
       return;
     }
+    write(ByteBuffer.wrap(rawPacket));
+  }
+
+  /**
+   * Write raw data into the buffer. The data is copied into the ring buffer, so the caller keeps
+   * ownership of the ByteBuf and its reader index is not modified. Empty or null values are
+   * handled. See {@link #write(byte[])}.
+   *
+   * @param rawPacket may be null or empty
+   */
+  public void write(ByteBuf rawPacket) {
+
+    if (rawPacket == null || !rawPacket.isReadable()) {
+      return;
+    }
+    write(rawPacket.nioBuffer());
+  }
+
+  private void write(ByteBuffer rawPacket) {
     lock.lock();
     try {
+      int length = rawPacket.remaining();
       lastActivity = System.currentTimeMillis();
-      incompleteFrame.add(rawPacket);
-      incompleteFrameBytes += rawPacket.length;
-      bytesReceived += rawPacket.length;
+      bytesReceived += length;
       packetsReceived++;
-      if (incompleteFrameBytes > maxIncompleteFrameBytes) {
-        frames.add(new Frame(FrameType.UNKNOWN, incompleteFrame));
-        incompleteFrame = new ArrayList<>();
-        incompleteFrameBytes = 0;
+
+      if (length > ringCapacity - getBufferedBytes()) {
+        growRing(getBufferedBytes() + length);
+      }
+
+      if (length > ringCapacity - getBufferedBytes()) {
+        LOGGER.debug("packet buffer is full, flushing all buffered data");
+        flushAllBufferedData();
+      }
+
+      if (length > ringCapacity) {
+        writeDirectly(rawPacket);
+      } else {
+        copyIntoRing(rawPacket);
+      }
+
+      if (getIncompleteFrameBytes() > maxIncompleteFrameBytes) {
+        flushIncompleteFrames();
         flushIfDataAvailable();
       }
     } finally {
@@ -238,6 +381,95 @@ public class PacketBuffer {
     }
   }
 
+  /** Write a packet that can never fit in the ring straight to the temp file. */
+  private void writeDirectly(ByteBuffer rawPacket) {
+    int length = rawPacket.remaining();
+    try {
+      writeToChannel(new ByteBuffer[] {rawPacket.duplicate()});
+    } catch (IOException e) {
+      LOGGER.debug("unable to write to temp file", e);
+    }
+    readPosition += length;
+    writePosition += length;
+    incompleteFrameStart = writePosition;
+  }
+
+  /**
+   * Grow the ring so that it can hold the required number of bytes, up to the maximum capacity. The
+   * buffered data is copied into the new ring, so the frame boundaries are kept.
+   *
+   * @param requiredBytes the number of bytes the ring needs to hold
+   */
+  private void growRing(long requiredBytes) {
+    int limit = Math.max(capacity, maxCapacity);
+    if (ringCapacity >= limit) {
+      return;
+    }
+
+    int newCapacity = (int) Math.min(limit, Math.max(requiredBytes, 2L * ringCapacity));
+
+    if (ring == null) {
+      ringCapacity = newCapacity;
+      return;
+    }
+
+    long bufferedBytes = getBufferedBytes();
+    int offset = ringIndex(readPosition);
+    int firstLength = (int) Math.min(bufferedBytes, ringCapacity - offset);
+
+    ByteBuffer firstRegion = ring.duplicate();
+    firstRegion.clear().position(offset).limit(offset + firstLength);
+    ByteBuffer secondRegion = ring.duplicate();
+    secondRegion.clear().limit((int) (bufferedBytes - firstLength));
+
+    ring = null;
+    gatherBuffers = null;
+    ringCapacity = newCapacity;
+    writePosition = readPosition;
+    copyIntoRing(firstRegion);
+    copyIntoRing(secondRegion);
+
+    LOGGER.debug("grew packet buffer to hold a frameset: ringCapacity={}", ringCapacity);
+  }
+
+  private void copyIntoRing(ByteBuffer rawPacket) {
+    if (ring == null) {
+      ring = ByteBuffer.allocateDirect(ringCapacity);
+      gatherBuffers = new ByteBuffer[] {ring.duplicate(), ring.duplicate()};
+    }
+
+    int length = rawPacket.remaining();
+    int offset = ringIndex(writePosition);
+    int firstLength = Math.min(length, ringCapacity - offset);
+
+    ByteBuffer target = gatherBuffers[0];
+    target.clear().position(offset);
+
+    ByteBuffer source = rawPacket.duplicate();
+    source.limit(source.position() + firstLength);
+    target.put(source);
+
+    if (firstLength < length) {
+      source.limit(rawPacket.limit());
+      target.clear();
+      target.put(source);
+    }
+
+    writePosition += length;
+  }
+
+  private int ringIndex(long position) {
+    return (int) (position % ringCapacity);
+  }
+
+  private long getBufferedBytes() {
+    return writePosition - readPosition;
+  }
+
+  private long getIncompleteFrameBytes() {
+    return writePosition - incompleteFrameStart;
+  }
+
   /**
    * Tell the packet buffer that the recently written data represents a complete frame. A flush to
    * disk will be attempted.
@@ -248,8 +480,8 @@ public class PacketBuffer {
     notNull(frameType, "frameType must be non-null");
     lock.lock();
     try {
-      frames.add(new Frame(frameType, incompleteFrame));
-      incompleteFrame = new ArrayList<>();
+      frames.add(new Frame(frameType, writePosition));
+      incompleteFrameStart = writePosition;
 
       flushIfDataAvailable();
 
@@ -275,27 +507,67 @@ public class PacketBuffer {
     flushFrameset(frames.size() - 1);
   }
 
+  /**
+   * Flush every buffered byte regardless of frame boundaries. Used when the ring buffer is full and
+   * cannot grow any more.
+   */
+  private void flushAllBufferedData() {
+    if (getIncompleteFrameBytes() > 0) {
+      flushIncompleteFrames();
+    }
+    if (!frames.isEmpty()) {
+      try {
+        flushAllData();
+      } catch (IOException e) {
+        LOGGER.debug("unable to write to temp file, discarding buffered data", e);
+        frames.clear();
+        readPosition = writePosition;
+      }
+    }
+  }
+
   /**
    * @param index the index of the last frame of the last frameset
    * @throws IOException
    */
   private void flushFrameset(int index) throws IOException {
 
-    try (OutputStream os = outputStreamFactory.create(getTempFile(), true)) {
+    long end = frames.get(index).end;
+    int length = (int) (end - readPosition);
 
-      List<byte[]> outgoingPackets =
-          frames
-              .subList(0, index + 1)
-              .stream()
-              .flatMap(frame -> frame.packets.stream())
-              .collect(Collectors.toList());
-      frames = new ArrayList<>(frames.subList(index + 1, frames.size()));
+    if (length > 0) {
+      int offset = ringIndex(readPosition);
+      int firstLength = Math.min(length, ringCapacity - offset);
 
-      for (byte[] outgoingPacket : outgoingPackets) {
-        os.write(outgoingPacket);
-        bytesWrittenToTempFile += outgoingPacket.length;
-        bytesWritten += outgoingPacket.length;
-      }
+      gatherBuffers[0].clear().position(offset).limit(offset + firstLength);
+      gatherBuffers[1].clear().limit(length - firstLength);
+
+      writeToChannel(gatherBuffers);
+    }
+
+    readPosition = end;
+    frames.subList(0, index + 1).clear();
+  }
+
+  /**
+   * Write all of the remaining bytes of the buffers to the temp file with gathered writes.
+   *
+   * @param buffers buffers to write
+   * @throws IOException
+   */
+  private void writeToChannel(ByteBuffer[] buffers) throws IOException {
+    FileChannel channel = getChannel();
+
+    long remaining = 0;
+    for (ByteBuffer buffer : buffers) {
+      remaining += buffer.remaining();
+    }
+
+    while (remaining > 0) {
+      long written = channel.write(buffers);
+      remaining -= written;
+      bytesWrittenToTempFile += written;
+      bytesWritten += written;
     }
   }
 
@@ -311,9 +583,11 @@ public class PacketBuffer {
   public RotateResult rotate(RolloverCondition rolloverCondition) {
     lock.lock();
     try {
+      logActivity();
+
       if (isActivityTimeout()) {
         LOGGER.debug("activity timeout detected, flushing data and rolling over file");
-        if (!incompleteFrame.isEmpty()) {
+        if (getIncompleteFrameBytes() > 0) {
           flushIncompleteFrames();
         }
         flushIfDataAvailable();
@@ -334,16 +608,32 @@ public class PacketBuffer {
     }
   }
 
+  /**
+   * Close the channel to the current temp file and hand the file off. The next flush will start a
+   * new temp file.
+   */
   private Optional<File> getFile() {
+    closeChannel();
     File tempFile = currentTempFile;
     currentTempFile = null;
     bytesWrittenToTempFile = 0;
-    return Optional.of(tempFile);
+    return Optional.ofNullable(tempFile);
+  }
+
+  private void closeChannel() {
+    if (currentChannel != null) {
+      try {
+        currentChannel.close();
+      } catch (IOException e) {
+        LOGGER.debug("unable to close temp file: filename={}", currentTempFile, e);
+      }
+      currentChannel = null;
+    }
   }
 
   private void flushIncompleteFrames() {
-    frames.add(new Frame(FrameType.UNKNOWN, incompleteFrame));
-    incompleteFrame = new ArrayList<>();
+    frames.add(new Frame(FrameType.UNKNOWN, writePosition));
+    incompleteFrameStart = writePosition;
   }
 
   /**
@@ -357,7 +647,7 @@ public class PacketBuffer {
     lock.lock();
     try {
 
-      if (!incompleteFrame.isEmpty()) {
+      if (getIncompleteFrameBytes() > 0) {
         flushIncompleteFrames();
       }
 
@@ -365,6 +655,8 @@ public class PacketBuffer {
         flushAllData();
       }
 
+      releaseRing();
+
       if (bytesWrittenToTempFile == 0) {
         return new RotateResult(null, false);
       }
@@ -375,22 +667,34 @@ public class PacketBuffer {
     }
   }
 
-  public void cancelTimer() {
-    timer.cancel();
+  /**
+   * Periodically log the buffer statistics. This piggybacks on the rollover checks, which are run
+   * frequently, so that the packet buffer does not need a thread of its own.
+   */
+  private void logActivity() {
+    long now = System.currentTimeMillis();
+    if (now - lastActivityLog >= ACTIVITY_LOG_PERIOD) {
+      lastActivityLog = now;
+      LOGGER.debug(
+          "packet buffer activity: bytesReceived={} packetsReceived={} bytesWritten={} filesWritten={}",
+          bytesReceived,
+          packetsReceived,
+          bytesWritten,
+          filesWritten);
+    }
   }
 
-  private File getTempFile() throws IOException {
+  private FileChannel getChannel() throws IOException {
     if (currentTempFile == null) {
       tempFileCreateTime = dateSupplier.get().getTime();
       bytesWrittenToTempFile = 0;
       currentTempFile = tempFileGenerator.generate();
       filesWritten++;
     }
-    return currentTempFile;
-  }
-
-  private Set<FrameType> summarizeFrameTypes() {
-    return frames.stream().map(frame -> frame.frameType).collect(Collectors.toSet());
+    if (currentChannel == null) {
+      currentChannel = fileChannelFactory.create(currentTempFile);
+    }
+    return currentChannel;
   }
 
   private long millisSinceLastActivity() {
@@ -409,10 +713,6 @@ public class PacketBuffer {
     return frames.size() > DEFAULT_MAX_FRAMESET_SIZE;
   }
 
-  private boolean isAllUnknownFrameType(Set<FrameType> frameTypeSummary) {
-    return frameTypeSummary.size() == 1 && frameTypeSummary.contains(FrameType.UNKNOWN);
-  }
-
   /**
    * Search the frame list for the last frame in a frameset. This can only be detected when the
    * following occurs: IDR? NON-IDR* IDR. We are never guaranteed to have the leading IDR because we
@@ -427,25 +727,19 @@ public class PacketBuffer {
 
     if (isActivityTimeout() || isMaxFramesetSizeExceeded()) {
       resetLastActivity();
-      return allFrames();
+      return frames.isEmpty() ? Optional.empty() : allFrames();
     }
 
-    Set<FrameType> frameTypeSummary = summarizeFrameTypes();
-
-    if (isAllUnknownFrameType(frameTypeSummary)) {
-      return allFrames();
-    }
-
-    if (!frameTypeSummary.contains(FrameType.IDR)) {
-      return Optional.empty();
-    }
-
-    for (int i = frames.size() - 1; i > 0; i--) {
-      if (frames.get(i).frameType == FrameType.IDR) {
+    boolean allUnknown = true;
+    for (int i = frames.size() - 1; i >= 0; i--) {
+      FrameType frameType = frames.get(i).frameType;
+      if (frameType == FrameType.IDR && i > 0) {
         return Optional.of(i - 1);
       }
+      allUnknown &= frameType == FrameType.UNKNOWN;
     }
-    return Optional.empty();
+
+    return allUnknown && !frames.isEmpty() ? allFrames() : Optional.empty();
   }
 
   private void resetLastActivity() {
@@ -459,18 +753,19 @@ public class PacketBuffer {
   }
 
   /**
-   * Contains all of the raw packets associated with a video frame. May contain non-video data that
-   * was intermixed with the video data.
+   * Marks the end of a video frame in the ring buffer. The frame starts where the previous frame
+   * ended. May contain non-video data that was intermixed with the video data.
    */
   private static class Frame {
 
-    private List<byte[]> packets;
+    private final FrameType frameType;
 
-    private FrameType frameType;
+    /** Ring position just past the last byte of the frame. */
+    private final long end;
 
-    public Frame(FrameType frameType, List<byte[]> packets) {
+    public Frame(FrameType frameType, long end) {
       this.frameType = frameType;
-      this.packets = packets;
+      this.end = end;
     }
   }
 }
@@ -15,7 +15,6 @@ package org.codice.alliance.video.stream.mpegts.netty;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
-import com.google.common.io.ByteSource;
 import ddf.security.Subject;
 import ddf.security.service.SecurityServiceException;
 import io.netty.buffer.ByteBuf;
@@ -23,6 +22,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.handler.codec.MessageToMessageDecoder;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -32,19 +32,20 @@ import org.codice.ddf.security.common.Security;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.taktik.mpegts.MTSPacket;
-import org.taktik.mpegts.sources.MTSSources;
-import org.taktik.mpegts.sources.ResettableMTSSource;
 
 /**
  * Converts datagrams to a series of MTSPackets. Will discard data while looking for the MPEG-TS
- * sync byte.
+ * sync byte. Each instance belongs to a single stream, so all decoding state and synchronization is
+ * per-instance and independent streams never contend with each other.
+ *
+ * <p>Packets are framed as retained slices of the inbound datagram buffer rather than copied, and
+ * are emitted as {@link MTSPacketHolder} objects. Data is only copied when a packet straddles two
+ * datagrams.
  */
 class RawUdpDataToMTSPacketDecoder extends MessageToMessageDecoder<DatagramPacket> {
 
   public static final byte TS_SYNC = (byte) 0x47;
 
-  public static final int BUFFER_SIZE = 4096 * 16;
-
   public static final int TS_PACKET_SIZE = Constants.TS_PACKET_SIZE;
 
   /** Milliseconds to wait until checking the subject token for expiration. */
@@ -52,13 +53,17 @@ class RawUdpDataToMTSPacketDecoder extends MessageToMessageDecoder<DatagramPacke
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RawUdpDataToMTSPacketDecoder.class);
 
-  private static final Lock LOCK = new ReentrantLock();
+  private final Lock lock = new ReentrantLock();
 
-  private ByteBuf byteBuf;
+  /**
+   * Holds the datagram data that has not been framed yet. This is the retained datagram content
+   * itself whenever no partial packet is left over from the previous datagram. May be null.
+   */
+  private ByteBuf cumulation;
 
   private PacketBuffer packetBuffer;
 
-  private MTSParser mtsParser = MTSSources::from;
+  private MTSParser mtsParser = MTSPacket::new;
 
   private UdpStreamProcessor udpStreamProcessor;
 
@@ -77,14 +82,13 @@ class RawUdpDataToMTSPacketDecoder extends MessageToMessageDecoder<DatagramPacke
 
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-    if (byteBuf != null) {
-      byteBuf.release();
+    lock.lock();
+    try {
+      releaseCumulation();
+    } finally {
+      lock.unlock();
     }
-  }
-
-  @Override
-  public void channelActive(ChannelHandlerContext ctx) throws Exception {
-    byteBuf = ctx.alloc().buffer(BUFFER_SIZE);
+    super.channelInactive(ctx);
   }
 
   private boolean isTokenCheck() {
@@ -99,57 +103,74 @@ class RawUdpDataToMTSPacketDecoder extends MessageToMessageDecoder<DatagramPacke
     notNull(msg, "msg must be non-null");
     notNull(outputList, "outputList must be non-null");
 
-    LOCK.lock();
+    lock.lock();
     try {
       checkSecuritySubject(msg);
 
-      byteBuf.writeBytes(msg.content());
+      cumulate(ctx, msg.content());
 
       skipToSyncByte();
 
-      while (byteBuf.readableBytes() >= TS_PACKET_SIZE) {
+      while (cumulation.readableBytes() >= TS_PACKET_SIZE) {
         parseMpegTsPacket(outputList);
       }
 
-      byteBuf.discardReadBytes();
+      if (!cumulation.isReadable()) {
+        releaseCumulation();
+      }
     } finally {
-      LOCK.unlock();
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Append the datagram content to the unframed data. In the common case there is no leftover data
+   * and the content is retained and used in place. Otherwise the leftover bytes and the new content
+   * are copied into a new buffer, because packets already sliced from the old buffer must not be
+   * moved.
+   */
+  private void cumulate(ChannelHandlerContext ctx, ByteBuf content) {
+    if (cumulation == null) {
+      cumulation = content.retain();
+    } else {
+      ByteBuf merged = ctx.alloc().buffer(cumulation.readableBytes() + content.readableBytes());
+      merged.writeBytes(cumulation).writeBytes(content);
+      cumulation.release();
+      cumulation = merged;
+    }
+  }
+
+  private void releaseCumulation() {
+    if (cumulation != null) {
+      cumulation.release();
+      cumulation = null;
     }
   }
 
   /**
    * Attempt to parse the first {@link #TS_PACKET_SIZE} bytes from the ByteBuf. If the parsing
    * succeeds, then add the new mpeg-ts packet to the output list and add the raw bytes to the
-   * packet buffer. If parsing fails, then rewind the read operation on the ByteBuf and discard the
-   * first byte of the ByteBuf, which was a potential sync byte. In either case, skip to the next
-   * sync byte.
+   * packet buffer. If parsing fails, then discard the first byte of the ByteBuf, which was a
+   * potential sync byte. In either case, skip to the next sync byte.
    *
-   * <p>Note: {@link ResettableMTSSource#nextPacket()} can throw unchecked exceptions when parsing
-   * fails.
+   * <p>Note: {@link MTSParser#parse(ByteBuffer)} can throw unchecked exceptions when parsing fails.
    *
    * @param outputList write parsed mpeg-ts packets to this list
    */
   private void parseMpegTsPacket(List<Object> outputList) {
 
-    byte[] payload = new byte[TS_PACKET_SIZE];
-
-    byteBuf.markReaderIndex();
-
-    byteBuf.readBytes(payload);
-
     MTSPacket packet = null;
     try {
-      ResettableMTSSource src = mtsParser.parse(ByteSource.wrap(payload));
-      packet = src.nextPacket();
+      packet = mtsParser.parse(cumulation.nioBuffer(cumulation.readerIndex(), TS_PACKET_SIZE));
     } catch (Exception e) {
       LOGGER.debug("unable to parse mpeg-ts packet", e);
-      byteBuf.resetReaderIndex();
-      byteBuf.skipBytes(1);
+      cumulation.skipBytes(1);
     }
 
     if (packet != null) {
-      packetBuffer.write(payload);
-      outputList.add(packet);
+      ByteBuf retainedPayload = cumulation.readRetainedSlice(TS_PACKET_SIZE);
+      packetBuffer.write(retainedPayload);
+      outputList.add(new MTSPacketHolder(retainedPayload, packet));
     }
 
     skipToSyncByte();
@@ -179,13 +200,13 @@ class RawUdpDataToMTSPacketDecoder extends MessageToMessageDecoder<DatagramPacke
 
     int bytesBefore;
 
-    if ((bytesBefore = byteBuf.bytesBefore(TS_SYNC)) > 0) {
+    if ((bytesBefore = cumulation.bytesBefore(TS_SYNC)) > 0) {
       LOGGER.trace("skipping bytes in raw data stream, looking for MPEG-TS sync {}", bytesBefore);
-      byteBuf.skipBytes(bytesBefore);
+      cumulation.skipBytes(bytesBefore);
     }
   }
 
   public interface MTSParser {
-    ResettableMTSSource parse(ByteSource byteSource) throws IOException;
+    MTSPacket parse(ByteBuffer byteBuffer) throws IOException;
   }
 }
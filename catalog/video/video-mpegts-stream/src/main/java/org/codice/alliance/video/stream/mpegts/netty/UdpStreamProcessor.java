@@ -29,13 +29,14 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Timer;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.Validate;
 import org.codice.alliance.video.security.videographer.token.VideographerAuthenticationToken;
 import org.codice.alliance.video.stream.mpegts.Context;
 import org.codice.alliance.video.stream.mpegts.StreamMonitor;
+import org.codice.alliance.video.stream.mpegts.StreamTimer;
 import org.codice.alliance.video.stream.mpegts.UdpStreamMonitor;
 import org.codice.alliance.video.stream.mpegts.filename.FilenameGenerator;
 import org.codice.alliance.video.stream.mpegts.metacard.MetacardUpdater;
@@ -78,7 +79,8 @@ public class UdpStreamProcessor implements StreamProcessor {
 
   private FilenameGenerator filenameGenerator;
 
-  private Timer timer = new Timer();
+  /** Set by the stream creation plugins and cancelled by the stream shutdown plugins. */
+  private StreamTimer timer;
 
   private List<MetacardType> metacardTypeList;
 
@@ -268,6 +270,17 @@ public class UdpStreamProcessor implements StreamProcessor {
         });
   }
 
+  /** @param kilobytes must be non-null and positive */
+  public void setPacketBufferKilobytes(Integer kilobytes) {
+    notNull(kilobytes, "kilobytes must be non-null");
+    inclusiveBetween(
+        UdpStreamMonitor.PACKET_BUFFER_KILOBYTES_MIN,
+        UdpStreamMonitor.PACKET_BUFFER_KILOBYTES_MAX,
+        kilobytes,
+        "kilobytes must be >0");
+    packetBuffer.setCapacity(kilobytes * 1024);
+  }
+
   public PacketBuffer getPacketBuffer() {
     return packetBuffer;
   }
@@ -278,7 +291,6 @@ public class UdpStreamProcessor implements StreamProcessor {
    */
   public void shutdown() {
     LOGGER.trace("Shutting down stream processor.");
-    packetBuffer.cancelTimer();
 
     Subject localSubject = null;
     try {
@@ -310,8 +322,48 @@ public class UdpStreamProcessor implements StreamProcessor {
     RotateResult rotateResult = packetBuffer.rotate(rolloverCondition);
     rotateResult.getFile().ifPresent(this::doRollover);
     if (rotateResult.isTimeout()) {
+      endStreamAfterRollover(streamEndPlugin);
+    }
+  }
+
+  /**
+   * Call the stream end plugin once the rollover action has finished ingesting the video chunks it
+   * has queued so far, because the stream end plugins expect every child to be in the catalog. This
+   * does not wait for the ingest, so it is safe to call from the shared scheduler. When there is
+   * ingest still in progress, the plugin runs later as the stream's subject.
+   *
+   * @param streamEndPlugin must be non-null
+   * @return a future that completes after the plugin has run
+   */
+  public CompletableFuture<Void> endStreamAfterRollover(StreamEndPlugin streamEndPlugin) {
+    notNull(streamEndPlugin, "streamEndPlugin must be non-null");
+
+    Subject streamSubject = subject;
+    CompletableFuture<Void> rolloverCompletion =
+        rolloverAction == null
+            ? CompletableFuture.completedFuture(null)
+            : rolloverAction.completion();
+
+    if (rolloverCompletion.isDone()) {
       streamEndPlugin.streamEnded(context);
+      return rolloverCompletion;
     }
+
+    LOGGER.debug("waiting for queued video chunks to be ingested before ending the stream");
+    return rolloverCompletion
+        .thenRun(
+            () -> {
+              if (streamSubject == null) {
+                streamEndPlugin.streamEnded(context);
+              } else {
+                streamSubject.execute(() -> streamEndPlugin.streamEnded(context));
+              }
+            })
+        .exceptionally(
+            e -> {
+              LOGGER.debug("unable to run the stream end plugin", e);
+              return null;
+            });
   }
 
   public void doRollover(File tempFile) {
@@ -321,7 +373,7 @@ public class UdpStreamProcessor implements StreamProcessor {
     } catch (RolloverActionException e) {
       LOGGER.debug("unable handle rollover file: tempFile={}", tempFile, e);
     } finally {
-      if (!tempFile.delete()) {
+      if (tempFile.exists() && !tempFile.delete()) {
         LOGGER.debug("unable to delete temp file: filename={}", tempFile);
       }
     }
@@ -392,11 +444,11 @@ public class UdpStreamProcessor implements StreamProcessor {
     this.metacardTypeList = metacardTypeList;
   }
 
-  public Timer getTimer() {
+  public StreamTimer getTimer() {
     return timer;
   }
 
-  public void setTimer(Timer timer) {
+  public void setTimer(StreamTimer timer) {
     this.timer = timer;
   }
 
@@ -15,6 +15,10 @@ package org.codice.alliance.video.stream.mpegts.plugins;
 
 import org.codice.alliance.video.stream.mpegts.Context;
 
+/**
+ * Ends the stream once the video chunks flushed during shutdown have been ingested, without
+ * waiting for them.
+ */
 public class StreamEndShutdownAdapter extends BaseStreamShutdownPlugin {
 
   private final StreamEndPlugin streamEndPlugin;
@@ -25,6 +29,6 @@ public class StreamEndShutdownAdapter extends BaseStreamShutdownPlugin {
 
   @Override
   protected void doOnShutdown(Context context) throws StreamShutdownException {
-    streamEndPlugin.streamEnded(context);
+    context.getUdpStreamProcessor().endStreamAfterRollover(streamEndPlugin);
   }
 }
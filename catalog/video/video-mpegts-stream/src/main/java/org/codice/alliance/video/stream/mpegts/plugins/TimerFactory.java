@@ -13,12 +13,25 @@
  */
 package org.codice.alliance.video.stream.mpegts.plugins;
 
-import java.util.Timer;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Supplier;
+import org.codice.alliance.video.stream.mpegts.StreamTimer;
+
+/** Creates a {@link StreamTimer} for each stream, all backed by one shared scheduler. */
+public class TimerFactory implements Supplier<StreamTimer> {
+
+  private final ScheduledExecutorService scheduler;
+
+  /** @param scheduler must be non-null */
+  public TimerFactory(ScheduledExecutorService scheduler) {
+    notNull(scheduler, "scheduler must be non-null");
+    this.scheduler = scheduler;
+  }
 
-public class TimerFactory implements Supplier<Timer> {
   @Override
-  public Timer get() {
-    return new Timer();
+  public StreamTimer get() {
+    return new StreamTimer(scheduler);
   }
 }
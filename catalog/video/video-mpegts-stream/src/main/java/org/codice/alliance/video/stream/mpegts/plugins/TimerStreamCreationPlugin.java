@@ -13,15 +13,15 @@
  */
 package org.codice.alliance.video.stream.mpegts.plugins;
 
-import java.util.Timer;
 import java.util.function.Supplier;
 import org.codice.alliance.video.stream.mpegts.Context;
+import org.codice.alliance.video.stream.mpegts.StreamTimer;
 
 public class TimerStreamCreationPlugin extends BaseStreamCreationPlugin {
 
-  private final Supplier<Timer> timerSupplier;
+  private final Supplier<StreamTimer> timerSupplier;
 
-  public TimerStreamCreationPlugin(Supplier<Timer> timerSupplier) {
+  public TimerStreamCreationPlugin(Supplier<StreamTimer> timerSupplier) {
     this.timerSupplier = timerSupplier;
   }
 
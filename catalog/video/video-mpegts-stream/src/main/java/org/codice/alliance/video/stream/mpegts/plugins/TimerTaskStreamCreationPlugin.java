@@ -13,9 +13,7 @@
  */
 package org.codice.alliance.video.stream.mpegts.plugins;
 
-import java.util.TimerTask;
 import org.codice.alliance.video.stream.mpegts.Context;
-import org.codice.alliance.video.stream.mpegts.netty.UdpStreamProcessor;
 
 public class TimerTaskStreamCreationPlugin extends BaseStreamCreationPlugin {
 
@@ -31,15 +29,6 @@ public class TimerTaskStreamCreationPlugin extends BaseStreamCreationPlugin {
     context
         .getUdpStreamProcessor()
         .getTimer()
-        .scheduleAtFixedRate(createTimerTask(context.getUdpStreamProcessor()), period, period);
-  }
-
-  private TimerTask createTimerTask(UdpStreamProcessor udpStreamProcessor) {
-    return new TimerTask() {
-      @Override
-      public void run() {
-        udpStreamProcessor.checkForRollover();
-      }
-    };
+        .scheduleAtFixedRate(context.getUdpStreamProcessor()::checkForRollover, period, period);
   }
 }
@@ -33,15 +33,22 @@ import ddf.catalog.source.SourceUnavailableException;
 import ddf.security.Subject;
 import ddf.security.SubjectUtils;
 import java.io.File;
-import java.util.Collections;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.codice.alliance.video.stream.mpegts.Constants;
 import org.codice.alliance.video.stream.mpegts.Context;
 import org.codice.alliance.video.stream.mpegts.filename.FilenameGenerator;
 import org.codice.alliance.video.stream.mpegts.framework.CatalogUpdateRetry;
+import org.codice.alliance.video.stream.mpegts.framework.IngestQueue;
 import org.codice.alliance.video.stream.mpegts.metacard.MetacardUpdater;
 import org.codice.ddf.platform.util.uuidgenerator.UuidGenerator;
 import org.slf4j.Logger;
@@ -50,6 +57,17 @@ import org.slf4j.LoggerFactory;
 /**
  * Stores the child content, links the child to the parent, and updates the parent's location with
  * the union of the child's location.
+ *
+ * <p>The catalog work is performed asynchronously by an {@link IngestQueue} so that a slow catalog
+ * does not delay the stream. This action takes ownership of the temp file by renaming it, and the
+ * file is deleted once it has been ingested. Chunks are ingested in the order they were rolled
+ * over. When several chunks are waiting, they are stored with a single create request, linked to
+ * the parent with a single update request and followed by a single parent update.
+ *
+ * <p>A chunk file is only deleted once the catalog has stored it. If the catalog falls so far
+ * behind that the chunk files waiting to be ingested exceed {@link #MAX_PENDING_INGEST_BYTES}, or
+ * if storing a chunk fails, the chunk file is kept on disk and its location is logged so that it
+ * can be ingested manually.
  */
 public class CatalogRolloverAction extends BaseRolloverAction {
 
@@ -59,6 +77,16 @@ public class CatalogRolloverAction extends BaseRolloverAction {
 
   private static final long INITIAL_RETRY_WAIT_MILLISECONDS = TimeUnit.MILLISECONDS.toMillis(500);
 
+  /**
+   * The maximum size of the chunk files waiting to be ingested before new chunks are left on disk
+   * instead of being queued.
+   */
+  private static final long MAX_PENDING_INGEST_BYTES = 4L * 1024 * 1024 * 1024;
+
+  private static final int MAX_INGEST_BATCH_SIZE = 8;
+
+  private static final String PENDING_SUFFIX = ".ingest";
+
   private final FilenameGenerator filenameGenerator;
 
   private final CatalogFramework catalogFramework;
@@ -69,6 +97,8 @@ public class CatalogRolloverAction extends BaseRolloverAction {
 
   private final UuidGenerator uuidGenerator;
 
+  private final IngestQueue<PendingChild> ingestQueue;
+
   private CatalogUpdateRetry catalogUpdateRetry = new CatalogUpdateRetry();
 
   private String filenameTemplate;
@@ -79,6 +109,7 @@ public class CatalogRolloverAction extends BaseRolloverAction {
    * @param catalogFramework must be non-null
    * @param context must be non-null
    * @param parentMetacardUpdater must be non-null
+   * @param uuidGenerator must be non-null
    */
   public CatalogRolloverAction(
       FilenameGenerator filenameGenerator,
@@ -87,6 +118,33 @@ public class CatalogRolloverAction extends BaseRolloverAction {
       Context context,
       MetacardUpdater parentMetacardUpdater,
       UuidGenerator uuidGenerator) {
+    this(
+        filenameGenerator,
+        filenameTemplate,
+        catalogFramework,
+        context,
+        parentMetacardUpdater,
+        uuidGenerator,
+        MAX_PENDING_INGEST_BYTES,
+        null);
+  }
+
+  /**
+   * Only used for testing so unit tests can ingest on the calling thread.
+   *
+   * @param maxPendingIngestBytes the maximum size of the chunk files waiting to be ingested
+   * @param ingestExecutor the executor that runs the ingest queue, or null to use a dedicated
+   *     thread
+   */
+  CatalogRolloverAction(
+      FilenameGenerator filenameGenerator,
+      String filenameTemplate,
+      CatalogFramework catalogFramework,
+      Context context,
+      MetacardUpdater parentMetacardUpdater,
+      UuidGenerator uuidGenerator,
+      long maxPendingIngestBytes,
+      Executor ingestExecutor) {
     notNull(filenameGenerator, "filenameGenerator must be non-null");
     notNull(filenameTemplate, "filenameTemplate must be non-null");
     notNull(catalogFramework, "catalogFramework must be non-null");
@@ -100,6 +158,24 @@ public class CatalogRolloverAction extends BaseRolloverAction {
     this.context = context;
     this.parentMetacardUpdater = parentMetacardUpdater;
     this.uuidGenerator = uuidGenerator;
+
+    if (ingestExecutor == null) {
+      this.ingestQueue =
+          new IngestQueue<>(
+              "video-stream-ingest",
+              maxPendingIngestBytes,
+              MAX_INGEST_BATCH_SIZE,
+              PendingChild::getFileSize,
+              this::ingest);
+    } else {
+      this.ingestQueue =
+          new IngestQueue<>(
+              maxPendingIngestBytes,
+              MAX_INGEST_BATCH_SIZE,
+              PendingChild::getFileSize,
+              this::ingest,
+              ingestExecutor);
+    }
   }
 
   public void setCatalogUpdateRetry(CatalogUpdateRetry catalogUpdateRetry) {
@@ -125,51 +201,121 @@ public class CatalogRolloverAction extends BaseRolloverAction {
   public MetacardImpl doAction(MetacardImpl metacard, File tempFile)
       throws RolloverActionException {
 
-    return context.modifyParentOrChild(
-        isParentDirty -> {
-          Subject subject = context.getUdpStreamProcessor().getSubject();
+    Subject subject = context.getUdpStreamProcessor().getSubject();
 
-          if (subject == null) {
-            LOGGER.debug("no security subject available, cannot upload video chunk");
-            return metacard;
-          }
+    if (subject == null) {
+      LOGGER.debug("no security subject available, cannot upload video chunk");
+      return metacard;
+    }
 
-          return subject.execute(
-              () -> {
-                String fileName = generateFilename();
+    String fileName = generateFilename();
 
-                enforceRequiredMetacardFields(metacard, fileName);
+    enforceRequiredMetacardFields(metacard, fileName);
 
-                ContentItem contentItem =
-                    createContentItem(metacard, fileName, Files.asByteSource(tempFile));
+    File pendingFile = takeOwnership(tempFile);
 
-                CreateStorageRequest createStorageRequest = createStorageRequest(contentItem);
+    if (!ingestQueue.offer(
+        new PendingChild(metacard, getContentItemId(metacard), fileName, pendingFile, subject))) {
+      LOGGER.warn(
+          "Video chunk {} was not ingested because {} bytes of video chunks are already waiting to be ingested. The catalog is not keeping up with the stream. The chunk was kept at {} ({} chunks kept so far).",
+          fileName,
+          ingestQueue.getPendingWeight(),
+          pendingFile,
+          ingestQueue.getRejectedCount());
+      return metacard;
+    }
 
-                CreateResponse createResponse = submitStorageCreateRequest(createStorageRequest);
+    LOGGER.trace(
+        "queued video chunk for ingest: file={} queueDepth={}",
+        pendingFile,
+        ingestQueue.getDepth());
 
-                for (Metacard childMetacard : createResponse.getCreatedMetacards()) {
-                  LOGGER.trace("created catalog content with id={}", childMetacard.getId());
+    return metacard;
+  }
 
-                  linkChildToParent(childMetacard);
+  @Override
+  public CompletableFuture<Void> completion() {
+    return ingestQueue.whenConsumed();
+  }
 
-                  updateParentWithChildMetadata(childMetacard);
-                }
+  /**
+   * Renames the temp file so that the caller's cleanup of the temp file does not remove it before
+   * it is ingested.
+   */
+  private File takeOwnership(File tempFile) throws RolloverActionException {
+    File pendingFile = new File(tempFile.getPath() + PENDING_SUFFIX);
+    try {
+      Files.move(tempFile, pendingFile);
+    } catch (IOException e) {
+      throw new RolloverActionException(
+          String.format("unable to queue video chunk for ingest: tempFile=%s", tempFile), e);
+    }
+    return pendingFile;
+  }
 
-                isParentDirty.set(true);
+  private void ingest(List<PendingChild> batch) {
+    Set<String> storedIds = new HashSet<>();
+    try {
+      context.modifyParentOrChild(
+          isParentDirty ->
+              batch
+                  .get(0)
+                  .getSubject()
+                  .execute(
+                      () -> {
+                        CreateResponse createResponse =
+                            submitStorageCreateRequest(createStorageRequest(batch));
+
+                        List<Metacard> childMetacards = createResponse.getCreatedMetacards();
+
+                        childMetacards.forEach(
+                            childMetacard -> {
+                              storedIds.add(childMetacard.getId());
+                              LOGGER.trace(
+                                  "created catalog content with id={}", childMetacard.getId());
+                            });
+
+                        if (!childMetacards.isEmpty()) {
+                          linkChildrenToParent(childMetacards);
+
+                          updateParentWithChildMetadata(childMetacards);
+                        }
+
+                        isParentDirty.set(true);
+
+                        return null;
+                      }));
+    } catch (RuntimeException e) {
+      LOGGER.warn("Unable to ingest {} video chunks.", batch.size(), e);
+    } finally {
+      for (PendingChild pendingChild : batch) {
+        if (storedIds.contains(pendingChild.getId())) {
+          deletePendingFile(pendingChild.getFile());
+        } else {
+          LOGGER.warn(
+              "Video chunk {} was not stored in the catalog. The chunk was kept at {}.",
+              pendingChild.getFileName(),
+              pendingChild.getFile());
+        }
+      }
+    }
+  }
 
-                return metacard;
-              });
-        });
+  private void deletePendingFile(File file) {
+    if (!file.delete()) {
+      LOGGER.debug("unable to delete temp file: filename={}", file);
+    }
   }
 
   private String generateFilename() {
     return filenameGenerator.generateFilename(filenameTemplate);
   }
 
-  private void updateParentWithChildMetadata(Metacard childMetacard) {
+  private void updateParentWithChildMetadata(List<Metacard> childMetacards) {
     if (context.getParentMetacard().isPresent()) {
       Metacard parentMetacard = context.getParentMetacard().get();
-      parentMetacardUpdater.update(parentMetacard, childMetacard, context);
+      childMetacards.forEach(
+          childMetacard -> parentMetacardUpdater.update(parentMetacard, childMetacard, context));
       UpdateRequest updateRequest = createUpdateRequest(parentMetacard.getId(), parentMetacard);
       submitParentUpdateRequest(updateRequest);
     }
@@ -208,12 +354,14 @@ public class CatalogRolloverAction extends BaseRolloverAction {
     return new UpdateRequestImpl(id, metacard);
   }
 
-  private void linkChildToParent(Metacard childMetacard) {
-    setDerivedAttribute(childMetacard);
+  private void linkChildrenToParent(List<Metacard> childMetacards) {
+    childMetacards.forEach(this::setDerivedAttribute);
 
-    UpdateRequest updateChild = createUpdateRequest(childMetacard.getId(), childMetacard);
+    UpdateRequest updateChildren =
+        new UpdateRequestImpl(
+            childMetacards.stream().map(Metacard::getId).toArray(String[]::new), childMetacards);
 
-    submitChildUpdateRequest(updateChild);
+    submitChildUpdateRequest(updateChildren);
   }
 
   private void setDerivedAttribute(Metacard childMetacard) {
@@ -235,19 +383,31 @@ public class CatalogRolloverAction extends BaseRolloverAction {
     }
   }
 
-  private CreateStorageRequest createStorageRequest(ContentItem contentItem) {
-    return new CreateStorageRequestImpl(Collections.singletonList(contentItem), new HashMap<>());
+  private CreateStorageRequest createStorageRequest(List<PendingChild> batch) {
+    List<ContentItem> contentItems =
+        batch
+            .stream()
+            .map(
+                pendingChild ->
+                    createContentItem(
+                        pendingChild.getId(),
+                        pendingChild.getMetacard(),
+                        pendingChild.getFileName(),
+                        Files.asByteSource(pendingChild.getFile())))
+            .collect(Collectors.toList());
+    return new CreateStorageRequestImpl(contentItems, new HashMap<>());
   }
 
-  private ContentItem createContentItem(
-      MetacardImpl metacard, String fileName, ByteSource byteSource) {
-    String metacardId;
+  /** The catalog stores the chunk under this id, so it identifies the chunks that were stored. */
+  private String getContentItemId(MetacardImpl metacard) {
     if (metacard != null && !StringUtils.isEmpty(metacard.getId())) {
-      metacardId = metacard.getId();
-    } else {
-      metacardId = uuidGenerator.generateUuid();
+      return metacard.getId();
     }
+    return uuidGenerator.generateUuid();
+  }
 
+  private ContentItem createContentItem(
+      String metacardId, MetacardImpl metacard, String fileName, ByteSource byteSource) {
     return new ContentItemImpl(
         metacardId, byteSource, Constants.MPEGTS_MIME_TYPE, fileName, 0l, metacard);
   }
@@ -281,4 +441,54 @@ public class CatalogRolloverAction extends BaseRolloverAction {
       metacard.setId(UUID.randomUUID().toString().replaceAll("-", ""));
     }
   }
+
+  /** A video chunk waiting to be ingested. */
+  private static class PendingChild {
+
+    private final MetacardImpl metacard;
+
+    private final String id;
+
+    private final String fileName;
+
+    private final File file;
+
+    private final long fileSize;
+
+    private final Subject subject;
+
+    private PendingChild(
+        MetacardImpl metacard, String id, String fileName, File file, Subject subject) {
+      this.metacard = metacard;
+      this.id = id;
+      this.fileName = fileName;
+      this.file = file;
+      this.fileSize = file.length();
+      this.subject = subject;
+    }
+
+    private MetacardImpl getMetacard() {
+      return metacard;
+    }
+
+    private String getId() {
+      return id;
+    }
+
+    private String getFileName() {
+      return fileName;
+    }
+
+    private File getFile() {
+      return file;
+    }
+
+    private long getFileSize() {
+      return fileSize;
+    }
+
+    private Subject getSubject() {
+      return subject;
+    }
+  }
 }
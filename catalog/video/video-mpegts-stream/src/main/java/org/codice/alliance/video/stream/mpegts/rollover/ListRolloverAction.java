@@ -16,6 +16,7 @@ package org.codice.alliance.video.stream.mpegts.rollover;
 import ddf.catalog.data.impl.MetacardImpl;
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /** Chains a list of RolloverAction objects together. */
 public class ListRolloverAction extends BaseRolloverAction {
@@ -38,6 +39,12 @@ public class ListRolloverAction extends BaseRolloverAction {
     return tmp;
   }
 
+  @Override
+  public CompletableFuture<Void> completion() {
+    return CompletableFuture.allOf(
+        actionList.stream().map(RolloverAction::completion).toArray(CompletableFuture[]::new));
+  }
+
   @Override
   public String toString() {
     return "ListRolloverAction{" + "actionList=" + actionList + '}';
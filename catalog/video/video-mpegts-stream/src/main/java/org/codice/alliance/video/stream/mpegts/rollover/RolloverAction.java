@@ -15,6 +15,7 @@ package org.codice.alliance.video.stream.mpegts.rollover;
 
 import ddf.catalog.data.impl.MetacardImpl;
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
 
 public interface RolloverAction {
 
@@ -36,4 +37,15 @@ public interface RolloverAction {
    * @throws RolloverActionException
    */
   MetacardImpl doAction(File tempFile) throws RolloverActionException;
+
+  /**
+   * Get a future that completes when the work this action has handed off to run asynchronously so
+   * far, such as catalog ingest, has finished. The default implementation has no asynchronous work
+   * and returns a completed future.
+   *
+   * @return non-null future
+   */
+  default CompletableFuture<Void> completion() {
+    return CompletableFuture.completedFuture(null);
+  }
 }
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.video.stream.mpegts;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.DatagramChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SharedStreamResourcesTest {
+
+  private SharedStreamResources sharedStreamResources;
+
+  @Before
+  public void setup() {
+    sharedStreamResources = new SharedStreamResources(false, 1, 1);
+  }
+
+  @After
+  public void teardown() {
+    sharedStreamResources.shutdown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidEventLoopThreads() {
+    new SharedStreamResources(false, 0, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSchedulerThreads() {
+    new SharedStreamResources(false, 1, 0);
+  }
+
+  @Test
+  public void testNioSharesMulticastGroup() {
+    assertThat(sharedStreamResources.isEpoll(), is(false));
+    assertThat(
+        sharedStreamResources.getMulticastEventLoopGroup(),
+        sameInstance(sharedStreamResources.getMulticastEventLoopGroup()));
+  }
+
+  /** Several unicast servers can be bound on the single shared event loop thread. */
+  @Test
+  public void testUnicastServersShareEventLoop() throws Exception {
+    DatagramChannel first = bind();
+    DatagramChannel second = bind();
+    try {
+      assertThat(first.eventLoop(), sameInstance(second.eventLoop()));
+    } finally {
+      first.close().sync();
+      second.close().sync();
+    }
+  }
+
+  @Test
+  public void testUnicastReadBufferIsDatagramSized() throws Exception {
+    DatagramChannel channel = bind();
+    try {
+      assertThat(
+          channel.config().getRecvByteBufAllocator().newHandle().guess(),
+          is(SharedStreamResources.MAX_DATAGRAM_PAYLOAD_SIZE));
+    } finally {
+      channel.close().sync();
+    }
+  }
+
+  @Test
+  public void testShutdown() {
+    sharedStreamResources.shutdown();
+    assertThat(sharedStreamResources.getScheduler().isShutdown(), is(true));
+  }
+
+  private DatagramChannel bind() throws InterruptedException {
+    return (DatagramChannel)
+        sharedStreamResources
+            .configureUnicast(new Bootstrap())
+            .handler(new ChannelInboundHandlerAdapter())
+            .bind("127.0.0.1", 0)
+            .sync()
+            .channel();
+  }
+}
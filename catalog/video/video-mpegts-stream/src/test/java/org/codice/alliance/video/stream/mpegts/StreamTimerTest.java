@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.video.stream.mpegts;
+
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamTimerTest {
+
+  private static final long PERIOD = 50;
+
+  private ScheduledExecutorService scheduler;
+
+  @Before
+  public void setup() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @After
+  public void teardown() {
+    scheduler.shutdownNow();
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNullScheduler() {
+    new StreamTimer(null);
+  }
+
+  @Test
+  public void testTaskRunsRepeatedlyAfterFailure() {
+    Runnable task = mock(Runnable.class);
+    doThrow(RuntimeException.class).doNothing().when(task).run();
+
+    new StreamTimer(scheduler).scheduleAtFixedRate(task, 0, PERIOD);
+
+    verify(task, after(PERIOD * 5).atLeast(2)).run();
+  }
+
+  /** Cancelling one stream's timer must not affect another stream that shares the scheduler. */
+  @Test
+  public void testCancelOnlyAffectsOwnTasks() {
+    Runnable cancelledTask = mock(Runnable.class);
+    Runnable otherTask = mock(Runnable.class);
+
+    StreamTimer cancelledTimer = new StreamTimer(scheduler);
+    StreamTimer otherTimer = new StreamTimer(scheduler);
+
+    cancelledTimer.scheduleAtFixedRate(cancelledTask, PERIOD, PERIOD);
+    otherTimer.scheduleAtFixedRate(otherTask, PERIOD, PERIOD);
+
+    cancelledTimer.cancel();
+    reset(cancelledTask);
+
+    verify(otherTask, after(PERIOD * 4).atLeast(1)).run();
+    verify(cancelledTask, never()).run();
+    verify(otherTask, atLeast(1)).run();
+  }
+}
@@ -17,6 +17,7 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import ddf.catalog.CatalogFramework;
 import ddf.catalog.data.MetacardType;
@@ -189,6 +190,19 @@ public class UdpStreamMonitorTest {
     assertThat(udpStreamMonitor.getFileNameTemplate(), is(filenameTemplate));
   }
 
+  @Test(expected = NullPointerException.class)
+  public void testSetStreamResourcesNullArg() {
+    udpStreamMonitor.setStreamResources(null);
+  }
+
+  /** Without the shared stream resources the monitor is not ready and cannot start. */
+  @Test(expected = RuntimeException.class)
+  public void testStartMonitoringWithoutStreamResources() {
+    when(udpStreamProcessor.isReady()).thenReturn(true);
+    udpStreamMonitor.setMonitoredAddress("udp://127.0.0.1:50000");
+    udpStreamMonitor.startMonitoring();
+  }
+
   @Test(expected = NullPointerException.class)
   public void testSetFilenameGeneratorNullArg() {
     udpStreamMonitor.setFilenameGenerator(null);
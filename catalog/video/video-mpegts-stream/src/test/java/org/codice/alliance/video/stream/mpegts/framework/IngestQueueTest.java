@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.video.stream.mpegts.framework;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class IngestQueueTest {
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new IngestQueue<String>(0, 1, batch -> {}, Runnable::run);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidBatchSize() {
+    new IngestQueue<String>(1, 0, batch -> {}, Runnable::run);
+  }
+
+  @Test
+  public void testBatchesPreserveOrder() {
+    List<Runnable> deferred = new ArrayList<>();
+    List<List<Integer>> batches = new ArrayList<>();
+
+    IngestQueue<Integer> ingestQueue = new IngestQueue<>(10, 2, batches::add, deferred::add);
+
+    for (int i = 0; i < 5; i++) {
+      assertThat(ingestQueue.offer(i), is(true));
+    }
+
+    assertThat(ingestQueue.getDepth(), is(5));
+    assertThat(deferred, hasSize(1));
+
+    deferred.get(0).run();
+
+    assertThat(batches, contains(Arrays.asList(0, 1), Arrays.asList(2, 3), Arrays.asList(4)));
+    assertThat(ingestQueue.getDepth(), is(0));
+  }
+
+  @Test
+  public void testFailedBatchDoesNotStopQueue() {
+    List<Integer> consumed = new ArrayList<>();
+
+    IngestQueue<Integer> ingestQueue =
+        new IngestQueue<>(
+            10,
+            1,
+            batch -> {
+              if (batch.get(0) == 0) {
+                throw new RuntimeException("catalog unavailable");
+              }
+              consumed.addAll(batch);
+            },
+            Runnable::run);
+
+    ingestQueue.offer(0);
+    ingestQueue.offer(1);
+
+    assertThat(consumed, contains(1));
+    assertThat(ingestQueue.whenConsumed().isDone(), is(true));
+  }
+
+  /** When the queue is full, new items are rejected instead of waiting for space. */
+  @Test
+  public void testOfferWhenFull() {
+    List<Runnable> deferred = new ArrayList<>();
+    List<Integer> consumed = new ArrayList<>();
+
+    IngestQueue<Integer> ingestQueue = new IngestQueue<>(2, 10, consumed::addAll, deferred::add);
+
+    assertThat(ingestQueue.offer(0), is(true));
+    assertThat(ingestQueue.offer(1), is(true));
+    assertThat(ingestQueue.offer(2), is(false));
+
+    deferred.get(0).run();
+
+    assertThat(consumed, contains(0, 1));
+    assertThat(ingestQueue.offer(3), is(true));
+    assertThat(ingestQueue.getRejectedCount(), is(1L));
+  }
+
+  /**
+   * The capacity limits the total weight of the pending items, but an item heavier than the
+   * capacity is accepted when nothing else is pending.
+   */
+  @Test
+  public void testOfferWhenFullByWeight() {
+    List<Runnable> deferred = new ArrayList<>();
+    List<Integer> consumed = new ArrayList<>();
+
+    IngestQueue<Integer> ingestQueue =
+        new IngestQueue<>(100, 10, Integer::longValue, consumed::addAll, deferred::add);
+
+    assertThat(ingestQueue.offer(60), is(true));
+    assertThat(ingestQueue.offer(40), is(true));
+    assertThat(ingestQueue.offer(1), is(false));
+    assertThat(ingestQueue.getPendingWeight(), is(100L));
+
+    deferred.get(0).run();
+
+    assertThat(consumed, contains(60, 40));
+    assertThat(ingestQueue.getPendingWeight(), is(0L));
+    assertThat(ingestQueue.offer(500), is(true));
+    assertThat(ingestQueue.offer(1), is(false));
+  }
+
+  /** A future only waits for the items that were added before it was requested. */
+  @Test
+  public void testWhenConsumed() {
+    List<Runnable> deferred = new ArrayList<>();
+
+    IngestQueue<Integer> ingestQueue = new IngestQueue<>(10, 1, batch -> {}, deferred::add);
+
+    assertThat(ingestQueue.whenConsumed().isDone(), is(true));
+
+    ingestQueue.offer(0);
+    CompletableFuture<Void> first = ingestQueue.whenConsumed();
+    ingestQueue.offer(1);
+    CompletableFuture<Void> second = ingestQueue.whenConsumed();
+
+    assertThat(first.isDone(), is(false));
+
+    deferred.get(0).run();
+
+    assertThat(first.isDone(), is(true));
+    assertThat(second.isDone(), is(true));
+  }
+
+  @Test
+  public void testWhenConsumedOnConsumerThread() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+
+    IngestQueue<Integer> ingestQueue =
+        new IngestQueue<>(
+            "test-ingest",
+            10,
+            10,
+            batch -> {
+              try {
+                release.await();
+                Thread.sleep(20);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+
+    ingestQueue.offer(1);
+
+    CompletableFuture<String> consumerThread =
+        ingestQueue.whenConsumed().thenApply(ignored -> Thread.currentThread().getName());
+
+    assertThat(consumerThread.isDone(), is(false));
+
+    release.countDown();
+
+    assertThat(consumerThread.get(5, TimeUnit.SECONDS), startsWith("test-ingest"));
+  }
+}
@@ -18,18 +18,22 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.io.ByteArrayOutputStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
 import org.codice.alliance.video.stream.mpegts.filename.TempFileGenerator;
 import org.codice.alliance.video.stream.mpegts.rollover.RolloverCondition;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class PacketBufferTest {
 
@@ -39,22 +43,36 @@ public class PacketBufferTest {
 
   private Optional<File> tempFile;
 
-  private OutputStream outputStream;
+  private File outputFile;
 
-  private ByteArrayOutputStream os;
+  private int channelsOpened;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
   @Before
   public void setup() throws IOException {
+    outputFile = temporaryFolder.newFile("x");
     TempFileGenerator tempFileGenerator = mock(TempFileGenerator.class);
-    when(tempFileGenerator.generate()).thenReturn(new File("x"));
+    when(tempFileGenerator.generate()).thenReturn(outputFile);
     packetBuffer = new PacketBuffer();
-    outputStream = mock(OutputStream.class);
-    packetBuffer.setOutputStreamFactory((file, append) -> outputStream);
+    channelsOpened = 0;
+    packetBuffer.setFileChannelFactory(
+        file -> {
+          channelsOpened++;
+          return openChannel(file);
+        });
     packetBuffer.setTempFileGenerator(tempFileGenerator);
     rolloverCondition = mock(RolloverCondition.class);
     when(rolloverCondition.isRolloverReady(any())).thenReturn(true);
     tempFile = null;
-    os = new ByteArrayOutputStream();
+  }
+
+  private static FileChannel openChannel(File file) throws IOException {
+    return FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private byte[] readOutput() throws IOException {
+    return Files.readAllBytes(outputFile.toPath());
   }
 
   @Test
@@ -90,7 +108,166 @@ public class PacketBufferTest {
     byte[] payload = new byte[] {0x01, 0x02};
     packetBuffer.setMaxIncompleteFrameBytes(1);
     packetBuffer.write(payload);
-    verify(outputStream).write(payload);
+    assertThat(readOutput(), is(payload));
+  }
+
+  /** A ByteBuf is copied into the packet buffer, so the caller keeps ownership of it. */
+  @Test
+  public void testWriteByteBuf() throws IOException {
+    packetBuffer.setMaxIncompleteFrameBytes(1);
+
+    ByteBuf payload = Unpooled.wrappedBuffer(new byte[] {0x01, 0x02});
+    packetBuffer.write(payload);
+
+    assertThat(payload.refCnt(), is(1));
+    assertThat(payload.readableBytes(), is(2));
+    assertThat(readOutput(), is(new byte[] {0x01, 0x02}));
+  }
+
+  /** Data that is discarded by a reset is never written. */
+  @Test
+  public void testReset() throws IOException {
+    completeVideoSequence(
+        new byte[] {0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06});
+
+    packetBuffer.reset();
+
+    writePacket((byte) 0x07);
+    idr();
+
+    assertThat(readOutput(), is(new byte[] {0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03}));
+  }
+
+  /** The ring buffer is only held while a stream has data in it. */
+  @Test
+  public void testResetReleasesRing() {
+    assertThat(packetBuffer.isRingAllocated(), is(false));
+
+    packetBuffer.write(new byte[] {0x01});
+    assertThat(packetBuffer.isRingAllocated(), is(true));
+
+    packetBuffer.reset();
+    assertThat(packetBuffer.isRingAllocated(), is(false));
+  }
+
+  @Test
+  public void testFlushAndRotateReleasesRing() throws IOException {
+    packetBuffer.write(new byte[] {0x01, 0x02});
+
+    assertThat(packetBuffer.flushAndRotate().getFile().isPresent(), is(true));
+    assertThat(packetBuffer.isRingAllocated(), is(false));
+    assertThat(readOutput(), is(new byte[] {0x01, 0x02}));
+  }
+
+  /** Changing the capacity flushes the buffered data, and later writes use the new capacity. */
+  @Test
+  public void testSetCapacity() throws IOException {
+    packetBuffer.write(new byte[] {0x01, 0x02, 0x03});
+
+    packetBuffer.setMaxCapacity(2);
+    packetBuffer.setCapacity(2);
+    assertThat(packetBuffer.isRingAllocated(), is(false));
+    assertThat(readOutput(), is(new byte[] {0x01, 0x02, 0x03}));
+
+    packetBuffer.write(new byte[] {0x04, 0x05});
+    packetBuffer.write(new byte[] {0x06});
+
+    assertThat(readOutput(), is(new byte[] {0x01, 0x02, 0x03, 0x04, 0x05}));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetCapacityNotPositive() {
+    packetBuffer.setCapacity(0);
+  }
+
+  /** Data that wraps around the end of the ring buffer is written in order. */
+  @Test
+  public void testWriteWrapsAroundRing() throws IOException {
+    packetBuffer = new PacketBuffer(4);
+    packetBuffer.setMaxCapacity(4);
+    packetBuffer.setFileChannelFactory(PacketBufferTest::openChannel);
+    TempFileGenerator tempFileGenerator = mock(TempFileGenerator.class);
+    when(tempFileGenerator.generate()).thenReturn(outputFile);
+    packetBuffer.setTempFileGenerator(tempFileGenerator);
+
+    packetBuffer.write(new byte[] {0x01, 0x02, 0x03});
+    idr();
+    packetBuffer.write(new byte[] {0x04, 0x05});
+    idr();
+    packetBuffer.write(new byte[] {0x06, 0x07});
+    idr();
+
+    assertThat(readOutput(), is(new byte[] {0x01, 0x02, 0x03, 0x04, 0x05}));
+  }
+
+  /** When the ring buffer is full and cannot grow, all buffered data is flushed to make room. */
+  @Test
+  public void testWriteFlushesWhenFull() throws IOException {
+    packetBuffer = new PacketBuffer(4);
+    packetBuffer.setMaxCapacity(4);
+    packetBuffer.setFileChannelFactory(PacketBufferTest::openChannel);
+    TempFileGenerator tempFileGenerator = mock(TempFileGenerator.class);
+    when(tempFileGenerator.generate()).thenReturn(outputFile);
+    packetBuffer.setTempFileGenerator(tempFileGenerator);
+
+    packetBuffer.write(new byte[] {0x01, 0x02, 0x03});
+    packetBuffer.write(new byte[] {0x04, 0x05});
+
+    assertThat(readOutput(), is(new byte[] {0x01, 0x02, 0x03}));
+  }
+
+  /**
+   * A frameset larger than the initial capacity grows the ring, so the data is still only flushed
+   * on an IDR boundary. The wrapped data is kept in order when the ring grows.
+   */
+  @Test
+  public void testFramesetLargerThanCapacity() throws IOException {
+    packetBuffer = new PacketBuffer(4);
+    packetBuffer.setFileChannelFactory(PacketBufferTest::openChannel);
+    TempFileGenerator tempFileGenerator = mock(TempFileGenerator.class);
+    when(tempFileGenerator.generate()).thenReturn(outputFile);
+    packetBuffer.setTempFileGenerator(tempFileGenerator);
+
+    packetBuffer.write(new byte[] {0x01, 0x02});
+    idr();
+    packetBuffer.write(new byte[] {0x03});
+    nonidr();
+    packetBuffer.write(new byte[] {0x04});
+    idr();
+    assertThat(readOutput(), is(new byte[] {0x01, 0x02, 0x03}));
+
+    packetBuffer.write(new byte[] {0x05, 0x06});
+    nonidr();
+    packetBuffer.write(new byte[] {0x07, 0x08, 0x09});
+    nonidr();
+    assertThat(packetBuffer.getRingCapacity(), is(8));
+    assertThat(readOutput(), is(new byte[] {0x01, 0x02, 0x03}));
+
+    packetBuffer.write(new byte[] {0x0a});
+    idr();
+    assertThat(
+        readOutput(), is(new byte[] {0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09}));
+
+    packetBuffer.reset();
+    assertThat(packetBuffer.getRingCapacity(), is(4));
+  }
+
+  /** The temp file channel stays open across flushes until the file is rotated. */
+  @Test
+  public void testChannelReusedUntilRotate() {
+    completeVideoSequence(
+        new byte[] {0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03});
+    completeVideoSequence(
+        new byte[] {0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03});
+
+    assertThat(channelsOpened, is(1));
+
+    assertThat(packetBuffer.rotate(rolloverCondition).getFile().isPresent(), is(true));
+
+    completeVideoSequence(
+        new byte[] {0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03});
+
+    assertThat(channelsOpened, is(2));
   }
 
   /**
@@ -99,9 +276,7 @@ public class PacketBufferTest {
    * @throws InterruptedException
    */
   @Test
-  public void testActivityTimeout() throws InterruptedException {
-
-    packetBuffer.setOutputStreamFactory((file, append) -> os);
+  public void testActivityTimeout() throws InterruptedException, IOException {
 
     completeVideoSequence(
         new byte[] {0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03});
@@ -115,21 +290,18 @@ public class PacketBufferTest {
     assertThat(file.isPresent(), is(true));
 
     assertThat(
-        os.toByteArray(),
+        readOutput(),
         is(new byte[] {0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03}));
   }
 
   /** A full frameset has been written, verify that only the compelete frameset has been flushed */
   @Test
-  public void testWriteWithVideoData1() {
-
-    packetBuffer.setOutputStreamFactory((file, append) -> os);
+  public void testWriteWithVideoData1() throws IOException {
 
     completeVideoSequence(
         new byte[] {0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03});
 
-    assertThat(
-        os.toByteArray(), is(new byte[] {0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03}));
+    assertThat(readOutput(), is(new byte[] {0x01, 0x02, 0x03, 0x01, 0x02, 0x03, 0x01, 0x02, 0x03}));
   }
 
   private void writePacket(byte b) {
@@ -146,9 +318,7 @@ public class PacketBufferTest {
 
   /** We don't know if the frameset is complete, so no data should be flushed */
   @Test
-  public void testWriteWithVideoData2() {
-
-    packetBuffer.setOutputStreamFactory((file, append) -> os);
+  public void testWriteWithVideoData2() throws IOException {
 
     writePacket((byte) 0x01);
     writePacket((byte) 0x02);
@@ -165,7 +335,7 @@ public class PacketBufferTest {
     writePacket((byte) 0x03);
     nonidr();
 
-    assertThat(os.toByteArray(), is(new byte[] {}));
+    assertThat(readOutput(), is(new byte[] {}));
   }
 
   /** Test that the packet buffer does not rotate when the rollover condition is false. */
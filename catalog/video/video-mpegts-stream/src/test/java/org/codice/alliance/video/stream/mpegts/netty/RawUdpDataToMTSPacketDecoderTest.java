@@ -14,22 +14,33 @@
 package org.codice.alliance.video.stream.mpegts.netty;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.channel.socket.DatagramPacket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.ArrayUtils;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.taktik.mpegts.MTSPacket;
-import org.taktik.mpegts.sources.ResettableMTSSource;
 
 public class RawUdpDataToMTSPacketDecoderTest {
 
@@ -53,6 +64,92 @@ public class RawUdpDataToMTSPacketDecoderTest {
     assertThat(outputList, hasSize(packetCount));
   }
 
+  /** Packets are framed as slices of the datagram that still hold the original packet bytes. */
+  @Test
+  public void testPacketsAreSlicesOfDatagram() throws Exception {
+
+    int packetCount = 7;
+
+    List<byte[]> tsPackets = createTsPackets(packetCount);
+    for (int i = 0; i < packetCount; i++) {
+      tsPackets.get(i)[1] = (byte) i;
+    }
+
+    List<DatagramPacket> datagramPackets = toDatagrams(flatten(tsPackets));
+
+    EmbeddedChannel channel =
+        new EmbeddedChannel(
+            new RawUdpDataToMTSPacketDecoder(
+                mock(PacketBuffer.class), mock(UdpStreamProcessor.class)));
+
+    datagramPackets.forEach(channel::writeInbound);
+
+    List<Object> outputList = NettyUtility.read(channel);
+
+    assertThat(outputList, hasSize(packetCount));
+
+    for (int i = 0; i < packetCount; i++) {
+      MTSPacketHolder holder = (MTSPacketHolder) outputList.get(i);
+      assertThat(holder.content().readableBytes(), is(RawUdpDataToMTSPacketDecoder.TS_PACKET_SIZE));
+      assertThat(holder.content().getByte(holder.content().readerIndex() + 1), is((byte) i));
+      holder.release();
+    }
+  }
+
+  /**
+   * Each stream owns its decoder state, so several streams decoded concurrently on different
+   * threads must each produce exactly their own packets.
+   */
+  @Test
+  public void testConcurrentStreams() throws Exception {
+
+    int streamCount = 8;
+
+    int packetCount = 1000;
+
+    ExecutorService executorService = Executors.newFixedThreadPool(streamCount);
+
+    try {
+      CountDownLatch startLatch = new CountDownLatch(1);
+
+      List<PacketBuffer> packetBuffers = new ArrayList<>();
+      List<Future<List<Object>>> futures = new ArrayList<>();
+
+      for (int i = 0; i < streamCount; i++) {
+        PacketBuffer packetBuffer = mock(PacketBuffer.class);
+        packetBuffers.add(packetBuffer);
+
+        List<DatagramPacket> datagramPackets = toDatagrams(flatten(createTsPackets(packetCount)));
+
+        Callable<List<Object>> stream =
+            () -> {
+              EmbeddedChannel channel =
+                  new EmbeddedChannel(
+                      new RawUdpDataToMTSPacketDecoder(
+                          packetBuffer, mock(UdpStreamProcessor.class)));
+              startLatch.await();
+              datagramPackets.forEach(channel::writeInbound);
+              return NettyUtility.read(channel);
+            };
+
+        futures.add(executorService.submit(stream));
+      }
+
+      startLatch.countDown();
+
+      for (Future<List<Object>> future : futures) {
+        assertThat(future.get(30, TimeUnit.SECONDS), hasSize(packetCount));
+      }
+
+      for (PacketBuffer packetBuffer : packetBuffers) {
+        verify(packetBuffer, times(packetCount)).write(any(ByteBuf.class));
+      }
+    } finally {
+      executorService.shutdownNow();
+      assertThat(executorService.awaitTermination(30, TimeUnit.SECONDS), is(true));
+    }
+  }
+
   @SuppressWarnings("unchecked")
   @Test
   public void testCorruptedData() throws Exception {
@@ -60,13 +157,11 @@ public class RawUdpDataToMTSPacketDecoderTest {
     RawUdpDataToMTSPacketDecoder.MTSParser mtsParser =
         mock(RawUdpDataToMTSPacketDecoder.MTSParser.class);
 
-    ResettableMTSSource resettable = mock(ResettableMTSSource.class);
-
-    Mockito.when(mtsParser.parse(Mockito.any())).thenReturn(resettable);
-
     MTSPacket mtsPacket = mock(MTSPacket.class);
 
-    Mockito.when(resettable.nextPacket()).thenThrow(RuntimeException.class).thenReturn(mtsPacket);
+    Mockito.when(mtsParser.parse(Mockito.any()))
+        .thenThrow(RuntimeException.class)
+        .thenReturn(mtsPacket);
 
     int packetCount = 2;
 
@@ -17,6 +17,7 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -26,6 +27,7 @@ import java.net.URI;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import org.codice.alliance.video.stream.mpegts.SimpleSubject;
 import org.codice.alliance.video.stream.mpegts.StreamMonitor;
 import org.codice.alliance.video.stream.mpegts.filename.FilenameGenerator;
@@ -79,7 +81,9 @@ public class UdpStreamProcessorTest {
 
     udpStreamProcessor.setStreamEndPlugin(streamEndPlugin);
     udpStreamProcessor.setRolloverCondition(rolloverCondition);
-    udpStreamProcessor.setRolloverAction(mock(RolloverAction.class));
+    RolloverAction rolloverAction = mock(RolloverAction.class);
+    when(rolloverAction.completion()).thenReturn(CompletableFuture.completedFuture(null));
+    udpStreamProcessor.setRolloverAction(rolloverAction);
 
     udpStreamProcessor.getPacketBuffer().write(new byte[] {0x00});
 
@@ -89,4 +93,24 @@ public class UdpStreamProcessorTest {
 
     verify(streamEndPlugin).streamEnded(any());
   }
+
+  /** The stream end plugin runs once the queued video chunks are ingested, without waiting. */
+  @Test
+  public void testEndStreamAfterRollover() {
+    UdpStreamProcessor udpStreamProcessor = new UdpStreamProcessor(mock(StreamMonitor.class));
+    StreamEndPlugin streamEndPlugin = mock(StreamEndPlugin.class);
+
+    CompletableFuture<Void> completion = new CompletableFuture<>();
+    RolloverAction rolloverAction = mock(RolloverAction.class);
+    when(rolloverAction.completion()).thenReturn(completion);
+    udpStreamProcessor.setRolloverAction(rolloverAction);
+
+    udpStreamProcessor.endStreamAfterRollover(streamEndPlugin);
+
+    verify(streamEndPlugin, never()).streamEnded(any());
+
+    completion.complete(null);
+
+    verify(streamEndPlugin).streamEnded(any());
+  }
 }
@@ -15,14 +15,16 @@ package org.codice.alliance.video.stream.mpegts.plugins;
 
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
 
+import java.util.concurrent.ScheduledExecutorService;
 import org.junit.Test;
 
 public class TimerFactoryTest {
 
   @Test
   public void testGet() {
-    TimerFactory timerFactory = new TimerFactory();
+    TimerFactory timerFactory = new TimerFactory(mock(ScheduledExecutorService.class));
     assertThat(timerFactory.get(), notNullValue());
   }
 }
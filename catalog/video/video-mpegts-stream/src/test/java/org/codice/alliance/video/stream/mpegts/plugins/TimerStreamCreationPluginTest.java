@@ -17,9 +17,9 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.Timer;
 import java.util.function.Supplier;
 import org.codice.alliance.video.stream.mpegts.Context;
+import org.codice.alliance.video.stream.mpegts.StreamTimer;
 import org.codice.alliance.video.stream.mpegts.netty.UdpStreamProcessor;
 import org.junit.Test;
 
@@ -29,8 +29,8 @@ public class TimerStreamCreationPluginTest {
   public void testOnCreate() throws StreamCreationException {
     Context context = mock(Context.class);
     UdpStreamProcessor udpStreamProcessor = mock(UdpStreamProcessor.class);
-    Supplier<Timer> timerSupplier = mock(Supplier.class);
-    Timer timer = mock(Timer.class);
+    Supplier<StreamTimer> timerSupplier = mock(Supplier.class);
+    StreamTimer timer = mock(StreamTimer.class);
 
     when(context.getUdpStreamProcessor()).thenReturn(udpStreamProcessor);
     when(timerSupplier.get()).thenReturn(timer);
@@ -17,8 +17,8 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.Timer;
 import org.codice.alliance.video.stream.mpegts.Context;
+import org.codice.alliance.video.stream.mpegts.StreamTimer;
 import org.codice.alliance.video.stream.mpegts.netty.UdpStreamProcessor;
 import org.junit.Test;
 
@@ -29,7 +29,7 @@ public class TimerStreamShutdownPluginTest {
 
     Context context = mock(Context.class);
     UdpStreamProcessor udpStreamProcessor = mock(UdpStreamProcessor.class);
-    Timer timer = mock(Timer.class);
+    StreamTimer timer = mock(StreamTimer.class);
 
     when(context.getUdpStreamProcessor()).thenReturn(udpStreamProcessor);
     when(udpStreamProcessor.getTimer()).thenReturn(timer);
@@ -18,16 +18,18 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.Timer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import org.codice.alliance.video.stream.mpegts.Context;
+import org.codice.alliance.video.stream.mpegts.StreamTimer;
 import org.codice.alliance.video.stream.mpegts.netty.UdpStreamProcessor;
 import org.junit.Test;
 
 public class TimerTaskStreamCreationPluginTest {
 
   /**
-   * Use a real Timer instead of a mock timer to make sure the timer task is scheduled correctly and
-   * calls the checkRollover method.
+   * Use a real StreamTimer instead of a mock timer to make sure the timer task is scheduled
+   * correctly and calls the checkRollover method.
    *
    * @throws StreamCreationException
    * @throws InterruptedException
@@ -37,7 +39,9 @@ public class TimerTaskStreamCreationPluginTest {
 
     long period = 100;
 
-    Timer timer = new Timer();
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    StreamTimer timer = new StreamTimer(scheduler);
 
     try {
       Context context = mock(Context.class);
@@ -54,6 +58,7 @@ public class TimerTaskStreamCreationPluginTest {
       verify(udpStreamProcessor, after((int) period * 2).atLeastOnce()).checkForRollover();
     } finally {
       timer.cancel();
+      scheduler.shutdownNow();
     }
   }
 }
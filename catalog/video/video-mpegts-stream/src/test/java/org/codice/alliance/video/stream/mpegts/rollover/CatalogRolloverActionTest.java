@@ -42,12 +42,17 @@ import ddf.catalog.source.IngestException;
 import ddf.catalog.source.SourceUnavailableException;
 import ddf.security.Subject;
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import org.codice.alliance.libs.klv.AttributeNameConstants;
 import org.codice.alliance.libs.klv.GeometryOperator;
@@ -68,7 +73,9 @@ import org.codice.alliance.video.stream.mpegts.netty.UdpStreamProcessor;
 import org.codice.ddf.platform.util.uuidgenerator.UuidGenerator;
 import org.codice.ddf.security.common.Security;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 
 public class CatalogRolloverActionTest {
@@ -77,6 +84,8 @@ public class CatalogRolloverActionTest {
 
   private static final Date TEMPORAL_END_DATE = new Date();
 
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private CatalogFramework catalogFramework;
 
   private File tempFile;
@@ -93,15 +102,22 @@ public class CatalogRolloverActionTest {
 
   private String childWkt;
 
+  private FilenameGenerator filenameGenerator;
+
+  private Context context;
+
+  private UuidGenerator uuidGenerator;
+
+  private ListMetacardUpdater parentMetacardUpdater;
+
   @Before
-  public void setup() throws SourceUnavailableException, IngestException {
-    FilenameGenerator filenameGenerator = mock(FilenameGenerator.class);
-    String filenameTemplate = "filenameTemplate";
+  public void setup() throws SourceUnavailableException, IngestException, IOException {
+    filenameGenerator = mock(FilenameGenerator.class);
     StreamProcessor streamProcessor = mock(StreamProcessor.class);
     when(streamProcessor.getMetacardUpdateInitialDelay()).thenReturn(1L);
     catalogFramework = mock(CatalogFramework.class);
     MetacardType metacardType = mock(MetacardType.class);
-    tempFile = new File("someTempFile");
+    tempFile = temporaryFolder.newFile("someTempFile");
 
     URI uri = URI.create("udp://127.0.0.1:10000");
     String title = "theTitleString";
@@ -115,7 +131,7 @@ public class CatalogRolloverActionTest {
     UdpStreamProcessor udpStreamProcessor = mock(UdpStreamProcessor.class);
     when(udpStreamProcessor.getSubject()).thenReturn(new SimpleSubject());
 
-    Context context = new Context(udpStreamProcessor);
+    context = new Context(udpStreamProcessor);
 
     when(udpStreamProcessor.getMetacardTypeList())
         .thenReturn(Collections.singletonList(metacardType));
@@ -129,24 +145,19 @@ public class CatalogRolloverActionTest {
     GeometryOperator postUnionGeometryOperator =
         new GeometryOperatorList(
             Arrays.asList(new SimplifyGeometryFunction(), new NormalizeGeometry()));
-    UuidGenerator uuidGenerator = mock(UuidGenerator.class);
+    uuidGenerator = mock(UuidGenerator.class);
     when(uuidGenerator.generateUuid()).thenReturn("anId");
 
-    catalogRolloverAction =
-        new CatalogRolloverAction(
-            filenameGenerator,
-            filenameTemplate,
-            catalogFramework,
-            context,
-            new ListMetacardUpdater(
-                Arrays.asList(
-                    new LocationMetacardUpdater(
-                        postUnionGeometryOperator, GeometryOperator.IDENTITY),
-                    new TemporalStartMetacardUpdater(),
-                    new TemporalEndMetacardUpdater(),
-                    new ModifiedDateMetacardUpdater(),
-                    new FrameCenterMetacardUpdater(postUnionGeometryOperator))),
-            uuidGenerator);
+    parentMetacardUpdater =
+        new ListMetacardUpdater(
+            Arrays.asList(
+                new LocationMetacardUpdater(postUnionGeometryOperator, GeometryOperator.IDENTITY),
+                new TemporalStartMetacardUpdater(),
+                new TemporalEndMetacardUpdater(),
+                new ModifiedDateMetacardUpdater(),
+                new FrameCenterMetacardUpdater(postUnionGeometryOperator)));
+
+    catalogRolloverAction = createCatalogRolloverAction(Runnable::run);
 
     createdParentMetacard = mock(Metacard.class);
     when(createdParentMetacard.getMetacardType()).thenReturn(metacardType);
@@ -156,6 +167,7 @@ public class CatalogRolloverActionTest {
 
     createdChildMetacard = mock(Metacard.class);
     when(createdChildMetacard.getMetacardType()).thenReturn(metacardType);
+    when(createdChildMetacard.getId()).thenReturn("anId");
     Metacard updatedParentMetacard = mock(Metacard.class);
     when(updatedParentMetacard.getMetacardType()).thenReturn(metacardType);
     Metacard updatedChildMetacard = mock(Metacard.class);
@@ -310,4 +322,132 @@ public class CatalogRolloverActionTest {
 
     assertThat(wktWriter.write(wktReader.read(actualWkt).norm()), is(unionWkt));
   }
+
+  @Test
+  public void testTempFileDeletedAfterIngest()
+      throws RolloverActionException, SourceUnavailableException, IngestException {
+
+    catalogRolloverAction.doAction(tempFile);
+
+    verify(catalogFramework).create(any(CreateStorageRequest.class));
+    assertThat(tempFile.exists(), is(false));
+    assertThat(temporaryFolder.getRoot().list().length, is(0));
+  }
+
+  /**
+   * Chunks that queue up while the catalog is busy are stored with one create request, linked with
+   * one child update request and followed by one parent update request.
+   */
+  @Test
+  public void testQueuedChunksAreBatched()
+      throws RolloverActionException, SourceUnavailableException, IngestException, IOException,
+          InterruptedException {
+
+    List<Runnable> deferred = new ArrayList<>();
+    catalogRolloverAction = createCatalogRolloverAction(deferred::add);
+
+    catalogRolloverAction.doAction(temporaryFolder.newFile("first"));
+    catalogRolloverAction.doAction(temporaryFolder.newFile("second"));
+    catalogRolloverAction.doAction(temporaryFolder.newFile("third"));
+
+    CompletableFuture<Void> completion = catalogRolloverAction.completion();
+    assertThat(completion.isDone(), is(false));
+
+    assertThat(deferred, hasSize(1));
+    deferred.get(0).run();
+
+    ArgumentCaptor<CreateStorageRequest> createCaptor =
+        ArgumentCaptor.forClass(CreateStorageRequest.class);
+    verify(catalogFramework).create(createCaptor.capture());
+    assertThat(createCaptor.getValue().getContentItems(), hasSize(3));
+
+    verify(catalogFramework, times(2)).update(any(UpdateRequest.class));
+
+    assertThat(completion.isDone(), is(true));
+    assertThat(temporaryFolder.getRoot().list().length, is(0));
+  }
+
+  /**
+   * When the catalog falls behind and the chunk files waiting to be ingested exceed the limit, new
+   * chunks are kept on disk instead of being queued.
+   */
+  @Test
+  public void testChunkKeptWhenQueueFull()
+      throws RolloverActionException, SourceUnavailableException, IngestException, IOException {
+
+    List<Runnable> deferred = new ArrayList<>();
+    catalogRolloverAction = createCatalogRolloverAction(20, deferred::add);
+
+    catalogRolloverAction.doAction(newChunk("first", 10));
+    catalogRolloverAction.doAction(newChunk("second", 10));
+
+    File kept = newChunk("kept", 10);
+    catalogRolloverAction.doAction(kept);
+
+    assertThat(new File(kept.getPath() + ".ingest").exists(), is(true));
+
+    deferred.get(0).run();
+
+    ArgumentCaptor<CreateStorageRequest> createCaptor =
+        ArgumentCaptor.forClass(CreateStorageRequest.class);
+    verify(catalogFramework).create(createCaptor.capture());
+    assertThat(createCaptor.getValue().getContentItems(), hasSize(2));
+    assertThat(temporaryFolder.getRoot().list(), is(new String[] {kept.getName() + ".ingest"}));
+  }
+
+  /** A chunk that the catalog fails to store is kept on disk. */
+  @Test
+  public void testChunkKeptWhenCreateFails()
+      throws RolloverActionException, SourceUnavailableException, IngestException {
+
+    when(catalogFramework.create(any(CreateStorageRequest.class)))
+        .thenThrow(IngestException.class);
+
+    catalogRolloverAction.doAction(tempFile);
+
+    assertThat(new File(tempFile.getPath() + ".ingest").exists(), is(true));
+  }
+
+  /** Only the chunks in the create response are deleted. */
+  @Test
+  public void testChunkKeptWhenNotStored()
+      throws RolloverActionException, SourceUnavailableException, IngestException, IOException {
+
+    List<Runnable> deferred = new ArrayList<>();
+    catalogRolloverAction = createCatalogRolloverAction(deferred::add);
+    when(uuidGenerator.generateUuid()).thenReturn("anId").thenReturn("otherId");
+
+    File stored = temporaryFolder.newFile("stored");
+    File notStored = temporaryFolder.newFile("notStored");
+    catalogRolloverAction.doAction(stored);
+    catalogRolloverAction.doAction(notStored);
+
+    deferred.get(0).run();
+
+    assertThat(
+        temporaryFolder.getRoot().list(), is(new String[] {notStored.getName() + ".ingest"}));
+  }
+
+  private File newChunk(String name, int size) throws IOException {
+    File chunk = temporaryFolder.newFile(name);
+    Files.write(chunk.toPath(), new byte[size]);
+    return chunk;
+  }
+
+  private CatalogRolloverAction createCatalogRolloverAction(Executor executor) {
+    return createCatalogRolloverAction(Long.MAX_VALUE, executor);
+  }
+
+  private CatalogRolloverAction createCatalogRolloverAction(
+      long maxPendingIngestBytes, Executor executor) {
+    return new CatalogRolloverAction(
+        filenameGenerator,
+        "filenameTemplate",
+        catalogFramework,
+        context,
+        parentMetacardUpdater,
+        uuidGenerator,
+        maxPendingIngestBytes,
+        executor);
+  }
 }
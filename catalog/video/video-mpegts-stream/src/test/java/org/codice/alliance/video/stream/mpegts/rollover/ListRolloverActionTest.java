@@ -24,6 +24,7 @@ import ddf.catalog.data.impl.MetacardImpl;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 import org.junit.Test;
 
 public class ListRolloverActionTest {
@@ -49,6 +50,25 @@ public class ListRolloverActionTest {
     verify(rolloverAction2).doAction(metacard, tempFile);
   }
 
+  @Test
+  public void testCompletionWaitsForEveryAction() {
+    RolloverAction rolloverAction1 = mock(RolloverAction.class);
+    RolloverAction rolloverAction2 = mock(RolloverAction.class);
+
+    CompletableFuture<Void> completion1 = new CompletableFuture<>();
+    when(rolloverAction1.completion()).thenReturn(completion1);
+    when(rolloverAction2.completion()).thenReturn(CompletableFuture.completedFuture(null));
+
+    ListRolloverAction listRolloverAction =
+        new ListRolloverAction(Arrays.asList(rolloverAction1, rolloverAction2));
+
+    CompletableFuture<Void> completion = listRolloverAction.completion();
+    assertThat(completion.isDone(), is(false));
+
+    completion1.complete(null);
+    assertThat(completion.isDone(), is(true));
+  }
+
   @Test
   public void testToString() {
     assertThat(new ListRolloverAction(Collections.emptyList()).toString(), notNullValue());
@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.commons.io.IOUtils;
 import org.codice.alliance.libs.klv.AttributeNameConstants;
 import org.codice.alliance.libs.klv.BaseKlvProcessorVisitor;
@@ -45,6 +46,7 @@ import org.codice.alliance.libs.klv.Stanag4609Processor;
 import org.codice.alliance.libs.klv.StanagParserFactory;
 import org.codice.alliance.libs.mpegts.MpegStreamType;
 import org.codice.alliance.libs.mpegts.PESPacket;
+import org.codice.alliance.libs.mpegts.PESPacketOutputStream;
 import org.codice.alliance.libs.mpegts.TSStream;
 import org.codice.alliance.libs.stanag4609.DecodedKLVMetadataPacket;
 import org.codice.ddf.platform.util.TemporaryFileBackedOutputStream;
@@ -63,6 +65,8 @@ public class MpegTsInputTransformer implements InputTransformer {
 
   private static final String CLASSIFICATION_MUST_BE_NON_NULL = "classification must be non-null";
 
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
   private final InputTransformer innerTransformer;
 
   private final List<MetacardType> metacardTypes;
@@ -87,6 +91,14 @@ public class MpegTsInputTransformer implements InputTransformer {
 
   private Double distanceTolerance;
 
+  /**
+   * When true, the stream types and the KLV metadata are demultiplexed while the input is copied to
+   * the temporary file, so the content is only read back once, by the inner transformer. When
+   * false, the temporary file is read separately by the inner transformer, the STANAG 4609 parser
+   * and the stream type scan.
+   */
+  private boolean singlePassDemultiplexing = true;
+
   /**
    * @param inputTransformer inner input transformer (must be non-null)
    * @param metacardTypes list of usable metacard types (must be non-null)
@@ -143,6 +155,14 @@ public class MpegTsInputTransformer implements InputTransformer {
     return distanceTolerance;
   }
 
+  public void setSinglePassDemultiplexing(boolean singlePassDemultiplexing) {
+    this.singlePassDemultiplexing = singlePassDemultiplexing;
+  }
+
+  public boolean isSinglePassDemultiplexing() {
+    return singlePassDemultiplexing;
+  }
+
   @Override
   public Metacard transform(InputStream inputStream)
       throws IOException, CatalogTransformerException {
@@ -192,13 +212,31 @@ public class MpegTsInputTransformer implements InputTransformer {
     try (TemporaryFileBackedOutputStream fileBackedOutputStream =
         new TemporaryFileBackedOutputStream()) {
 
-      populateFileBackedOutputStream(inputStream, fileBackedOutputStream);
+      MetacardImpl metacard;
 
-      MetacardImpl metacard = extractInnerTransformerMetadata(id, fileBackedOutputStream);
+      Map<String, KlvHandler> handlers = klvHandlerFactory.createStanag4609Handlers();
 
-      extractStanag4609Metadata(metacard, fileBackedOutputStream);
+      if (singlePassDemultiplexing) {
+        TransportStreamMetadataCollector collector =
+            new TransportStreamMetadataCollector(
+                decodedKLVMetadataPacket -> handleKlvPacket(handlers, decodedKLVMetadataPacket));
 
-      extractMediaEncodings(metacard, fileBackedOutputStream);
+        populateFileBackedOutputStream(inputStream, fileBackedOutputStream, collector);
+
+        metacard = extractInnerTransformerMetadata(id, fileBackedOutputStream);
+
+        processKlv(metacard, handlers);
+
+        setMediaEncodings(metacard, collector.getStreamTypes().stream());
+      } else {
+        populateFileBackedOutputStream(inputStream, fileBackedOutputStream);
+
+        metacard = extractInnerTransformerMetadata(id, fileBackedOutputStream);
+
+        extractStanag4609Metadata(metacard, fileBackedOutputStream, handlers);
+
+        extractMediaEncodings(metacard, fileBackedOutputStream);
+      }
 
       metacard.setAttribute(Core.DATATYPE, DATA_TYPE);
 
@@ -208,17 +246,41 @@ public class MpegTsInputTransformer implements InputTransformer {
 
   private void extractMediaEncodings(Metacard metacard, TemporaryFileBackedOutputStream fbos)
       throws IOException {
+    setMediaEncodings(metacard, TSStream.from(fbos.asByteSource()).map(PESPacket::getStreamType));
+  }
+
+  private void setMediaEncodings(Metacard metacard, Stream<MpegStreamType> streamTypes) {
 
     List<Serializable> serializables =
-        TSStream.from(fbos.asByteSource())
-            .map(PESPacket::getStreamType)
-            .distinct()
-            .map(streamTypeToString)
-            .collect(Collectors.<Serializable>toList());
+        streamTypes.distinct().map(streamTypeToString).collect(Collectors.<Serializable>toList());
 
     metacard.setAttribute(new AttributeImpl(AttributeNameConstants.MEDIA_ENCODING, serializables));
   }
 
+  /**
+   * Copy the input to the file backed output stream and demultiplex it at the same time. Decoding
+   * problems are logged and skipped so that the inner transformer still receives the content.
+   */
+  private void populateFileBackedOutputStream(
+      InputStream inputStream,
+      TemporaryFileBackedOutputStream fbos,
+      TransportStreamMetadataCollector collector)
+      throws CatalogTransformerException {
+    try (PESPacketOutputStream pesPacketOutputStream = new PESPacketOutputStream(collector)) {
+      byte[] buffer = new byte[COPY_BUFFER_SIZE];
+      long count = 0;
+      int n;
+      while ((n = inputStream.read(buffer)) != -1) {
+        fbos.write(buffer, 0, n);
+        pesPacketOutputStream.write(buffer, 0, n);
+        count += n;
+      }
+      LOGGER.debug("copied and demultiplexed {} bytes from input stream", count);
+    } catch (IOException e) {
+      throw new CatalogTransformerException("Could not copy bytes of content message.", e);
+    }
+  }
+
   private void populateFileBackedOutputStream(
       InputStream inputStream, TemporaryFileBackedOutputStream fbos)
       throws CatalogTransformerException {
@@ -268,21 +330,32 @@ public class MpegTsInputTransformer implements InputTransformer {
   }
 
   private void extractStanag4609Metadata(
-      MetacardImpl metacard, TemporaryFileBackedOutputStream fbos)
-      throws IOException, CatalogTransformerException {
+      MetacardImpl metacard, TemporaryFileBackedOutputStream fbos, Map<String, KlvHandler> handlers)
+      throws CatalogTransformerException {
 
     Stanag4609Parser stanag4609Parser = stanagParserFactory.createParser(fbos.asByteSource());
 
-    Map<Integer, List<DecodedKLVMetadataPacket>> decodedMetadata;
     try {
-      decodedMetadata = stanag4609Parser.parse();
+      stanag4609Parser.parse(
+          (packetId, decodedKLVMetadataPacket) ->
+              handleKlvPacket(handlers, decodedKLVMetadataPacket));
     } catch (Stanag4609ParseException e) {
       throw new CatalogTransformerException("failed to extract STANAG 4609 metadata", e);
     }
 
-    Map<String, KlvHandler> handlers = klvHandlerFactory.createStanag4609Handlers();
+    processKlv(metacard, handlers);
+  }
+
+  /**
+   * Pass a KLV packet to the handlers as soon as it is decoded, so that the decoded packets of the
+   * whole stream never need to be held in memory at the same time.
+   */
+  private void handleKlvPacket(
+      Map<String, KlvHandler> handlers, DecodedKLVMetadataPacket decodedKLVMetadataPacket) {
+    stanag4609Processor.handle(handlers, defaultKlvHandler, decodedKLVMetadataPacket);
+  }
 
-    stanag4609Processor.handle(handlers, defaultKlvHandler, decodedMetadata);
+  private void processKlv(MetacardImpl metacard, Map<String, KlvHandler> handlers) {
 
     KlvProcessor.Configuration klvProcessConfiguration = new KlvProcessor.Configuration();
     klvProcessConfiguration.set(KlvProcessor.Configuration.SUBSAMPLE_COUNT, subsampleCount);
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.transformer.video;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.codice.alliance.libs.mpegts.MpegStreamType;
+import org.codice.alliance.libs.mpegts.PESPacket;
+import org.codice.alliance.libs.stanag4609.DecodedKLVMetadataPacket;
+import org.codice.alliance.libs.stanag4609.PESUtilities;
+import org.codice.alliance.libs.stanag4609.Stanag4609TransportStreamParser;
+import org.codice.ddf.libs.klv.KlvDecoder;
+import org.codice.ddf.libs.klv.KlvDecodingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the stream types of a transport stream from its PESPackets and passes each decoded
+ * STANAG 4609 KLV metadata packet on as soon as it is decoded, so that both can be gathered in the
+ * same pass over the stream.
+ */
+class TransportStreamMetadataCollector implements Consumer<PESPacket> {
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(TransportStreamMetadataCollector.class);
+
+  private final Set<MpegStreamType> streamTypes = new LinkedHashSet<>();
+
+  private final KlvDecoder klvDecoder =
+      new KlvDecoder(Stanag4609TransportStreamParser.UAS_DATALINK_LOCAL_SET_CONTEXT);
+
+  private final Consumer<DecodedKLVMetadataPacket> metadataConsumer;
+
+  /** @param metadataConsumer receives each decoded KLV metadata packet (must be non-null) */
+  TransportStreamMetadataCollector(Consumer<DecodedKLVMetadataPacket> metadataConsumer) {
+    notNull(metadataConsumer, "metadataConsumer must be non-null");
+    this.metadataConsumer = metadataConsumer;
+  }
+
+  @Override
+  public void accept(PESPacket pesPacket) {
+    streamTypes.add(pesPacket.getStreamType());
+
+    if (isMetadata(pesPacket)) {
+      decodeMetadata(pesPacket);
+    }
+  }
+
+  /** @return the distinct stream types in the order they were first encountered */
+  Set<MpegStreamType> getStreamTypes() {
+    return streamTypes;
+  }
+
+  /**
+   * Synchronous KLV is carried in metadata PES streams and asynchronous KLV in private data
+   * streams. {@link PESUtilities} checks the PES stream id before decoding.
+   */
+  private boolean isMetadata(PESPacket pesPacket) {
+    return pesPacket.getStreamType() == MpegStreamType.META_PES
+        || pesPacket.getStreamType() == MpegStreamType.PRIVATE_DATA;
+  }
+
+  private void decodeMetadata(PESPacket pesPacket) {
+    try {
+      DecodedKLVMetadataPacket decodedKLVMetadataPacket =
+          PESUtilities.handlePESPacketBytes(pesPacket.getPayload(), klvDecoder);
+      if (decodedKLVMetadataPacket != null) {
+        metadataConsumer.accept(decodedKLVMetadataPacket);
+      }
+    } catch (KlvDecodingException e) {
+      LOGGER.debug("The KLV could not be decoded.", e);
+    } catch (RuntimeException e) {
+      LOGGER.debug("An error occurred while handling the metadata packet bytes.", e);
+    }
+  }
+}
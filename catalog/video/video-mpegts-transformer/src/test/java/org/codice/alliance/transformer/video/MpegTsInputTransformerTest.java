@@ -18,7 +18,9 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -34,9 +36,12 @@ import ddf.catalog.transform.InputTransformer;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
+import org.apache.commons.io.IOUtils;
 import org.codice.alliance.catalog.core.internal.api.classification.SecurityClassificationService;
 import org.codice.alliance.libs.klv.KlvHandler;
 import org.codice.alliance.libs.klv.KlvHandlerFactory;
@@ -45,6 +50,7 @@ import org.codice.alliance.libs.klv.SecurityClassificationKlvProcessor;
 import org.codice.alliance.libs.klv.Stanag4609ParseException;
 import org.codice.alliance.libs.klv.Stanag4609Processor;
 import org.codice.alliance.libs.klv.StanagParserFactory;
+import org.codice.alliance.libs.stanag4609.DecodedKLVMetadataPacket;
 import org.codice.alliance.libs.stanag4609.Stanag4609TransportStreamParser;
 import org.junit.Before;
 import org.junit.Test;
@@ -230,12 +236,85 @@ public class MpegTsInputTransformerTest {
             stanagParserFactory,
             klvProcessor,
             DISTANCE_TOLERANCE);
+    t.setSinglePassDemultiplexing(false);
 
     try (InputStream inputStream = new ByteArrayInputStream(new byte[] {})) {
       t.transform(inputStream);
     }
   }
 
+  /**
+   * In single-pass mode the STANAG 4609 parser is not used, the inner transformer still receives
+   * every byte of the input and undecodable input is not an error.
+   */
+  @Test
+  public void testSinglePassDemultiplexing() throws Exception {
+    byte[] content = new byte[] {0x47, 0x01, 0x02, 0x03};
+
+    when(inputTransformer.transform(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              InputStream innerInputStream = (InputStream) invocation.getArguments()[0];
+              assertThat(IOUtils.toByteArray(innerInputStream), is(content));
+              return metacard;
+            });
+
+    MpegTsInputTransformer t =
+        new MpegTsInputTransformer(
+            inputTransformer,
+            metacardTypes,
+            stanag4609Processor,
+            klvHandlerFactory,
+            defaultKlvHandler,
+            stanagParserFactory,
+            klvProcessor,
+            DISTANCE_TOLERANCE);
+
+    assertThat(t.isSinglePassDemultiplexing(), is(true));
+
+    try (InputStream inputStream = new ByteArrayInputStream(content)) {
+      t.transform(inputStream);
+    }
+
+    verify(inputTransformer).transform(any(), any());
+    verify(stanagParserFactory, never()).createParser(any());
+    verify(stanag4609Processor, never()).handle(any(), any(), any(DecodedKLVMetadataPacket.class));
+    verify(klvProcessor).process(any(), any(), any());
+  }
+
+  /** Each decoded packet is handed to the processor on its own instead of as a whole map. */
+  @Test
+  public void testStanagPacketsHandledIncrementally() throws Exception {
+
+    DecodedKLVMetadataPacket packet1 = mock(DecodedKLVMetadataPacket.class);
+    DecodedKLVMetadataPacket packet2 = mock(DecodedKLVMetadataPacket.class);
+    Map<String, KlvHandler> handlers = Collections.singletonMap("field", mock(KlvHandler.class));
+
+    when(klvHandlerFactory.createStanag4609Handlers()).thenReturn(handlers);
+    when(streamParser.parse())
+        .thenReturn(Collections.singletonMap(1, Arrays.asList(packet1, packet2)));
+
+    MpegTsInputTransformer t =
+        new MpegTsInputTransformer(
+            inputTransformer,
+            metacardTypes,
+            stanag4609Processor,
+            klvHandlerFactory,
+            defaultKlvHandler,
+            stanagParserFactory,
+            klvProcessor,
+            DISTANCE_TOLERANCE);
+    t.setSinglePassDemultiplexing(false);
+
+    try (InputStream inputStream = new ByteArrayInputStream(new byte[] {})) {
+      t.transform(inputStream);
+    }
+
+    verify(stanag4609Processor).handle(handlers, defaultKlvHandler, packet1);
+    verify(stanag4609Processor).handle(handlers, defaultKlvHandler, packet2);
+    verify(klvProcessor).process(eq(handlers), any(), any());
+  }
+
   @Test(expected = CatalogTransformerException.class)
   public void testInputStreamReadError() throws Exception {
 
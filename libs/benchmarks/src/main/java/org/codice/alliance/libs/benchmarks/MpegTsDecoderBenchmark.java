@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.libs.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.codice.alliance.libs.mpegts.MpegTsDecoderImpl;
+import org.codice.alliance.libs.mpegts.PESPacket;
+import org.codice.alliance.libs.mpegts.PESPacketOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Demultiplexes the synthetic transport stream one TS packet per operation with {@link
+ * MpegTsDecoderImpl}, including the framing and {@code MTSPacket} parsing done by {@link
+ * PESPacketOutputStream}. The stream is replayed from the start when it runs out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MpegTsDecoderBenchmark {
+
+  private byte[] transportStream;
+
+  private int offset;
+
+  private PESPacketOutputStream pesPacketOutputStream;
+
+  private PESPacket lastPesPacket;
+
+  @Setup
+  public void setup() {
+    transportStream =
+        TransportStreamFixtures.createTransportStream(TransportStreamFixtures.FRAME_COUNT);
+    pesPacketOutputStream =
+        new PESPacketOutputStream(new MpegTsDecoderImpl(), pesPacket -> lastPesPacket = pesPacket);
+  }
+
+  @Benchmark
+  public PESPacket decodeTransportStreamPacket() throws IOException {
+    pesPacketOutputStream.write(transportStream, offset, TransportStreamFixtures.TS_PACKET_SIZE);
+
+    offset += TransportStreamFixtures.TS_PACKET_SIZE;
+    if (offset == transportStream.length) {
+      offset = 0;
+    }
+
+    return lastPesPacket;
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.libs.benchmarks;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.codice.alliance.libs.klv.KlvHandler;
+import org.codice.alliance.libs.klv.KlvHandlerFactory;
+import org.codice.alliance.libs.klv.KlvHandlerFactoryImpl;
+import org.codice.alliance.libs.klv.ListPostProcessor;
+import org.codice.alliance.libs.klv.LoggingKlvHandler;
+import org.codice.alliance.libs.klv.OffsetCenterPostProcessor;
+import org.codice.alliance.libs.klv.Stanag4609Processor;
+import org.codice.alliance.libs.klv.Stanag4609ProcessorImpl;
+import org.codice.alliance.libs.klv.TrimmingPostProcessor;
+import org.codice.alliance.libs.stanag4609.DecodedKLVMetadataPacket;
+import org.codice.alliance.libs.stanag4609.PESUtilities;
+import org.codice.alliance.libs.stanag4609.Stanag4609TransportStreamParser;
+import org.codice.ddf.libs.klv.KlvDecoder;
+import org.codice.ddf.libs.klv.KlvDecodingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Passes one decoded KLV metadata packet per operation to {@link Stanag4609ProcessorImpl}, set up
+ * with the same handlers and post processors as the MPEG-TS input transformer. The handlers are
+ * recreated at the start of each pass over the fixtures, as they would be for each new stream, so
+ * the values they collect do not grow without bound.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class Stanag4609ProcessorBenchmark {
+
+  private DecodedKLVMetadataPacket[] decodedKLVMetadataPackets;
+
+  private int index;
+
+  private final KlvHandlerFactory klvHandlerFactory = new KlvHandlerFactoryImpl();
+
+  private final KlvHandler defaultKlvHandler = new LoggingKlvHandler();
+
+  private final Stanag4609Processor stanag4609Processor =
+      new Stanag4609ProcessorImpl(
+          new ListPostProcessor(
+              Arrays.asList(new TrimmingPostProcessor(), new OffsetCenterPostProcessor())));
+
+  private Map<String, KlvHandler> handlers;
+
+  @Setup
+  public void setup() throws KlvDecodingException {
+    byte[][] pesPackets =
+        TransportStreamFixtures.createKlvPesPackets(TransportStreamFixtures.FRAME_COUNT);
+    KlvDecoder klvDecoder =
+        new KlvDecoder(Stanag4609TransportStreamParser.UAS_DATALINK_LOCAL_SET_CONTEXT);
+
+    decodedKLVMetadataPackets = new DecodedKLVMetadataPacket[pesPackets.length];
+    for (int i = 0; i < pesPackets.length; i++) {
+      decodedKLVMetadataPackets[i] = PESUtilities.handlePESPacketBytes(pesPackets[i], klvDecoder);
+    }
+  }
+
+  @Benchmark
+  public Map<String, KlvHandler> handle() {
+    if (index == 0) {
+      handlers = klvHandlerFactory.createStanag4609Handlers();
+    }
+
+    stanag4609Processor.handle(handlers, defaultKlvHandler, decodedKLVMetadataPackets[index]);
+    index = (index + 1) % decodedKLVMetadataPackets.length;
+
+    return handlers;
+  }
+}
@@ -0,0 +1,351 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.libs.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates the synthetic fixtures used by the benchmarks. The transport stream contains a program
+ * association table and a program map table followed by one H.264 video PES packet and one
+ * asynchronous UAS Datalink Local Set (MISB ST 0601) KLV PES packet per frame. The sensor and frame
+ * positions move a little every frame, so the KLV values are not all identical.
+ */
+final class TransportStreamFixtures {
+
+  /** Ten seconds of video at 30 frames per second. */
+  static final int FRAME_COUNT = 300;
+
+  static final int TS_PACKET_SIZE = 188;
+
+  static final int PROGRAM_MAP_TABLE_PID = 0x1000;
+
+  static final int VIDEO_PID = 0x100;
+
+  static final int METADATA_PID = 0x101;
+
+  private static final int TS_PAYLOAD_SIZE = 184;
+
+  private static final int PID_COUNT = 1 << 13;
+
+  private static final int PROGRAM_ASSOCIATION_TABLE_PID = 0;
+
+  private static final int H264_STREAM_TYPE = 0x1B;
+
+  private static final int PRIVATE_DATA_STREAM_TYPE = 0x06;
+
+  private static final int VIDEO_STREAM_ID = 0xE0;
+
+  private static final int PRIVATE_STREAM_ID = 0xBD;
+
+  private static final int VIDEO_FRAME_SIZE = 4096;
+
+  /** 90 kHz clock ticks per frame. */
+  private static final long PTS_PER_FRAME = 3000;
+
+  /** Microseconds per frame. */
+  private static final long TIMESTAMP_PER_FRAME = 33_333;
+
+  private static final long FIRST_TIMESTAMP = 1_500_000_000_000_000L;
+
+  private static final double FIRST_LATITUDE = 34.0;
+
+  private static final double FIRST_LONGITUDE = -117.0;
+
+  private static final double DEGREES_PER_FRAME = 0.0001;
+
+  private static final double CORNER_OFFSET = 0.01;
+
+  private static final byte[] UAS_DATALINK_LOCAL_SET_KEY =
+      new byte[] {
+        0x06, 0x0E, 0x2B, 0x34, 0x02, 0x0B, 0x01, 0x01, 0x0E, 0x01, 0x03, 0x01, 0x01, 0x00, 0x00,
+        0x00
+      };
+
+  private static final int CHECKSUM_TAG = 1;
+
+  private static final int TIMESTAMP_TAG = 2;
+
+  private static final int MISSION_ID_TAG = 3;
+
+  private static final int PLATFORM_DESIGNATION_TAG = 10;
+
+  private static final int SENSOR_LATITUDE_TAG = 13;
+
+  private static final int SENSOR_LONGITUDE_TAG = 14;
+
+  private static final int FRAME_CENTER_LATITUDE_TAG = 23;
+
+  private static final int FRAME_CENTER_LONGITUDE_TAG = 24;
+
+  private static final int FIRST_CORNER_TAG = 82;
+
+  private static final int CRC_POLYNOMIAL = 0x04C11DB7;
+
+  private TransportStreamFixtures() {}
+
+  /** @return the TS packets of {@code frameCount} frames, starting with the PAT and the PMT */
+  static byte[] createTransportStream(int frameCount) {
+    ByteArrayOutputStream transportStream = new ByteArrayOutputStream();
+    int[] continuityCounters = new int[PID_COUNT];
+
+    writeTransportStreamPackets(
+        transportStream,
+        PROGRAM_ASSOCIATION_TABLE_PID,
+        createProgramSpecificInformation(createProgramAssociationSection()),
+        continuityCounters);
+    writeTransportStreamPackets(
+        transportStream,
+        PROGRAM_MAP_TABLE_PID,
+        createProgramSpecificInformation(createProgramMapSection()),
+        continuityCounters);
+
+    byte[] videoFrame = createVideoFrame();
+
+    for (int frame = 0; frame < frameCount; frame++) {
+      writeTransportStreamPackets(
+          transportStream,
+          VIDEO_PID,
+          createPesPacket(VIDEO_STREAM_ID, frame * PTS_PER_FRAME, videoFrame),
+          continuityCounters);
+      writeTransportStreamPackets(
+          transportStream, METADATA_PID, createKlvPesPacket(frame), continuityCounters);
+    }
+
+    return transportStream.toByteArray();
+  }
+
+  /** @return the asynchronous KLV metadata PES packets of {@code frameCount} frames */
+  static byte[][] createKlvPesPackets(int frameCount) {
+    byte[][] pesPackets = new byte[frameCount][];
+    for (int frame = 0; frame < frameCount; frame++) {
+      pesPackets[frame] = createKlvPesPacket(frame);
+    }
+    return pesPackets;
+  }
+
+  /** @return the UAS Datalink Local Sets of {@code frameCount} frames */
+  static byte[][] createKlvs(int frameCount) {
+    byte[][] klvs = new byte[frameCount][];
+    for (int frame = 0; frame < frameCount; frame++) {
+      klvs[frame] = createKlv(frame);
+    }
+    return klvs;
+  }
+
+  static byte[] createKlvPesPacket(int frame) {
+    return createPesPacket(PRIVATE_STREAM_ID, frame * PTS_PER_FRAME, createKlv(frame));
+  }
+
+  /** @return a UAS Datalink Local Set ending with a valid checksum */
+  static byte[] createKlv(int frame) {
+    double latitude = FIRST_LATITUDE + frame * DEGREES_PER_FRAME;
+    double longitude = FIRST_LONGITUDE + frame * DEGREES_PER_FRAME;
+
+    ByteArrayOutputStream localSet = new ByteArrayOutputStream();
+    writeElement(
+        localSet,
+        TIMESTAMP_TAG,
+        ByteBuffer.allocate(Long.BYTES)
+            .putLong(FIRST_TIMESTAMP + frame * TIMESTAMP_PER_FRAME)
+            .array());
+    writeElement(localSet, MISSION_ID_TAG, "BENCHMARK".getBytes(StandardCharsets.US_ASCII));
+    writeElement(
+        localSet, PLATFORM_DESIGNATION_TAG, "SYNTHETIC".getBytes(StandardCharsets.US_ASCII));
+    writeElement(localSet, SENSOR_LATITUDE_TAG, encodeLatitude(latitude - CORNER_OFFSET));
+    writeElement(localSet, SENSOR_LONGITUDE_TAG, encodeLongitude(longitude - CORNER_OFFSET));
+    writeElement(localSet, FRAME_CENTER_LATITUDE_TAG, encodeLatitude(latitude));
+    writeElement(localSet, FRAME_CENTER_LONGITUDE_TAG, encodeLongitude(longitude));
+
+    double[][] cornerOffsets = {{1, -1}, {1, 1}, {-1, 1}, {-1, -1}};
+    for (int corner = 0; corner < cornerOffsets.length; corner++) {
+      writeElement(
+          localSet,
+          FIRST_CORNER_TAG + 2 * corner,
+          encodeLatitude(latitude + cornerOffsets[corner][0] * CORNER_OFFSET));
+      writeElement(
+          localSet,
+          FIRST_CORNER_TAG + 2 * corner + 1,
+          encodeLongitude(longitude + cornerOffsets[corner][1] * CORNER_OFFSET));
+    }
+
+    // The checksum value is filled in below, once the bytes it covers are known.
+    writeElement(localSet, CHECKSUM_TAG, new byte[Short.BYTES]);
+
+    ByteArrayOutputStream klv = new ByteArrayOutputStream();
+    klv.write(UAS_DATALINK_LOCAL_SET_KEY, 0, UAS_DATALINK_LOCAL_SET_KEY.length);
+    writeBerLength(klv, localSet.size());
+    klv.write(localSet.toByteArray(), 0, localSet.size());
+
+    byte[] klvBytes = klv.toByteArray();
+    int checksum = calculateChecksum(klvBytes, klvBytes.length - Short.BYTES);
+    klvBytes[klvBytes.length - 2] = (byte) (checksum >> 8);
+    klvBytes[klvBytes.length - 1] = (byte) checksum;
+    return klvBytes;
+  }
+
+  /** A PES packet with a PTS, as written by most encoders. */
+  private static byte[] createPesPacket(int streamId, long pts, byte[] payload) {
+    int pesPacketLength = 3 + 5 + payload.length;
+
+    ByteBuffer pesPacket = ByteBuffer.allocate(6 + pesPacketLength);
+    pesPacket.put((byte) 0x00).put((byte) 0x00).put((byte) 0x01).put((byte) streamId);
+    pesPacket.putShort((short) pesPacketLength);
+    // marker bits and data alignment, PTS only, 5 bytes of optional fields
+    pesPacket.put((byte) 0x84).put((byte) 0x80).put((byte) 5);
+    pesPacket.put((byte) (0x21 | ((pts >> 29) & 0x0E)));
+    pesPacket.putShort((short) ((((pts >> 15) & 0x7FFF) << 1) | 1));
+    pesPacket.putShort((short) (((pts & 0x7FFF) << 1) | 1));
+    pesPacket.put(payload);
+    return pesPacket.array();
+  }
+
+  private static byte[] createVideoFrame() {
+    byte[] videoFrame = new byte[VIDEO_FRAME_SIZE];
+    new Random(0).nextBytes(videoFrame);
+    // an access unit delimiter NAL unit
+    videoFrame[0] = 0x00;
+    videoFrame[1] = 0x00;
+    videoFrame[2] = 0x00;
+    videoFrame[3] = 0x01;
+    videoFrame[4] = 0x09;
+    return videoFrame;
+  }
+
+  private static byte[] createProgramAssociationSection() {
+    ByteBuffer section = ByteBuffer.allocate(16);
+    section.put((byte) 0x00);
+    section.putShort((short) (0xB000 | (section.capacity() - 3)));
+    section.putShort((short) 1);
+    section.put((byte) 0xC1).put((byte) 0x00).put((byte) 0x00);
+    section.putShort((short) 1);
+    section.putShort((short) (0xE000 | PROGRAM_MAP_TABLE_PID));
+    return putCrc(section);
+  }
+
+  private static byte[] createProgramMapSection() {
+    ByteBuffer section = ByteBuffer.allocate(26);
+    section.put((byte) 0x02);
+    section.putShort((short) (0xB000 | (section.capacity() - 3)));
+    section.putShort((short) 1);
+    section.put((byte) 0xC1).put((byte) 0x00).put((byte) 0x00);
+    section.putShort((short) (0xE000 | VIDEO_PID));
+    section.putShort((short) 0xF000);
+    section.put((byte) H264_STREAM_TYPE);
+    section.putShort((short) (0xE000 | VIDEO_PID)).putShort((short) 0xF000);
+    section.put((byte) PRIVATE_DATA_STREAM_TYPE);
+    section.putShort((short) (0xE000 | METADATA_PID)).putShort((short) 0xF000);
+    return putCrc(section);
+  }
+
+  /** Prefix a section with a zero pointer field. */
+  private static byte[] createProgramSpecificInformation(byte[] section) {
+    byte[] programSpecificInformation = new byte[section.length + 1];
+    System.arraycopy(section, 0, programSpecificInformation, 1, section.length);
+    return programSpecificInformation;
+  }
+
+  /**
+   * Split the data into TS packets on the given PID. The last packet is padded with adaptation
+   * field stuffing so that the data ends exactly at the end of the packet.
+   */
+  private static void writeTransportStreamPackets(
+      ByteArrayOutputStream transportStream, int pid, byte[] data, int[] continuityCounters) {
+    int offset = 0;
+    do {
+      int count = Math.min(data.length - offset, TS_PAYLOAD_SIZE);
+      int continuityCounter = continuityCounters[pid];
+      continuityCounters[pid] = (continuityCounter + 1) & 0x0F;
+
+      byte[] packet = new byte[TS_PACKET_SIZE];
+      packet[0] = 0x47;
+      packet[1] = (byte) ((offset == 0 ? 0x40 : 0x00) | ((pid >> 8) & 0x1F));
+      packet[2] = (byte) pid;
+
+      int position = 4;
+      if (count < TS_PAYLOAD_SIZE) {
+        int adaptationFieldLength = TS_PAYLOAD_SIZE - 1 - count;
+        packet[3] = (byte) (0x30 | continuityCounter);
+        packet[4] = (byte) adaptationFieldLength;
+        if (adaptationFieldLength > 0) {
+          Arrays.fill(packet, 6, 5 + adaptationFieldLength, (byte) 0xFF);
+        }
+        position = 5 + adaptationFieldLength;
+      } else {
+        packet[3] = (byte) (0x10 | continuityCounter);
+      }
+
+      System.arraycopy(data, offset, packet, position, count);
+      transportStream.write(packet, 0, packet.length);
+      offset += count;
+    } while (offset < data.length);
+  }
+
+  private static void writeElement(ByteArrayOutputStream localSet, int tag, byte[] value) {
+    localSet.write(tag);
+    writeBerLength(localSet, value.length);
+    localSet.write(value, 0, value.length);
+  }
+
+  private static void writeBerLength(ByteArrayOutputStream outputStream, int length) {
+    if (length < 0x80) {
+      outputStream.write(length);
+    } else if (length <= 0xFF) {
+      outputStream.write(0x81);
+      outputStream.write(length);
+    } else {
+      outputStream.write(0x82);
+      outputStream.write(length >> 8);
+      outputStream.write(length);
+    }
+  }
+
+  private static byte[] encodeLatitude(double latitude) {
+    return encodeAngle(latitude, 180);
+  }
+
+  private static byte[] encodeLongitude(double longitude) {
+    return encodeAngle(longitude, 360);
+  }
+
+  /** Map the angle onto the signed 32 bit range, excluding the "error" value 0x80000000. */
+  private static byte[] encodeAngle(double angle, double range) {
+    int encoded = (int) Math.round(angle / range * 0xFFFFFFFEL);
+    return ByteBuffer.allocate(Integer.BYTES).putInt(encoded).array();
+  }
+
+  /** The 16 bit sum of the bytes, alternating between the high and the low byte. */
+  private static int calculateChecksum(byte[] bytes, int length) {
+    int checksum = 0;
+    for (int i = 0; i < length; i++) {
+      checksum += (bytes[i] & 0xFF) << (8 * ((i + 1) % 2));
+    }
+    return checksum & 0xFFFF;
+  }
+
+  private static byte[] putCrc(ByteBuffer section) {
+    int crc = 0xFFFFFFFF;
+    for (int i = 0; i < section.position(); i++) {
+      crc ^= (section.get(i) & 0xFF) << 24;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ CRC_POLYNOMIAL : crc << 1;
+      }
+    }
+    section.putInt(crc);
+    return section.array();
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.libs.benchmarks;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.codice.alliance.libs.mpegts.MpegStreamType;
+import org.codice.alliance.libs.mpegts.PESPacket;
+import org.codice.alliance.libs.mpegts.PESPacketOutputStream;
+import org.codice.alliance.libs.stanag4609.DecodedKLVMetadataPacket;
+import org.codice.alliance.libs.stanag4609.PESUtilities;
+import org.codice.alliance.libs.stanag4609.Stanag4609TransportStreamParser;
+import org.codice.ddf.libs.klv.KlvDecoder;
+import org.codice.ddf.libs.klv.data.numerical.KlvIntegerEncodedFloatingPoint;
+import org.codice.ddf.libs.klv.data.set.KlvLocalSet;
+import org.junit.Test;
+
+/** The benchmarks are only meaningful if the fixtures decode the same way real streams do. */
+public class TransportStreamFixturesTest {
+
+  private static final int FRAME_COUNT = 10;
+
+  @Test
+  public void testTransportStreamDemultiplexes() throws Exception {
+    byte[] transportStream = TransportStreamFixtures.createTransportStream(FRAME_COUNT);
+
+    List<PESPacket> pesPackets = new ArrayList<>();
+    try (PESPacketOutputStream pesPacketOutputStream = new PESPacketOutputStream(pesPackets::add)) {
+      pesPacketOutputStream.write(transportStream);
+    }
+
+    assertThat(transportStream.length % TransportStreamFixtures.TS_PACKET_SIZE, is(0));
+    assertThat(pesPackets, hasSize(2 * FRAME_COUNT));
+
+    for (int frame = 0; frame < FRAME_COUNT; frame++) {
+      PESPacket videoPacket = pesPackets.get(2 * frame);
+      assertThat(videoPacket.getPacketId(), is(TransportStreamFixtures.VIDEO_PID));
+      assertThat(videoPacket.getStreamType(), is(MpegStreamType.VIDEO_H264));
+
+      PESPacket metadataPacket = pesPackets.get(2 * frame + 1);
+      assertThat(metadataPacket.getPacketId(), is(TransportStreamFixtures.METADATA_PID));
+      assertThat(metadataPacket.getStreamType(), is(MpegStreamType.PRIVATE_DATA));
+      assertThat(
+          metadataPacket.getPayload(), is(TransportStreamFixtures.createKlvPesPacket(frame)));
+    }
+  }
+
+  @Test
+  public void testKlvPesPacketsDecode() throws Exception {
+    KlvDecoder klvDecoder =
+        new KlvDecoder(Stanag4609TransportStreamParser.UAS_DATALINK_LOCAL_SET_CONTEXT);
+
+    byte[][] pesPackets = TransportStreamFixtures.createKlvPesPackets(FRAME_COUNT);
+
+    for (int frame = 0; frame < FRAME_COUNT; frame++) {
+      DecodedKLVMetadataPacket decodedKLVMetadataPacket =
+          PESUtilities.handlePESPacketBytes(pesPackets[frame], klvDecoder);
+      assertThat(decodedKLVMetadataPacket, is(notNullValue()));
+
+      KlvLocalSet localSet =
+          (KlvLocalSet)
+              decodedKLVMetadataPacket
+                  .getDecodedKLV()
+                  .getDataElementByName(Stanag4609TransportStreamParser.UAS_DATALINK_LOCAL_SET);
+      KlvIntegerEncodedFloatingPoint frameCenterLatitude =
+          (KlvIntegerEncodedFloatingPoint)
+              localSet
+                  .getValue()
+                  .getDataElementByName(Stanag4609TransportStreamParser.FRAME_CENTER_LATITUDE);
+
+      assertThat(frameCenterLatitude.getValue(), closeTo(34.0 + frame * 0.0001, 1e-6));
+    }
+  }
+}
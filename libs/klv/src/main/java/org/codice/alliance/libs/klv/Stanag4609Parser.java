@@ -15,8 +15,24 @@ package org.codice.alliance.libs.klv;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import org.codice.alliance.libs.stanag4609.DecodedKLVMetadataPacket;
 
 public interface Stanag4609Parser {
   Map<Integer, List<DecodedKLVMetadataPacket>> parse() throws Stanag4609ParseException;
+
+  /**
+   * Parse the stream and pass each decoded KLV metadata packet to {@code callback} as soon as it is
+   * decoded, along with the packet ID of its stream. Unlike {@link #parse()}, this does not need to
+   * hold every packet in memory. The default implementation delegates to {@link #parse()}.
+   *
+   * @param callback must be non-null
+   * @throws Stanag4609ParseException if the stream cannot be parsed
+   */
+  default void parse(BiConsumer<Integer, DecodedKLVMetadataPacket> callback)
+      throws Stanag4609ParseException {
+    parse()
+        .forEach(
+            (packetId, packets) -> packets.forEach(packet -> callback.accept(packetId, packet)));
+  }
 }
@@ -30,6 +30,15 @@ public interface Stanag4609Processor {
       KlvHandler defaultHander,
       Map<Integer, List<DecodedKLVMetadataPacket>> stanagMetadata);
 
+  /**
+   * Handle a single decoded KLV metadata packet. This allows packets to be handled as they are
+   * decoded instead of collecting the whole stream first.
+   */
+  void handle(
+      Map<String, KlvHandler> handlers,
+      KlvHandler defaultHandler,
+      DecodedKLVMetadataPacket decodedKLVMetadataPacket);
+
   void handle(
       Map<String, KlvHandler> handlers,
       KlvHandler defaultHandler,
@@ -152,4 +152,21 @@ public class Stanag4609ProcessorImplTest {
 
     verify(klvHandler, atLeastOnce()).accept(klvIntegerEncodedFloatingPoint);
   }
+
+  @Test
+  public void testHandleWithDecodedPacket() throws KlvDecodingException {
+
+    DecodedKLVMetadataPacket packet = mock(DecodedKLVMetadataPacket.class);
+    when(packet.getDecodedKLV())
+        .thenReturn(
+            new KlvContext(
+                Klv.KeyLength.OneByte,
+                Klv.LengthEncoding.OneByte,
+                Collections.singleton(klvIntegerEncodedFloatingPoint)));
+
+    stanag4609Processor.handle(
+        Collections.singletonMap(FIELD_NAME, klvHandler), defaultKlvHandler, packet);
+
+    verify(klvHandler, atLeastOnce()).accept(klvIntegerEncodedFloatingPoint);
+  }
 }
@@ -19,4 +19,7 @@ public class Constants {
   public static final int TS_PACKET_SIZE = 188;
 
   public static final int PROGRAM_ASSOCIATION_TABLE_PID = 0;
+
+  /** The number of distinct 13-bit packet identifiers. */
+  public static final int PID_COUNT = 1 << 13;
 }
@@ -27,4 +27,13 @@ public interface MpegTsDecoder {
    * @throws IOException
    */
   void read(MTSPacket mtsPacket, Consumer<PESPacket> callback) throws IOException;
+
+  /**
+   * Signal the end of the transport stream. Any PESPackets that are still being assembled are
+   * passed to {@code callback}, because no further MTSPacket will start a new PESPacket to complete
+   * them.
+   *
+   * @param callback must be non-null
+   */
+  void flush(Consumer<PESPacket> callback);
 }
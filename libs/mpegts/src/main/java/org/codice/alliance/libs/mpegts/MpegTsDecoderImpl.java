@@ -17,25 +17,29 @@ import static org.apache.commons.lang3.Validate.notNull;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.BitSet;
 import java.util.function.Consumer;
-import org.apache.commons.lang3.ArrayUtils;
 import org.jcodec.containers.mps.psi.PMTSection;
 import org.taktik.mpegts.MTSPacket;
 import org.taktik.mpegts.PATSection;
 
+/**
+ * Per-PID state is kept in tables indexed by the 13-bit packet identifier, and PES packets are
+ * assembled in reusable {@link PESPayloadBuffer}s.
+ */
 public class MpegTsDecoderImpl implements MpegTsDecoder {
 
   private static final int BYTE_MASK = 0xFF;
 
-  private final Set<Integer> programMapTablePacketIdDirectory = new HashSet<>();
+  private static final int PID_MASK = Constants.PID_COUNT - 1;
+
+  private final BitSet programMapTablePacketIdDirectory = new BitSet(Constants.PID_COUNT);
 
-  private final Map<Integer, PMTSection.PMTStream> programElementaryStreams = new HashMap<>();
+  private final PMTSection.PMTStream[] programElementaryStreams =
+      new PMTSection.PMTStream[Constants.PID_COUNT];
 
-  private final Map<Integer, byte[]> currentPacketBytesByStream = new HashMap<>();
+  private final PESPayloadBuffer[] currentPacketBytesByStream =
+      new PESPayloadBuffer[Constants.PID_COUNT];
 
   private PATSectionParser patSectionParser = PATSection::parse;
 
@@ -46,7 +50,7 @@ public class MpegTsDecoderImpl implements MpegTsDecoder {
     notNull(mtsPacket, "mtsPacket must be non-null");
     notNull(callback, "callback must be non-null");
 
-    int pid = mtsPacket.getPid();
+    int pid = mtsPacket.getPid() & PID_MASK;
 
     if (isProgramAssociationTable(mtsPacket, pid)) {
 
@@ -62,39 +66,65 @@ public class MpegTsDecoderImpl implements MpegTsDecoder {
     }
   }
 
+  @Override
+  public void flush(Consumer<PESPacket> callback) {
+    notNull(callback, "callback must be non-null");
+
+    for (int pid = 0; pid < Constants.PID_COUNT; pid++) {
+      PESPayloadBuffer payloadBuffer = currentPacketBytesByStream[pid];
+      PMTSection.PMTStream stream = programElementaryStreams[pid];
+      if (payloadBuffer != null && payloadBuffer.isStarted() && stream != null) {
+        callback.accept(
+            new PESPacket(
+                payloadBuffer.toByteArray(), MpegStreamType.lookup(stream.getStreamType()), pid));
+        payloadBuffer.clear();
+      }
+    }
+  }
+
   private void handleElementaryStream(MTSPacket mtsPacket, int pid, Consumer<PESPacket> callback) {
     if (mtsPacket.isContainsPayload()) {
-      final PMTSection.PMTStream stream = programElementaryStreams.get(pid);
+      final PMTSection.PMTStream stream = programElementaryStreams[pid];
 
-      final byte[] currentPacketBytes = currentPacketBytesByStream.get(pid);
+      final PESPayloadBuffer currentPacketBytes = getPayloadBuffer(pid);
 
       final boolean startingNewPacket = mtsPacket.isPayloadUnitStartIndicator();
-      final boolean currentPacketToHandle = currentPacketBytes != null;
+      final boolean currentPacketToHandle = currentPacketBytes.isStarted();
       final boolean reachedEndOfCurrentPacket = startingNewPacket && currentPacketToHandle;
 
-      final byte[] payloadBytes = getByteBufferAsBytes(mtsPacket.getPayload());
-
       if (reachedEndOfCurrentPacket) {
         callback.accept(
-            new PESPacket(currentPacketBytes, MpegStreamType.lookup(stream.getStreamType()), pid));
-        currentPacketBytesByStream.put(pid, payloadBytes);
-      } else if (startingNewPacket) {
-        currentPacketBytesByStream.put(pid, payloadBytes);
+            new PESPacket(
+                currentPacketBytes.toByteArray(),
+                MpegStreamType.lookup(stream.getStreamType()),
+                pid));
+      }
+
+      if (startingNewPacket) {
+        currentPacketBytes.start(mtsPacket.getPayload());
       } else if (currentPacketToHandle) {
-        final byte[] concatenatedPacket = ArrayUtils.addAll(currentPacketBytes, payloadBytes);
-        currentPacketBytesByStream.put(pid, concatenatedPacket);
+        currentPacketBytes.append(mtsPacket.getPayload());
       }
     }
   }
 
+  private PESPayloadBuffer getPayloadBuffer(int pid) {
+    PESPayloadBuffer payloadBuffer = currentPacketBytesByStream[pid];
+    if (payloadBuffer == null) {
+      payloadBuffer = new PESPayloadBuffer();
+      currentPacketBytesByStream[pid] = payloadBuffer;
+    }
+    return payloadBuffer;
+  }
+
   private boolean isElementaryStream(int pid) {
     return pid != Constants.PROGRAM_ASSOCIATION_TABLE_PID
-        && !programMapTablePacketIdDirectory.contains(pid)
-        && programElementaryStreams.containsKey(pid);
+        && !programMapTablePacketIdDirectory.get(pid)
+        && programElementaryStreams[pid] != null;
   }
 
   private boolean isProgramMapTable(MTSPacket mtsPacket) {
-    return programMapTablePacketIdDirectory.contains(mtsPacket.getPid())
+    return programMapTablePacketIdDirectory.get(mtsPacket.getPid() & PID_MASK)
         && mtsPacket.isPayloadUnitStartIndicator();
   }
 
@@ -112,7 +142,7 @@ public class MpegTsDecoderImpl implements MpegTsDecoder {
     final PMTSection pmt = pmtSectionParser.parse(payload);
 
     for (final PMTSection.PMTStream stream : pmt.getStreams()) {
-      programElementaryStreams.put(stream.getPid(), stream);
+      programElementaryStreams[stream.getPid() & PID_MASK] = stream;
     }
   }
 
@@ -123,19 +153,15 @@ public class MpegTsDecoderImpl implements MpegTsDecoder {
     payload.position(payload.position() + pointer);
     final PATSection programAssociationTable = patSectionParser.parse(payload);
     programMapTablePacketIdDirectory.clear();
-    programMapTablePacketIdDirectory.addAll(programAssociationTable.getPrograms().values());
+    for (int programMapTablePid : programAssociationTable.getPrograms().values()) {
+      programMapTablePacketIdDirectory.set(programMapTablePid & PID_MASK);
+    }
 
     if (programMapTablePacketIdDirectory.isEmpty()) {
       throw new IOException("No programs found in transport stream.");
     }
   }
 
-  private byte[] getByteBufferAsBytes(final ByteBuffer buffer) {
-    final byte[] bytes = new byte[buffer.remaining()];
-    buffer.get(bytes);
-    return bytes;
-  }
-
   public void setPatSectionParser(PATSectionParser patSectionParser) {
     this.patSectionParser = patSectionParser;
   }
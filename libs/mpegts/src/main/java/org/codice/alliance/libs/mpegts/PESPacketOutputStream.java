@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.libs.mpegts;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.taktik.mpegts.MTSPacket;
+
+/**
+ * Demultiplexes the MPEG-TS bytes written to it into PESPackets. This allows a transport stream to
+ * be decoded while it is being copied somewhere else, instead of reading it a second time. Bytes
+ * are framed into TS packets on the sync byte. Data that cannot be decoded is skipped. Closing the
+ * stream passes any PESPackets that are still being assembled to the callback.
+ *
+ * <p>Once the decoder rejects the stream, for example because the program association table has
+ * no programs, further bytes are ignored. The stream stays writable so the caller's copy is not
+ * interrupted.
+ */
+public class PESPacketOutputStream extends OutputStream {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PESPacketOutputStream.class);
+
+  private static final byte SYNC_BYTE = 0x47;
+
+  private final byte[] packet = new byte[Constants.TS_PACKET_SIZE];
+
+  private final MpegTsDecoder mpegTsDecoder;
+
+  private final Consumer<PESPacket> callback;
+
+  private int packetLength;
+
+  private boolean failed;
+
+  private boolean closed;
+
+  /** @param callback called for each complete PESPacket, must be non-null */
+  public PESPacketOutputStream(Consumer<PESPacket> callback) {
+    this(new MpegTsDecoderImpl(), callback);
+  }
+
+  /**
+   * @param mpegTsDecoder must be non-null
+   * @param callback called for each complete PESPacket, must be non-null
+   */
+  public PESPacketOutputStream(MpegTsDecoder mpegTsDecoder, Consumer<PESPacket> callback) {
+    notNull(mpegTsDecoder, "mpegTsDecoder must be non-null");
+    notNull(callback, "callback must be non-null");
+    this.mpegTsDecoder = mpegTsDecoder;
+    this.callback = callback;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    if (closed) {
+      throw new IOException("stream is closed");
+    }
+
+    int position = offset;
+    int end = offset + length;
+
+    while (position < end && !failed) {
+      if (packetLength == 0) {
+        position = findSyncByte(bytes, position, end);
+        if (position == end) {
+          break;
+        }
+      }
+
+      int count = Math.min(end - position, packet.length - packetLength);
+      System.arraycopy(bytes, position, packet, packetLength, count);
+      packetLength += count;
+      position += count;
+
+      if (packetLength == packet.length) {
+        decodePacket();
+        packetLength = 0;
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      if (!failed) {
+        mpegTsDecoder.flush(callback);
+      }
+    }
+  }
+
+  private int findSyncByte(byte[] bytes, int start, int end) {
+    int position = start;
+    while (position < end && bytes[position] != SYNC_BYTE) {
+      position++;
+    }
+    if (position > start) {
+      LOGGER.trace("skipped {} bytes while looking for a TS packet sync byte", position - start);
+    }
+    return position;
+  }
+
+  private void decodePacket() {
+    MTSPacket mtsPacket;
+    try {
+      mtsPacket = new MTSPacket(ByteBuffer.wrap(packet));
+    } catch (RuntimeException e) {
+      LOGGER.trace("skipping a TS packet that could not be parsed", e);
+      return;
+    }
+
+    try {
+      mpegTsDecoder.read(mtsPacket, callback);
+    } catch (IOException e) {
+      LOGGER.debug("unable to decode the transport stream, ignoring the remaining bytes", e);
+      failed = true;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.libs.mpegts;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Accumulates the TS packet payloads of a single PES packet. The backing array grows
+ * geometrically and is reused for the next PES packet on the same PID, so assembling a PES packet
+ * costs time proportional to its size rather than to the square of its TS packet count.
+ */
+class PESPayloadBuffer {
+
+  private static final int INITIAL_CAPACITY = 4096;
+
+  private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+  private int length;
+
+  private boolean started;
+
+  /**
+   * Discard any accumulated bytes and begin a new PES packet with the given payload.
+   *
+   * @param payload the first TS packet payload of the PES packet
+   */
+  void start(ByteBuffer payload) {
+    length = 0;
+    started = true;
+    append(payload);
+  }
+
+  /** @param payload a continuation TS packet payload */
+  void append(ByteBuffer payload) {
+    int count = payload.remaining();
+    ensureCapacity(length + count);
+    payload.get(bytes, length, count);
+    length += count;
+  }
+
+  /** Discard any accumulated bytes. The next payload must start a new PES packet. */
+  void clear() {
+    length = 0;
+    started = false;
+  }
+
+  /** @return true if a PES packet has been started and not yet been completed */
+  boolean isStarted() {
+    return started;
+  }
+
+  /** @return a copy of the accumulated bytes */
+  byte[] toByteArray() {
+    return Arrays.copyOf(bytes, length);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+    }
+  }
+}
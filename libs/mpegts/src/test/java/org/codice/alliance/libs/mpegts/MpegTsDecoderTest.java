@@ -24,6 +24,7 @@ import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -117,11 +118,90 @@ public class MpegTsDecoderTest {
         is(new byte[] {expectedByte1, expectedByte2, expectedByte3, expectedByte4}));
   }
 
+  /**
+   * A large PES packet interleaved with packets from another PID is reassembled byte for byte from
+   * many full-size TS packet payloads.
+   */
+  @Test
+  public void testReadLargeInterleavedPackets() throws IOException {
+    int programMapTableId = 0x100;
+    int videoPacketId = 0x1011;
+    int dataPacketId = 0x1FFE;
+    int payloadSize = 184;
+    int packetCount = 2000;
+
+    MpegTsDecoderImpl decoder =
+        createDecoder(
+            programMapTableId,
+            createStream(MTSUtils.StreamType.VIDEO_H264, videoPacketId),
+            createStream(MTSUtils.StreamType.PRIVATE_DATA, dataPacketId));
+
+    byte[] expectedVideo = new byte[payloadSize * packetCount];
+    for (int i = 0; i < expectedVideo.length; i++) {
+      expectedVideo[i] = (byte) (i * 31);
+    }
+
+    List<PESPacket> outputList = new LinkedList<>();
+
+    decoder.read(createPsi(Constants.PROGRAM_ASSOCIATION_TABLE_PID), outputList::add);
+    decoder.read(createPsi(programMapTableId), outputList::add);
+
+    for (int i = 0; i < packetCount; i++) {
+      byte[] payload = Arrays.copyOfRange(expectedVideo, i * payloadSize, (i + 1) * payloadSize);
+      decoder.read(createElementary(i == 0, videoPacketId, payload), outputList::add);
+      decoder.read(createElementary(true, dataPacketId, (byte) i), outputList::add);
+    }
+
+    decoder.read(createElementary(true, videoPacketId, (byte) 0x00), outputList::add);
+
+    assertThat(outputList, hasSize(packetCount));
+    PESPacket videoPacket = outputList.get(packetCount - 1);
+    assertThat(videoPacket.getPacketId(), is(videoPacketId));
+    assertThat(videoPacket.getPayload(), is(expectedVideo));
+
+    PESPacket dataPacket = outputList.get(0);
+    assertThat(dataPacket.getPacketId(), is(dataPacketId));
+    assertThat(dataPacket.getPayload(), is(new byte[] {0x00}));
+  }
+
+  private MpegTsDecoderImpl createDecoder(int programMapTableId, PMTSection.PMTStream... streams) {
+    MpegTsDecoderImpl decoder = new MpegTsDecoderImpl();
+
+    PATSection patSection = mock(PATSection.class);
+    when(patSection.getPrograms()).thenReturn(Collections.singletonMap(1, programMapTableId));
+    decoder.setPatSectionParser(payload -> patSection);
+
+    PMTSection pmtSection = mock(PMTSection.class);
+    when(pmtSection.getStreams()).thenReturn(streams);
+    decoder.setPmtSectionParser(payload -> pmtSection);
+
+    return decoder;
+  }
+
+  private PMTSection.PMTStream createStream(MTSUtils.StreamType streamType, int pid) {
+    PMTSection.PMTStream pmtStream = mock(PMTSection.PMTStream.class);
+    when(pmtStream.getStreamType()).thenReturn(streamType);
+    when(pmtStream.getPid()).thenReturn(pid);
+    return pmtStream;
+  }
+
+  private MTSPacket createPsi(int pid) {
+    MTSPacket psiPacket = mock(MTSPacket.class);
+    when(psiPacket.getPid()).thenReturn(pid);
+    when(psiPacket.isPayloadUnitStartIndicator()).thenReturn(true);
+    when(psiPacket.getPayload()).thenReturn(ByteBuffer.wrap(new byte[] {0x00}));
+    return psiPacket;
+  }
+
   private MTSPacket createElementary(boolean isStart, int pid, byte data) {
+    return createElementary(isStart, pid, new byte[] {data});
+  }
+
+  private MTSPacket createElementary(boolean isStart, int pid, byte[] data) {
     MTSPacket elementaryStreamPacket = mock(MTSPacket.class);
     when(elementaryStreamPacket.getPid()).thenReturn(pid);
     when(elementaryStreamPacket.isPayloadUnitStartIndicator()).thenReturn(isStart);
-    when(elementaryStreamPacket.getPayload()).thenReturn(ByteBuffer.wrap(new byte[] {data}));
+    when(elementaryStreamPacket.getPayload()).thenReturn(ByteBuffer.wrap(data));
     when(elementaryStreamPacket.isContainsPayload()).thenReturn(true);
     return elementaryStreamPacket;
   }
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.alliance.libs.mpegts;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.taktik.mpegts.MTSPacket;
+
+public class PESPacketOutputStreamTest {
+
+  private static final int PID = 0x100;
+
+  private MpegTsDecoder mpegTsDecoder;
+
+  private Consumer<PESPacket> callback;
+
+  private PESPacketOutputStream pesPacketOutputStream;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    mpegTsDecoder = mock(MpegTsDecoder.class);
+    callback = mock(Consumer.class);
+    pesPacketOutputStream = new PESPacketOutputStream(mpegTsDecoder, callback);
+  }
+
+  @Test
+  public void testPacketsSplitAcrossWrites() throws IOException {
+    byte[] bytes = concat(createPacket(), createPacket());
+
+    pesPacketOutputStream.write(bytes, 0, 100);
+    pesPacketOutputStream.write(bytes, 100, 200);
+    pesPacketOutputStream.write(bytes, 300, bytes.length - 300);
+
+    ArgumentCaptor<MTSPacket> captor = ArgumentCaptor.forClass(MTSPacket.class);
+    verify(mpegTsDecoder, times(2)).read(captor.capture(), any());
+    assertThat(captor.getValue().getPid(), is(PID));
+  }
+
+  @Test
+  public void testResynchronizesOnSyncByte() throws IOException {
+    byte[] bytes = concat(new byte[] {0x00, 0x01, 0x02}, createPacket());
+
+    pesPacketOutputStream.write(bytes);
+
+    verify(mpegTsDecoder).read(any(), any());
+  }
+
+  @Test
+  public void testIncompletePacketIsNotDecoded() throws IOException {
+    pesPacketOutputStream.write(createPacket(), 0, Constants.TS_PACKET_SIZE - 1);
+
+    verify(mpegTsDecoder, never()).read(any(), any());
+  }
+
+  @Test
+  public void testCloseFlushesDecoder() throws IOException {
+    pesPacketOutputStream.write(createPacket());
+    pesPacketOutputStream.close();
+    pesPacketOutputStream.close();
+
+    verify(mpegTsDecoder).flush(callback);
+  }
+
+  @Test
+  public void testDecoderFailureIgnoresRemainingBytes() throws IOException {
+    doThrow(IOException.class).when(mpegTsDecoder).read(any(), any());
+
+    pesPacketOutputStream.write(concat(createPacket(), createPacket()));
+    pesPacketOutputStream.close();
+
+    verify(mpegTsDecoder).read(any(), any());
+    verify(mpegTsDecoder, never()).flush(any());
+  }
+
+  @Test(expected = IOException.class)
+  public void testWriteAfterClose() throws IOException {
+    pesPacketOutputStream.close();
+    pesPacketOutputStream.write(0x47);
+  }
+
+  /** A TS packet carrying only payload on {@link #PID}. */
+  private static byte[] createPacket() {
+    byte[] packet = new byte[Constants.TS_PACKET_SIZE];
+    packet[0] = 0x47;
+    packet[1] = (byte) (0x40 | (PID >> 8));
+    packet[2] = (byte) PID;
+    packet[3] = 0x10;
+    return packet;
+  }
+
+  private static byte[] concat(byte[] first, byte[] second) {
+    byte[] bytes = new byte[first.length + second.length];
+    System.arraycopy(first, 0, bytes, 0, first.length);
+    System.arraycopy(second, 0, bytes, first.length, second.length);
+    return bytes;
+  }
+}